@@ -20,6 +20,7 @@ Future<void> main() async {
   const password = 'your_password';
 
   // Create client instance
+  // For protocol v2 (AES-GCM), add: version: versionGcm
   final recon = Recon(
     host: host,
     port: port,
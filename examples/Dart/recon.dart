@@ -1,7 +1,8 @@
 /// Recon - REST API Client for Minecraft
 ///
 /// A Dart client library for communicating with the Recon plugin's REST API.
-/// Handles AES-256-CBC encryption/decryption and secure command execution.
+/// Handles AES-256-CBC (protocol v1) and AES-256-GCM (protocol v2)
+/// encryption/decryption and secure command execution.
 ///
 /// This library is also used by the Recon Flutter application.
 ///
@@ -15,6 +16,12 @@ import 'package:crypto/crypto.dart';
 import 'package:encrypt/encrypt.dart' as encrypt_pkg;
 import 'package:http/http.dart' as http;
 
+/// Protocol v1: AES-256-CBC (supported by every server version).
+const int versionCbc = 1;
+
+/// Protocol v2: AES-256-GCM (authenticated encryption).
+const int versionGcm = 2;
+
 /// Response from a Recon command execution.
 class ReconResponse {
   final bool success;
@@ -39,6 +46,7 @@ class Recon {
   final String password;
   final Duration timeout;
   final bool useSSL;
+  final int version;
 
   /// Create a new Recon client instance.
   ///
@@ -48,6 +56,7 @@ class Recon {
   /// [password] - Authentication password
   /// [timeout] - Request timeout (default: 10 seconds)
   /// [useSSL] - Whether to use HTTPS (default: false)
+  /// [version] - Protocol version, [versionCbc] or [versionGcm] (default: [versionCbc])
   Recon({
     required this.host,
     this.port = 4161,
@@ -55,7 +64,8 @@ class Recon {
     required this.password,
     this.timeout = const Duration(seconds: 10),
     this.useSSL = false,
-  });
+    this.version = versionCbc,
+  }) : assert(version == versionCbc || version == versionGcm);
 
   /// Send a command to the Minecraft server.
   ///
@@ -68,13 +78,14 @@ class Recon {
 
       // Derive AES key and encrypt command
       final key = _deriveKey(password, nonce, timestamp);
-      final encrypted = _encrypt('RCON_$command', key);
+      final encrypted = _encryptVersion('RCON_$command', key);
 
-      // Build request payload
+      // Build request payload (version is omitted for v1)
       final payload = jsonEncode({
         'user': user,
         'nonce': nonce,
         'timestamp': timestamp,
+        if (version != versionCbc) 'version': version,
         'queue': queue,
         'command': encrypted,
       });
@@ -93,9 +104,9 @@ class Recon {
         final serverNonce = responseJson['nonce'] as String? ?? '';
         final serverTimestamp = (responseJson['timestamp'] as num?)?.toInt() ?? 0;
         final responseKey = _deriveKey(password, serverNonce, serverTimestamp);
-        final decrypted = _decrypt(responseJson['response'] as String, responseKey);
+        final decrypted = _decryptVersion(responseJson['response'] as String, responseKey);
         final decryptedPlain = responseJson.containsKey('plainResponse')
-            ? _decrypt(responseJson['plainResponse'] as String, responseKey)
+            ? _decryptVersion(responseJson['plainResponse'] as String, responseKey)
             : decrypted;
 
         return ReconResponse(success: true, response: decrypted, plainResponse: decryptedPlain);
@@ -117,6 +128,14 @@ class Recon {
     return Uint8List.fromList(hash.bytes);
   }
 
+  /// Encrypt plaintext in the format of the configured protocol version.
+  String _encryptVersion(String plaintext, Uint8List key) =>
+      version == versionGcm ? _encryptGcm(plaintext, key) : _encrypt(plaintext, key);
+
+  /// Decrypt ciphertext in the format of the configured protocol version.
+  String _decryptVersion(String ciphertext, Uint8List key) =>
+      version == versionGcm ? _decryptGcm(ciphertext, key) : _decrypt(ciphertext, key);
+
   /// Encrypt plaintext using AES-256-CBC.
   /// Returns Base64(IV + ciphertext).
   String _encrypt(String plaintext, Uint8List key) {
@@ -147,6 +166,37 @@ class Recon {
     return encrypter.decrypt(encrypted, iv: iv);
   }
 
+  /// Encrypt plaintext using AES-256-GCM.
+  /// Returns Base64(nonce + ciphertext + tag).
+  String _encryptGcm(String plaintext, Uint8List key) {
+    final nonce = encrypt_pkg.IV.fromSecureRandom(12);
+    final encrypter = encrypt_pkg.Encrypter(
+      encrypt_pkg.AES(encrypt_pkg.Key(key), mode: encrypt_pkg.AESMode.gcm, padding: null),
+    );
+    // The GCM output already has the 16-byte tag appended
+    final encrypted = encrypter.encryptBytes(utf8.encode(plaintext), iv: nonce);
+
+    final combined = Uint8List(12 + encrypted.bytes.length);
+    combined.setRange(0, 12, nonce.bytes);
+    combined.setRange(12, combined.length, encrypted.bytes);
+
+    return base64Encode(combined);
+  }
+
+  /// Decrypt ciphertext from Base64(nonce + ciphertext + tag) using AES-256-GCM.
+  /// Throws if the authentication tag does not match.
+  String _decryptGcm(String ciphertext, Uint8List key) {
+    final decoded = base64Decode(ciphertext);
+    final nonce = encrypt_pkg.IV(Uint8List.fromList(decoded.sublist(0, 12)));
+    final encrypted = encrypt_pkg.Encrypted(Uint8List.fromList(decoded.sublist(12)));
+
+    final encrypter = encrypt_pkg.Encrypter(
+      encrypt_pkg.AES(encrypt_pkg.Key(key), mode: encrypt_pkg.AESMode.gcm, padding: null),
+    );
+
+    return encrypter.decrypt(encrypted, iv: nonce);
+  }
+
   /// Generate a random nonce string.
   String _generateNonce() {
     final random = Random.secure();
@@ -21,6 +21,8 @@ func main() {
 
 	// Create client instance
 	client := NewRecon(host, port, user, password, timeout)
+	// For protocol v2 (AES-GCM): client.Version = VersionGCM
+	// For the binary CBOR envelope: client.Binary = true
 
 	// Test connection
 	fmt.Println("Testing connection...")
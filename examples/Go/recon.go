@@ -1,6 +1,10 @@
 // Package recon provides a REST API client for the Minecraft Recon plugin.
 //
-// It handles AES-256-CBC encryption/decryption and secure command execution.
+// It handles AES-256-CBC (protocol v1) and AES-256-GCM (protocol v2)
+// encryption/decryption and secure command execution. Requests can
+// optionally use the binary CBOR envelope, which carries ciphertext as
+// raw bytes instead of Base64 text. Large command output is compressed by
+// the server (gzip) before encryption and decompressed after decryption.
 //
 // License: MIT (Mobile application distribution prohibited)
 // Copyright (c) 2026 Enabify
@@ -8,6 +12,8 @@ package recon
 
 import (
 	"bytes"
+	"compress/gzip"
+	"compress/zlib"
 	"crypto/aes"
 	"crypto/cipher"
 	"crypto/rand"
@@ -17,9 +23,18 @@ import (
 	"fmt"
 	"io"
 	"net/http"
+	"strings"
 	"time"
 )
 
+// Protocol versions.
+const (
+	// VersionCBC is protocol v1 (AES-256-CBC), supported by every server version.
+	VersionCBC = 1
+	// VersionGCM is protocol v2 (AES-256-GCM), authenticated encryption.
+	VersionGCM = 2
+)
+
 // Recon is a client for communicating with the Recon Minecraft plugin via REST API.
 type Recon struct {
 	Host     string
@@ -28,6 +43,10 @@ type Recon struct {
 	Password string
 	Timeout  time.Duration
 	UseSSL   bool
+	// Version selects the protocol version (VersionCBC or VersionGCM, default VersionCBC).
+	Version  int
+	// Binary sends and receives the CBOR envelope (application/cbor) instead of JSON.
+	Binary   bool
 }
 
 // Response represents the result of a command execution.
@@ -43,8 +62,10 @@ type request struct {
 	User      string `json:"user"`
 	Nonce     string `json:"nonce"`
 	Timestamp int64  `json:"timestamp"`
-	Queue     bool   `json:"queue"`
-	Command   string `json:"command"`
+	Version     int    `json:"version,omitempty"`
+	Queue       bool   `json:"queue"`
+	Compression string `json:"compression"`
+	Command     string `json:"command"`
 }
 
 // serverResponse is the JSON body received from the server.
@@ -55,6 +76,7 @@ type serverResponse struct {
 	Success       bool   `json:"success"`
 	Response      string `json:"response"`
 	PlainResponse string `json:"plainResponse"`
+	Compression   string `json:"compression"`
 	Error         string `json:"error"`
 }
 
@@ -67,6 +89,7 @@ func NewRecon(host string, port int, user, password string, timeout time.Duratio
 		Password: password,
 		Timeout:  timeout,
 		UseSSL:   false,
+		Version:  VersionCBC,
 	}
 }
 
@@ -75,24 +98,54 @@ func (r *Recon) SendCommand(command string, queue bool) Response {
 	nonce := generateNonce()
 	timestamp := time.Now().Unix()
 
+	version := r.Version
+	if version == 0 {
+		version = VersionCBC
+	}
+
 	// Derive AES key and encrypt command
 	key := deriveKey(r.Password, nonce, timestamp)
-	encrypted, err := encrypt("RCON_"+command, key)
+	encrypted, err := encryptVersion("RCON_"+command, key, version)
 	if err != nil {
 		return Response{Success: false, Error: fmt.Sprintf("Encryption error: %v", err)}
 	}
 
-	// Build request payload
-	reqBody := request{
-		User:      r.User,
-		Nonce:     nonce,
-		Timestamp: timestamp,
-		Queue:     queue,
-		Command:   encrypted,
-	}
-	payload, err := json.Marshal(reqBody)
-	if err != nil {
-		return Response{Success: false, Error: fmt.Sprintf("JSON marshal error: %v", err)}
+	// Build request payload (version is omitted for v1)
+	var payload []byte
+	contentType := "application/json"
+	if r.Binary {
+		contentType = "application/cbor"
+		fields := 6
+		if version != VersionCBC {
+			fields++
+		}
+		enc := cborMapHeader(nil, fields)
+		enc = cborText(cborText(enc, "user"), r.User)
+		enc = cborText(cborText(enc, "nonce"), nonce)
+		enc = cborInt(cborText(enc, "timestamp"), timestamp)
+		if version != VersionCBC {
+			enc = cborInt(cborText(enc, "version"), int64(version))
+		}
+		enc = cborBool(cborText(enc, "queue"), queue)
+		enc = cborText(cborText(enc, "compression"), "gzip")
+		enc = cborBytes(cborText(enc, "command"), encrypted)
+		payload = enc
+	} else {
+		reqBody := request{
+			User:      r.User,
+			Nonce:     nonce,
+			Timestamp: timestamp,
+			Queue:       queue,
+			Compression: "gzip",
+			Command:     base64.StdEncoding.EncodeToString(encrypted),
+		}
+		if version != VersionCBC {
+			reqBody.Version = version
+		}
+		payload, err = json.Marshal(reqBody)
+		if err != nil {
+			return Response{Success: false, Error: fmt.Sprintf("JSON marshal error: %v", err)}
+		}
 	}
 
 	// Send HTTP POST
@@ -102,8 +155,17 @@ func (r *Recon) SendCommand(command string, queue bool) Response {
 	}
 	url := fmt.Sprintf("%s://%s:%d/", scheme, r.Host, r.Port)
 
+	req, err := http.NewRequest(http.MethodPost, url, bytes.NewReader(payload))
+	if err != nil {
+		return Response{Success: false, Error: fmt.Sprintf("Request error: %v", err)}
+	}
+	req.Header.Set("Content-Type", contentType)
+	if r.Binary {
+		req.Header.Set("Accept", "application/cbor")
+	}
+
 	client := &http.Client{Timeout: r.Timeout}
-	resp, err := client.Post(url, "application/json", bytes.NewReader(payload))
+	resp, err := client.Do(req)
 	if err != nil {
 		return Response{Success: false, Error: fmt.Sprintf("Connection error: %v", err)}
 	}
@@ -114,20 +176,46 @@ func (r *Recon) SendCommand(command string, queue bool) Response {
 		return Response{Success: false, Error: fmt.Sprintf("Read error: %v", err)}
 	}
 
+	// CBOR responses carry ciphertext as raw bytes (error responses are always JSON)
 	var srvResp serverResponse
-	if err := json.Unmarshal(body, &srvResp); err != nil {
-		return Response{Success: false, Error: fmt.Sprintf("JSON parse error: %v", err)}
+	var encResponse, encPlainResponse []byte
+	if strings.HasPrefix(resp.Header.Get("Content-Type"), "application/cbor") {
+		fields, err := cborDecodeMap(body)
+		if err != nil {
+			return Response{Success: false, Error: fmt.Sprintf("CBOR parse error: %v", err)}
+		}
+		srvResp.Success, _ = fields["success"].(bool)
+		srvResp.Nonce, _ = fields["nonce"].(string)
+		srvResp.Error, _ = fields["error"].(string)
+		srvResp.Compression, _ = fields["compression"].(string)
+		if ts, ok := fields["timestamp"].(int64); ok {
+			srvResp.Timestamp = ts
+		}
+		encResponse, _ = fields["response"].([]byte)
+		encPlainResponse, _ = fields["plainResponse"].([]byte)
+	} else {
+		if err := json.Unmarshal(body, &srvResp); err != nil {
+			return Response{Success: false, Error: fmt.Sprintf("JSON parse error: %v", err)}
+		}
+		if srvResp.Success {
+			if encResponse, err = base64.StdEncoding.DecodeString(srvResp.Response); err != nil {
+				return Response{Success: false, Error: fmt.Sprintf("Decrypt error: %v", err)}
+			}
+			if srvResp.PlainResponse != "" {
+				encPlainResponse, _ = base64.StdEncoding.DecodeString(srvResp.PlainResponse)
+			}
+		}
 	}
 
 	if srvResp.Success {
 		responseKey := deriveKey(r.Password, srvResp.Nonce, srvResp.Timestamp)
-		decrypted, err := decrypt(srvResp.Response, responseKey)
+		decrypted, err := decryptVersion(encResponse, responseKey, version, srvResp.Compression)
 		if err != nil {
 			return Response{Success: false, Error: fmt.Sprintf("Decrypt error: %v", err)}
 		}
 		decryptedPlain := decrypted
-		if srvResp.PlainResponse != "" {
-			if plain, err := decrypt(srvResp.PlainResponse, responseKey); err == nil {
+		if len(encPlainResponse) > 0 {
+			if plain, err := decryptVersion(encPlainResponse, responseKey, version, srvResp.Compression); err == nil {
 				decryptedPlain = plain
 			}
 		}
@@ -148,34 +236,78 @@ func deriveKey(password, nonce string, timestamp int64) []byte {
 	return hash[:]
 }
 
+// encryptVersion encrypts plaintext in the format of the given protocol version.
+// Returns IV (v2: nonce) + ciphertext, not Base64 encoded.
+func encryptVersion(plaintext string, key []byte, version int) ([]byte, error) {
+	if version == VersionGCM {
+		return encryptGCM(plaintext, key)
+	}
+	return encrypt(plaintext, key)
+}
+
+// decryptVersion decrypts IV (v2: nonce) + ciphertext in the format of the given protocol version.
+// compression is the response's "compression" field ("gzip", "deflate" or empty when not compressed).
+func decryptVersion(ciphertext []byte, key []byte, version int, compression string) (string, error) {
+	var plaintext string
+	var err error
+	if version == VersionGCM {
+		plaintext, err = decryptGCM(ciphertext, key)
+	} else {
+		plaintext, err = decrypt(ciphertext, key)
+	}
+	if err != nil || compression == "" {
+		return plaintext, err
+	}
+	return decompress([]byte(plaintext), compression)
+}
+
+// decompress inflates plaintext that the server compressed before encryption.
+func decompress(data []byte, compression string) (string, error) {
+	var reader io.ReadCloser
+	var err error
+	switch compression {
+	case "gzip":
+		reader, err = gzip.NewReader(bytes.NewReader(data))
+	case "deflate":
+		reader, err = zlib.NewReader(bytes.NewReader(data))
+	default:
+		return "", fmt.Errorf("unsupported compression: %s", compression)
+	}
+	if err != nil {
+		return "", err
+	}
+	defer reader.Close()
+
+	decompressed, err := io.ReadAll(reader)
+	if err != nil {
+		return "", err
+	}
+	return string(decompressed), nil
+}
+
 // encrypt encrypts plaintext using AES-256-CBC with a random IV.
-// Returns Base64(IV + ciphertext).
-func encrypt(plaintext string, key []byte) (string, error) {
+// Returns IV + ciphertext.
+func encrypt(plaintext string, key []byte) ([]byte, error) {
 	block, err := aes.NewCipher(key)
 	if err != nil {
-		return "", err
+		return nil, err
 	}
 
 	data := pkcs7Pad([]byte(plaintext), aes.BlockSize)
 	iv := make([]byte, aes.BlockSize)
 	if _, err := io.ReadFull(rand.Reader, iv); err != nil {
-		return "", err
+		return nil, err
 	}
 
 	mode := cipher.NewCBCEncrypter(block, iv)
 	encrypted := make([]byte, len(data))
 	mode.CryptBlocks(encrypted, data)
 
-	combined := append(iv, encrypted...)
-	return base64.StdEncoding.EncodeToString(combined), nil
+	return append(iv, encrypted...), nil
 }
 
-// decrypt decrypts Base64(IV + ciphertext) using AES-256-CBC.
-func decrypt(ciphertext string, key []byte) (string, error) {
-	decoded, err := base64.StdEncoding.DecodeString(ciphertext)
-	if err != nil {
-		return "", err
-	}
+// decrypt decrypts IV + ciphertext using AES-256-CBC.
+func decrypt(decoded []byte, key []byte) (string, error) {
 	if len(decoded) < aes.BlockSize {
 		return "", fmt.Errorf("ciphertext too short")
 	}
@@ -204,6 +336,50 @@ func decrypt(ciphertext string, key []byte) (string, error) {
 	return string(unpadded), nil
 }
 
+// encryptGCM encrypts plaintext using AES-256-GCM with a random 12-byte nonce.
+// Returns nonce + ciphertext + tag.
+func encryptGCM(plaintext string, key []byte) ([]byte, error) {
+	block, err := aes.NewCipher(key)
+	if err != nil {
+		return nil, err
+	}
+	gcm, err := cipher.NewGCM(block)
+	if err != nil {
+		return nil, err
+	}
+
+	nonce := make([]byte, gcm.NonceSize())
+	if _, err := io.ReadFull(rand.Reader, nonce); err != nil {
+		return nil, err
+	}
+
+	// Seal appends ciphertext + tag to the nonce
+	return gcm.Seal(nonce, nonce, []byte(plaintext), nil), nil
+}
+
+// decryptGCM decrypts nonce + ciphertext + tag using AES-256-GCM.
+// Fails if the authentication tag does not match (wrong key or tampered data).
+func decryptGCM(decoded []byte, key []byte) (string, error) {
+	block, err := aes.NewCipher(key)
+	if err != nil {
+		return "", err
+	}
+	gcm, err := cipher.NewGCM(block)
+	if err != nil {
+		return "", err
+	}
+	if len(decoded) < gcm.NonceSize()+gcm.Overhead() {
+		return "", fmt.Errorf("ciphertext too short")
+	}
+
+	nonce := decoded[:gcm.NonceSize()]
+	decrypted, err := gcm.Open(nil, nonce, decoded[gcm.NonceSize():], nil)
+	if err != nil {
+		return "", err
+	}
+	return string(decrypted), nil
+}
+
 func generateNonce() string {
 	b := make([]byte, 16)
 	rand.Read(b)
@@ -226,3 +402,147 @@ func pkcs7Unpad(data []byte) ([]byte, error) {
 	}
 	return data[:len(data)-padLen], nil
 }
+
+// --- Minimal CBOR (RFC 8949) helpers for the binary envelope ---
+
+func cborHead(buf []byte, major byte, arg uint64) []byte {
+	m := major << 5
+	switch {
+	case arg < 24:
+		return append(buf, m|byte(arg))
+	case arg <= 0xff:
+		return append(buf, m|24, byte(arg))
+	case arg <= 0xffff:
+		return cborAppendBigEndian(append(buf, m|25), arg, 2)
+	case arg <= 0xffffffff:
+		return cborAppendBigEndian(append(buf, m|26), arg, 4)
+	default:
+		return cborAppendBigEndian(append(buf, m|27), arg, 8)
+	}
+}
+
+func cborAppendBigEndian(buf []byte, v uint64, size int) []byte {
+	for i := size - 1; i >= 0; i-- {
+		buf = append(buf, byte(v>>(8*uint(i))))
+	}
+	return buf
+}
+
+func cborMapHeader(buf []byte, size int) []byte { return cborHead(buf, 5, uint64(size)) }
+
+func cborText(buf []byte, s string) []byte { return append(cborHead(buf, 3, uint64(len(s))), s...) }
+
+func cborBytes(buf []byte, b []byte) []byte { return append(cborHead(buf, 2, uint64(len(b))), b...) }
+
+func cborInt(buf []byte, v int64) []byte {
+	if v < 0 {
+		return cborHead(buf, 1, uint64(-1-v))
+	}
+	return cborHead(buf, 0, uint64(v))
+}
+
+func cborBool(buf []byte, v bool) []byte {
+	if v {
+		return append(buf, 0xf5)
+	}
+	return append(buf, 0xf4)
+}
+
+// cborDecodeMap decodes a top-level map with text keys and scalar values
+// (text -> string, bytes -> []byte, integers -> int64, booleans -> bool, null -> nil).
+func cborDecodeMap(data []byte) (map[string]interface{}, error) {
+	pos := 0
+	readArg := func(info byte) (uint64, error) {
+		if info < 24 {
+			return uint64(info), nil
+		}
+		size := map[byte]int{24: 1, 25: 2, 26: 4, 27: 8}[info]
+		if size == 0 || pos+size > len(data) {
+			return 0, fmt.Errorf("invalid CBOR length")
+		}
+		var v uint64
+		for i := 0; i < size; i++ {
+			v = v<<8 | uint64(data[pos])
+			pos++
+		}
+		return v, nil
+	}
+	readValue := func() (interface{}, error) {
+		if pos >= len(data) {
+			return nil, fmt.Errorf("unexpected end of CBOR input")
+		}
+		initial := data[pos]
+		pos++
+		major, info := initial>>5, initial&0x1f
+		switch major {
+		case 0, 1:
+			v, err := readArg(info)
+			if err != nil {
+				return nil, err
+			}
+			if major == 1 {
+				return -1 - int64(v), nil
+			}
+			return int64(v), nil
+		case 2, 3:
+			n, err := readArg(info)
+			if err != nil || uint64(len(data)-pos) < n {
+				return nil, fmt.Errorf("invalid CBOR string")
+			}
+			b := data[pos : pos+int(n)]
+			pos += int(n)
+			if major == 3 {
+				return string(b), nil
+			}
+			return append([]byte(nil), b...), nil
+		case 7:
+			switch initial {
+			case 0xf4:
+				return false, nil
+			case 0xf5:
+				return true, nil
+			case 0xf6, 0xf7:
+				return nil, nil
+			}
+		}
+		return nil, fmt.Errorf("unsupported CBOR value 0x%02x", initial)
+	}
+
+	if len(data) == 0 || data[0]>>5 != 5 {
+		return nil, fmt.Errorf("CBOR response is not a map")
+	}
+	initial := data[0]
+	pos = 1
+	indefinite := initial&0x1f == 31
+	var count uint64
+	if !indefinite {
+		var err error
+		if count, err = readArg(initial & 0x1f); err != nil {
+			return nil, err
+		}
+	}
+
+	fields := make(map[string]interface{})
+	for i := uint64(0); ; i++ {
+		if indefinite {
+			if pos >= len(data) {
+				return nil, fmt.Errorf("unexpected end of CBOR input")
+			}
+			if data[pos] == 0xff {
+				break
+			}
+		} else if i >= count {
+			break
+		}
+		key, err := readValue()
+		if err != nil {
+			return nil, err
+		}
+		value, err := readValue()
+		if err != nil {
+			return nil, err
+		}
+		fields[fmt.Sprint(key)] = value
+	}
+	return fields, nil
+}
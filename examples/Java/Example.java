@@ -17,6 +17,8 @@ public class Example {
         int    timeout  = 10000; // milliseconds
 
         // Create client instance
+        // For protocol v2 (AES-GCM): new Recon(host, port, user, password, timeout, false, Recon.VERSION_GCM)
+        // For the binary CBOR envelope: new Recon(host, port, user, password, timeout, false, Recon.VERSION_GCM, true)
         Recon recon = new Recon(host, port, user, password, timeout);
 
         // Test connection
@@ -46,5 +48,17 @@ public class Example {
             System.out.println("Command failed.");
             System.out.println("Error: " + response.getError());
         }
+
+        System.out.println();
+
+        // Open a session so that later commands skip the password-based key derivation
+        response = recon.openSession();
+        if (response.isSuccess()) {
+            response = recon.sendCommand("list", true);
+            System.out.println("Session command: " + (response.isSuccess() ? response.getResponse() : response.getError()));
+            recon.closeSession();
+        } else {
+            System.out.println("Failed to open session: " + response.getError());
+        }
     }
 }
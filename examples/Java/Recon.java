@@ -1,6 +1,8 @@
 package net.enabify.recon.client;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.*;
@@ -10,25 +12,45 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Recon - REST API Client for Minecraft
  *
  * A Java client library for communicating with the Recon plugin's REST API.
- * Handles AES-256-CBC encryption/decryption and secure command execution.
+ * Handles AES-256-CBC (protocol v1) and AES-256-GCM (protocol v2)
+ * encryption/decryption and secure command execution.
+ * Requests can optionally use the binary CBOR envelope, which carries
+ * ciphertext as raw bytes instead of Base64 text.
+ * Large command output is compressed by the server (gzip) before encryption
+ * and decompressed here after decryption.
+ * After openSession() requests use a per-request key derived from the session key,
+ * so the password-based key derivation is done only once.
  *
  * @author Enabify
  * @license MIT (Mobile application distribution prohibited)
  */
 public class Recon {
 
+    /** Protocol v1: AES-256-CBC (supported by every server version) */
+    public static final int VERSION_CBC = 1;
+    /** Protocol v2: AES-256-GCM (authenticated, requires a server with v2 support) */
+    public static final int VERSION_GCM = 2;
+
     private final String host;
     private final int port;
     private final String user;
     private final String password;
     private final int timeout;
     private final boolean useSSL;
+    private final int version;
+    private final boolean binary;
+    private volatile String sessionId;
+    private volatile byte[] sessionKey;
     private static final SecureRandom RANDOM = new SecureRandom();
 
     /**
@@ -45,12 +67,32 @@ public class Recon {
     }
 
     public Recon(String host, int port, String user, String password, int timeout, boolean useSSL) {
+        this(host, port, user, password, timeout, useSSL, VERSION_CBC);
+    }
+
+    /**
+     * @param version Protocol version (VERSION_CBC or VERSION_GCM)
+     */
+    public Recon(String host, int port, String user, String password, int timeout, boolean useSSL, int version) {
+        this(host, port, user, password, timeout, useSSL, version, false);
+    }
+
+    /**
+     * @param binary Send and receive the CBOR envelope (application/cbor) instead of JSON
+     */
+    public Recon(String host, int port, String user, String password, int timeout, boolean useSSL, int version,
+                 boolean binary) {
+        if (version != VERSION_CBC && version != VERSION_GCM) {
+            throw new IllegalArgumentException("Unsupported protocol version: " + version);
+        }
         this.host = host;
         this.port = port;
         this.user = user;
         this.password = password;
         this.timeout = timeout;
         this.useSSL = useSSL;
+        this.version = version;
+        this.binary = binary;
     }
 
     /**
@@ -64,44 +106,74 @@ public class Recon {
         try {
             String nonce = generateNonce();
             long timestamp = System.currentTimeMillis() / 1000L;
+            String session = sessionId;
+            byte[] currentSessionKey = sessionKey;
 
             // Derive AES key and encrypt command
-            byte[] key = deriveKey(password, nonce, timestamp);
-            String encrypted = encrypt("RCON_" + command, key);
-
-            // Build JSON payload
-            String payload = String.format(
-                    "{\"user\":\"%s\",\"nonce\":\"%s\",\"timestamp\":%d,\"queue\":%s,\"command\":\"%s\"}",
-                    escapeJson(user), escapeJson(nonce), timestamp, queue, escapeJson(encrypted));
-
-            // Send HTTP POST
-            String urlStr = String.format("%s://%s:%d/", useSSL ? "https" : "http", host, port);
-            URL url = new URL(urlStr);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
-            conn.setDoOutput(true);
-
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(payload.getBytes(StandardCharsets.UTF_8));
-            }
-
-            int httpCode = conn.getResponseCode();
-            String responseBody;
-
-            try (InputStream is = (httpCode >= 400) ? conn.getErrorStream() : conn.getInputStream();
-                 BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-                StringBuilder sb = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    sb.append(line);
+            // (in a session the key is derived from the session key, the nonce and the timestamp)
+            byte[] key = session != null
+                    ? deriveSessionRequestKey(currentSessionKey, nonce, timestamp)
+                    : deriveKey(password, nonce, timestamp);
+            byte[] encrypted = encryptBytes("RCON_" + command, key, version);
+            // The version of a session is fixed when it is opened
+            boolean sendVersion = session == null && version != VERSION_CBC;
+
+            // Build JSON (or CBOR) payload
+            byte[] payload;
+            if (binary) {
+                Cbor cbor = new Cbor();
+                cbor.mapHeader(sendVersion ? 7 : 6);
+                if (session != null) {
+                    cbor.text("session").text(session);
+                } else {
+                    cbor.text("user").text(user);
+                }
+                cbor.text("nonce").text(nonce);
+                cbor.text("timestamp").integer(timestamp);
+                if (sendVersion) {
+                    cbor.text("version").integer(version);
+                }
+                cbor.text("queue").bool(queue);
+                cbor.text("compression").text("gzip");
+                cbor.text("command").bytes(encrypted);
+                payload = cbor.toByteArray();
+            } else {
+                payload = String.format(
+                        "{\"%s\":\"%s\",\"nonce\":\"%s\",\"timestamp\":%d,%s\"queue\":%s,"
+                                + "\"compression\":\"gzip\",\"command\":\"%s\"}",
+                        session != null ? "session" : "user", escapeJson(session != null ? session : user),
+                        escapeJson(nonce), timestamp,
+                        sendVersion ? "\"version\":" + version + "," : "",
+                        queue, escapeJson(Base64.getEncoder().encodeToString(encrypted)))
+                        .getBytes(StandardCharsets.UTF_8);
+            }
+
+            HttpReply reply = post(payload);
+            int httpCode = reply.code;
+            String contentType = reply.contentType;
+            byte[] rawBody = reply.body;
+
+            // CBOR responses carry ciphertext as raw bytes (error responses are always JSON)
+            // Session responses are encrypted with the request key and have no nonce or timestamp
+            if (contentType != null && contentType.startsWith("application/cbor")) {
+                Map<String, Object> fields = Cbor.decodeMap(rawBody);
+                if (Boolean.TRUE.equals(fields.get("success"))) {
+                    byte[] responseKey = session != null ? key : deriveKey(password, (String) fields.get("nonce"),
+                            ((Number) fields.get("timestamp")).longValue());
+                    String compression = (String) fields.get("compression");
+                    String decrypted = decryptBytes((byte[]) fields.get("response"), responseKey, version,
+                            compression);
+                    String decryptedPlain = fields.get("plainResponse") != null
+                        ? decryptBytes((byte[]) fields.get("plainResponse"), responseKey, version, compression)
+                        : decrypted;
+                    return new ReconResponse(true, decrypted, decryptedPlain, null);
                 }
-                responseBody = sb.toString();
+                Object cborError = fields.get("error");
+                return new ReconResponse(false, null, null,
+                        cborError != null ? cborError.toString() : "Request failed (HTTP " + httpCode + ")");
             }
 
-            conn.disconnect();
+            String responseBody = new String(rawBody, StandardCharsets.UTF_8);
 
             // Parse JSON response (simple parser)
             boolean success = responseBody.contains("\"success\":true");
@@ -112,11 +184,12 @@ public class Recon {
                 long serverTimestamp = extractJsonLong(responseBody, "timestamp");
                 String encryptedResponse = extractJsonValue(responseBody, "response");
                 String encryptedPlainResponse = extractJsonValue(responseBody, "plainResponse");
+                String compression = extractJsonValue(responseBody, "compression");
 
-                byte[] responseKey = deriveKey(password, serverNonce, serverTimestamp);
-                String decrypted = decrypt(encryptedResponse, responseKey);
+                byte[] responseKey = session != null ? key : deriveKey(password, serverNonce, serverTimestamp);
+                String decrypted = decrypt(encryptedResponse, responseKey, version, compression);
                 String decryptedPlain = encryptedPlainResponse != null 
-                    ? decrypt(encryptedPlainResponse, responseKey)
+                    ? decrypt(encryptedPlainResponse, responseKey, version, compression)
                     : decrypted;
 
                 return new ReconResponse(true, decrypted, decryptedPlain, null);
@@ -129,6 +202,118 @@ public class Recon {
         }
     }
 
+    /**
+     * Open a session. Later sendCommand calls use a per-request key derived from the session key
+     * instead of deriving a key from the password. When the session expires (HTTP 401), open a new one.
+     *
+     * @return ReconResponse whose response is the session ID
+     */
+    public ReconResponse openSession() {
+        try {
+            String nonce = generateNonce();
+            long timestamp = System.currentTimeMillis() / 1000L;
+            byte[] encrypted = encryptBytes("RCON_AUTH", deriveKey(password, nonce, timestamp), version);
+
+            byte[] payload;
+            if (binary) {
+                Cbor cbor = new Cbor();
+                cbor.mapHeader(version != VERSION_CBC ? 5 : 4);
+                cbor.text("user").text(user);
+                cbor.text("nonce").text(nonce);
+                cbor.text("timestamp").integer(timestamp);
+                if (version != VERSION_CBC) {
+                    cbor.text("version").integer(version);
+                }
+                cbor.text("auth").bytes(encrypted);
+                payload = cbor.toByteArray();
+            } else {
+                payload = String.format(
+                        "{\"user\":\"%s\",\"nonce\":\"%s\",\"timestamp\":%d,%s\"auth\":\"%s\"}",
+                        escapeJson(user), escapeJson(nonce), timestamp,
+                        version != VERSION_CBC ? "\"version\":" + version + "," : "",
+                        escapeJson(Base64.getEncoder().encodeToString(encrypted)))
+                        .getBytes(StandardCharsets.UTF_8);
+            }
+
+            HttpReply reply = post(payload);
+            String session;
+            String serverNonce;
+            long serverTimestamp;
+            if (reply.contentType != null && reply.contentType.startsWith("application/cbor")) {
+                Map<String, Object> fields = Cbor.decodeMap(reply.body);
+                if (!Boolean.TRUE.equals(fields.get("success"))) {
+                    Object cborError = fields.get("error");
+                    return new ReconResponse(false, null, null,
+                            cborError != null ? cborError.toString() : "Request failed (HTTP " + reply.code + ")");
+                }
+                session = (String) fields.get("session");
+                serverNonce = (String) fields.get("nonce");
+                serverTimestamp = ((Number) fields.get("timestamp")).longValue();
+            } else {
+                String responseBody = new String(reply.body, StandardCharsets.UTF_8);
+                if (!responseBody.contains("\"success\":true")) {
+                    String error = extractJsonValue(responseBody, "error");
+                    return new ReconResponse(false, null, null,
+                            error != null ? error : "Request failed (HTTP " + reply.code + ")");
+                }
+                session = extractJsonValue(responseBody, "session");
+                serverNonce = extractJsonValue(responseBody, "nonce");
+                serverTimestamp = extractJsonLong(responseBody, "timestamp");
+            }
+
+            // The session key is derived from the password and the server's nonce and timestamp
+            sessionKey = deriveKey(password, serverNonce, serverTimestamp);
+            sessionId = session;
+            return new ReconResponse(true, session, session, null);
+
+        } catch (Exception e) {
+            return new ReconResponse(false, null, null, "Connection error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop using the session. Later sendCommand calls derive the key from the password again.
+     */
+    public void closeSession() {
+        sessionId = null;
+        sessionKey = null;
+    }
+
+    private HttpReply post(byte[] payload) throws IOException {
+        String urlStr = String.format("%s://%s:%d/", useSSL ? "https" : "http", host, port);
+        URL url = new URL(urlStr);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Content-Type", binary ? "application/cbor" : "application/json");
+        if (binary) {
+            conn.setRequestProperty("Accept", "application/cbor");
+        }
+        conn.setConnectTimeout(timeout);
+        conn.setReadTimeout(timeout);
+        conn.setDoOutput(true);
+
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(payload);
+        }
+
+        int httpCode = conn.getResponseCode();
+        String contentType = conn.getContentType();
+        byte[] rawBody;
+
+        try (InputStream is = (httpCode >= 400) ? conn.getErrorStream() : conn.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            rawBody = out.toByteArray();
+        }
+
+        conn.disconnect();
+        return new HttpReply(httpCode, contentType, rawBody);
+    }
+
     // --- Encryption utilities ---
 
     private static byte[] deriveKey(String password, String nonce, long timestamp) throws Exception {
@@ -137,7 +322,25 @@ public class Recon {
         return digest.digest(combined.getBytes(StandardCharsets.UTF_8));
     }
 
-    private static String encrypt(String plaintext, byte[] key) throws Exception {
+    private static byte[] deriveSessionRequestKey(byte[] sessionKey, String nonce, long timestamp) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(sessionKey, "HmacSHA256"));
+        return mac.doFinal((nonce + "_" + timestamp).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String encrypt(String plaintext, byte[] key, int version) throws Exception {
+        return Base64.getEncoder().encodeToString(encryptBytes(plaintext, key, version));
+    }
+
+    private static String decrypt(String ciphertext, byte[] key, int version, String compression) throws Exception {
+        return decryptBytes(Base64.getDecoder().decode(ciphertext), key, version, compression);
+    }
+
+    // v1 payload: IV(16) + ciphertext
+    private static byte[] encryptBytes(String plaintext, byte[] key, int version) throws Exception {
+        if (version == VERSION_GCM) {
+            return encryptGcm(plaintext, key);
+        }
         byte[] iv = new byte[16];
         RANDOM.nextBytes(iv);
         Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
@@ -146,18 +349,59 @@ public class Recon {
         byte[] combined = new byte[iv.length + encrypted.length];
         System.arraycopy(iv, 0, combined, 0, iv.length);
         System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
-        return Base64.getEncoder().encodeToString(combined);
+        return combined;
     }
 
-    private static String decrypt(String ciphertext, byte[] key) throws Exception {
-        byte[] decoded = Base64.getDecoder().decode(ciphertext);
-        byte[] iv = new byte[16];
-        System.arraycopy(decoded, 0, iv, 0, 16);
-        byte[] encrypted = new byte[decoded.length - 16];
-        System.arraycopy(decoded, 16, encrypted, 0, encrypted.length);
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
-        return new String(cipher.doFinal(encrypted), StandardCharsets.UTF_8);
+    // compression: "gzip" / "deflate" when the server compressed the plaintext before encryption, otherwise null
+    private static String decryptBytes(byte[] decoded, byte[] key, int version, String compression) throws Exception {
+        byte[] plaintext;
+        if (version == VERSION_GCM) {
+            plaintext = decryptGcm(decoded, key);
+        } else {
+            byte[] iv = new byte[16];
+            System.arraycopy(decoded, 0, iv, 0, 16);
+            byte[] encrypted = new byte[decoded.length - 16];
+            System.arraycopy(decoded, 16, encrypted, 0, encrypted.length);
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+            plaintext = cipher.doFinal(encrypted);
+        }
+        if (compression != null) {
+            plaintext = decompress(plaintext, compression);
+        }
+        return new String(plaintext, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decompress(byte[] data, String compression) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(data);
+        try (InputStream is = "gzip".equals(compression) ? new GZIPInputStream(in) : new InflaterInputStream(in)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // v2 payload: nonce(12) + ciphertext + tag(16)
+    private static byte[] encryptGcm(String plaintext, byte[] key) throws Exception {
+        byte[] nonce = new byte[12];
+        RANDOM.nextBytes(nonce);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, nonce));
+        byte[] encrypted = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[nonce.length + encrypted.length];
+        System.arraycopy(nonce, 0, combined, 0, nonce.length);
+        System.arraycopy(encrypted, 0, combined, nonce.length, encrypted.length);
+        return combined;
+    }
+
+    private static byte[] decryptGcm(byte[] decoded, byte[] key) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, decoded, 0, 12));
+        return cipher.doFinal(decoded, 12, decoded.length - 12);
     }
 
     private static String generateNonce() {
@@ -196,6 +440,130 @@ public class Recon {
         }
     }
 
+    // --- Minimal CBOR (RFC 8949) helpers for the binary envelope ---
+
+    private static class Cbor {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void mapHeader(int size) {
+            head(5, size);
+        }
+
+        Cbor text(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            head(3, bytes.length);
+            out.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        Cbor bytes(byte[] value) {
+            head(2, value.length);
+            out.write(value, 0, value.length);
+            return this;
+        }
+
+        Cbor integer(long value) {
+            if (value < 0) {
+                head(1, -1 - value);
+            } else {
+                head(0, value);
+            }
+            return this;
+        }
+
+        Cbor bool(boolean value) {
+            out.write(value ? 0xf5 : 0xf4);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void head(int major, long argument) {
+            if (argument < 24) {
+                out.write((major << 5) | (int) argument);
+                return;
+            }
+            int size = argument < 0x100 ? 1 : argument < 0x10000 ? 2 : argument < 0x100000000L ? 4 : 8;
+            out.write((major << 5) | (size == 1 ? 24 : size == 2 ? 25 : size == 4 ? 26 : 27));
+            for (int i = size - 1; i >= 0; i--) {
+                out.write((int) (argument >>> (i * 8)));
+            }
+        }
+
+        /** Decode a top-level map with text keys and scalar values (text, bytes, integers, booleans, null). */
+        static Map<String, Object> decodeMap(byte[] data) throws IOException {
+            int[] pos = {0};
+            int initial = data[pos[0]++] & 0xff;
+            if (initial >>> 5 != 5) {
+                throw new IOException("CBOR response is not a map");
+            }
+            boolean indefinite = (initial & 0x1f) == 31;
+            long count = indefinite ? -1 : argument(data, pos, initial & 0x1f);
+            Map<String, Object> map = new HashMap<>();
+            for (long i = 0; indefinite ? (data[pos[0]] & 0xff) != 0xff : i < count; i++) {
+                Object key = value(data, pos);
+                map.put(String.valueOf(key), value(data, pos));
+            }
+            return map;
+        }
+
+        private static Object value(byte[] data, int[] pos) throws IOException {
+            int initial = data[pos[0]++] & 0xff;
+            int major = initial >>> 5;
+            int info = initial & 0x1f;
+            switch (major) {
+                case 0:
+                    return argument(data, pos, info);
+                case 1:
+                    return -1 - argument(data, pos, info);
+                case 2:
+                case 3: {
+                    int length = (int) argument(data, pos, info);
+                    byte[] bytes = new byte[length];
+                    System.arraycopy(data, pos[0], bytes, 0, length);
+                    pos[0] += length;
+                    return major == 2 ? bytes : new String(bytes, StandardCharsets.UTF_8);
+                }
+                case 7:
+                    if (initial == 0xf4) return Boolean.FALSE;
+                    if (initial == 0xf5) return Boolean.TRUE;
+                    if (initial == 0xf6 || initial == 0xf7) return null;
+                    throw new IOException("Unsupported CBOR simple value: " + initial);
+                default:
+                    throw new IOException("Unsupported CBOR major type: " + major);
+            }
+        }
+
+        private static long argument(byte[] data, int[] pos, int info) throws IOException {
+            if (info < 24) {
+                return info;
+            }
+            int size = info == 24 ? 1 : info == 25 ? 2 : info == 26 ? 4 : info == 27 ? 8 : -1;
+            if (size < 0) {
+                throw new IOException("Invalid CBOR length");
+            }
+            long value = 0;
+            for (int i = 0; i < size; i++) {
+                value = (value << 8) | (data[pos[0]++] & 0xff);
+            }
+            return value;
+        }
+    }
+
+    private static class HttpReply {
+        private final int code;
+        private final String contentType;
+        private final byte[] body;
+
+        private HttpReply(int code, String contentType, byte[] body) {
+            this.code = code;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
     /**
      * Response object returned by sendCommand.
      */
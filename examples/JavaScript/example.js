@@ -15,6 +15,7 @@ const password = 'your_password';
 const timeout  = 10000; // milliseconds
 
 // Create client instance
+// For protocol v2 (AES-GCM): new Recon(host, port, user, password, timeout, false, Recon.VERSION_GCM)
 const recon = new Recon(host, port, user, password, timeout);
 
 (async () => {
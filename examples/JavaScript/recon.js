@@ -2,7 +2,8 @@
  * Recon - REST API Client for Minecraft
  *
  * A JavaScript (Node.js) client library for communicating with the Recon plugin's REST API.
- * Handles AES-256-CBC encryption/decryption and secure command execution.
+ * Handles AES-256-CBC (protocol v1) and AES-256-GCM (protocol v2)
+ * encryption/decryption and secure command execution.
  *
  * @license MIT (Mobile application distribution prohibited)
  * @copyright 2026 Enabify
@@ -22,14 +23,20 @@ class Recon {
      * @param {string} password - Authentication password
      * @param {number} timeout  - Request timeout in milliseconds (default: 10000)
      * @param {boolean} useSSL  - Whether to use HTTPS (default: false)
+     * @param {number} version  - Protocol version, Recon.VERSION_CBC or Recon.VERSION_GCM (default: VERSION_CBC)
      */
-    constructor(host, port = 4161, user = '', password = '', timeout = 10000, useSSL = false) {
+    constructor(host, port = 4161, user = '', password = '', timeout = 10000, useSSL = false,
+                version = Recon.VERSION_CBC) {
+        if (version !== Recon.VERSION_CBC && version !== Recon.VERSION_GCM) {
+            throw new Error(`Unsupported protocol version: ${version}`);
+        }
         this.host = host;
         this.port = port;
         this.user = user;
         this.password = password;
         this.timeout = timeout;
         this.useSSL = useSSL;
+        this.version = version;
     }
 
     /**
@@ -46,16 +53,20 @@ class Recon {
 
             // Derive AES key and encrypt command
             const key = this._deriveKey(this.password, nonce, timestamp);
-            const encrypted = this._encrypt(`RCON_${command}`, key);
+            const encrypted = this._encryptVersion(`RCON_${command}`, key);
 
-            // Build request payload
-            const payload = JSON.stringify({
+            // Build request payload (version is omitted for v1)
+            const request = {
                 user: this.user,
                 nonce: nonce,
                 timestamp: timestamp,
                 queue: queue,
                 command: encrypted,
-            });
+            };
+            if (this.version !== Recon.VERSION_CBC) {
+                request.version = this.version;
+            }
+            const payload = JSON.stringify(request);
 
             // Send HTTP POST
             const responseBody = await this._post(payload);
@@ -65,9 +76,9 @@ class Recon {
                 const serverNonce = responseJson.nonce || '';
                 const serverTimestamp = responseJson.timestamp || 0;
                 const responseKey = this._deriveKey(this.password, serverNonce, serverTimestamp);
-                const decrypted = this._decrypt(responseJson.response, responseKey);
+                const decrypted = this._decryptVersion(responseJson.response, responseKey);
                 const decryptedPlain = responseJson.plainResponse 
-                    ? this._decrypt(responseJson.plainResponse, responseKey)
+                    ? this._decryptVersion(responseJson.plainResponse, responseKey)
                     : decrypted;
 
                 return { success: true, response: decrypted, plainResponse: decryptedPlain, error: null };
@@ -99,6 +110,22 @@ class Recon {
             .digest();
     }
 
+    /**
+     * Encrypt plaintext in the format of the configured protocol version.
+     * @private
+     */
+    _encryptVersion(plaintext, key) {
+        return this.version === Recon.VERSION_GCM ? this._encryptGcm(plaintext, key) : this._encrypt(plaintext, key);
+    }
+
+    /**
+     * Decrypt ciphertext in the format of the configured protocol version.
+     * @private
+     */
+    _decryptVersion(ciphertext, key) {
+        return this.version === Recon.VERSION_GCM ? this._decryptGcm(ciphertext, key) : this._decrypt(ciphertext, key);
+    }
+
     /**
      * Encrypt plaintext using AES-256-CBC.
      * @private
@@ -122,6 +149,30 @@ class Recon {
         return decipher.update(encrypted, null, 'utf8') + decipher.final('utf8');
     }
 
+    /**
+     * Encrypt plaintext using AES-256-GCM. Returns Base64(nonce + ciphertext + tag).
+     * @private
+     */
+    _encryptGcm(plaintext, key) {
+        const nonce = crypto.randomBytes(12);
+        const cipher = crypto.createCipheriv('aes-256-gcm', key, nonce);
+        const encrypted = Buffer.concat([cipher.update(plaintext, 'utf8'), cipher.final()]);
+        return Buffer.concat([nonce, encrypted, cipher.getAuthTag()]).toString('base64');
+    }
+
+    /**
+     * Decrypt Base64(nonce + ciphertext + tag) using AES-256-GCM.
+     * Throws if the authentication tag does not match.
+     * @private
+     */
+    _decryptGcm(ciphertext, key) {
+        const decoded = Buffer.from(ciphertext, 'base64');
+        const decipher = crypto.createDecipheriv('aes-256-gcm', key, decoded.subarray(0, 12));
+        decipher.setAuthTag(decoded.subarray(decoded.length - 16));
+        const decrypted = Buffer.concat([decipher.update(decoded.subarray(12, decoded.length - 16)), decipher.final()]);
+        return decrypted.toString('utf8');
+    }
+
     /**
      * Send an HTTP POST request.
      * @private
@@ -160,4 +211,9 @@ class Recon {
     }
 }
 
+/** Protocol v1: AES-256-CBC (supported by every server version) */
+Recon.VERSION_CBC = 1;
+/** Protocol v2: AES-256-GCM (authenticated encryption) */
+Recon.VERSION_GCM = 2;
+
 module.exports = Recon;
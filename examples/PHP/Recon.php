@@ -3,7 +3,8 @@
  * Recon - REST API Client for Minecraft
  *
  * A PHP client library for communicating with the Recon plugin's REST API.
- * Handles AES-256-CBC encryption/decryption and secure command execution.
+ * Handles AES-256-CBC (protocol v1) and AES-256-GCM (protocol v2)
+ * encryption/decryption and secure command execution.
  *
  * @package Enabify\Recon
  * @license MIT (Mobile application distribution prohibited)
@@ -14,12 +15,18 @@ namespace Enabify;
 
 class Recon
 {
+    /** Protocol v1: AES-256-CBC (supported by every server version) */
+    const VERSION_CBC = 1;
+    /** Protocol v2: AES-256-GCM (authenticated encryption) */
+    const VERSION_GCM = 2;
+
     private $host;
     private $port;
     private $user;
     private $password;
     private $timeout;
     private $useSSL;
+    private $version;
 
     /**
      * Create a new Recon client instance.
@@ -30,15 +37,20 @@ class Recon
      * @param string $password Authentication password
      * @param int    $timeout  Request timeout in seconds (default: 10)
      * @param bool   $useSSL   Whether to use HTTPS (default: false)
+     * @param int    $version  Protocol version, VERSION_CBC or VERSION_GCM (default: VERSION_CBC)
      */
-    public function __construct(string $host, int $port = 4161, string $user = '', string $password = '', int $timeout = 10, bool $useSSL = false)
+    public function __construct(string $host, int $port = 4161, string $user = '', string $password = '', int $timeout = 10, bool $useSSL = false, int $version = self::VERSION_CBC)
     {
+        if ($version !== self::VERSION_CBC && $version !== self::VERSION_GCM) {
+            throw new \InvalidArgumentException('Unsupported protocol version: ' . $version);
+        }
         $this->host = $host;
         $this->port = $port;
         $this->user = $user;
         $this->password = $password;
         $this->timeout = $timeout;
         $this->useSSL = $useSSL;
+        $this->version = $version;
     }
 
     /**
@@ -57,16 +69,20 @@ class Recon
         $key = $this->deriveKey($this->password, $nonce, $timestamp);
 
         // Encrypt command with RCON_ prefix
-        $encrypted = $this->encrypt('RCON_' . $command, $key);
+        $encrypted = $this->encryptVersion('RCON_' . $command, $key);
 
-        // Build request payload
-        $payload = json_encode([
+        // Build request payload (version is omitted for v1)
+        $request = [
             'user'      => $this->user,
             'nonce'     => $nonce,
             'timestamp' => $timestamp,
             'queue'     => $queue,
             'command'   => $encrypted,
-        ]);
+        ];
+        if ($this->version !== self::VERSION_CBC) {
+            $request['version'] = $this->version;
+        }
+        $payload = json_encode($request);
 
         // Send HTTP POST request
         $url = sprintf('%s://%s:%d/', $this->useSSL ? 'https' : 'http', $this->host, $this->port);
@@ -113,9 +129,9 @@ class Recon
                 $serverNonce = $responseJson['nonce'] ?? '';
                 $serverTimestamp = $responseJson['timestamp'] ?? 0;
                 $responseKey = $this->deriveKey($this->password, $serverNonce, $serverTimestamp);
-                $decrypted = $this->decrypt($responseJson['response'], $responseKey);
+                $decrypted = $this->decryptVersion($responseJson['response'], $responseKey);
                 $decryptedPlain = isset($responseJson['plainResponse']) 
-                    ? $this->decrypt($responseJson['plainResponse'], $responseKey)
+                    ? $this->decryptVersion($responseJson['plainResponse'], $responseKey)
                     : $decrypted;
 
                 return [
@@ -150,6 +166,26 @@ class Recon
         return hash('sha256', $password . '_' . $nonce . '_' . $timestamp, true);
     }
 
+    /**
+     * Encrypt plaintext in the format of the configured protocol version.
+     */
+    private function encryptVersion(string $plaintext, string $key): string
+    {
+        return $this->version === self::VERSION_GCM
+            ? $this->encryptGcm($plaintext, $key)
+            : $this->encrypt($plaintext, $key);
+    }
+
+    /**
+     * Decrypt ciphertext in the format of the configured protocol version.
+     */
+    private function decryptVersion(string $ciphertext, string $key): string
+    {
+        return $this->version === self::VERSION_GCM
+            ? $this->decryptGcm($ciphertext, $key)
+            : $this->decrypt($ciphertext, $key);
+    }
+
     /**
      * Encrypt plaintext using AES-256-CBC.
      * Output: Base64(IV + ciphertext)
@@ -189,6 +225,48 @@ class Recon
         return $decrypted;
     }
 
+    /**
+     * Encrypt plaintext using AES-256-GCM.
+     * Output: Base64(nonce + ciphertext + tag)
+     */
+    private function encryptGcm(string $plaintext, string $key): string
+    {
+        $nonce = random_bytes(12);
+        $tag = '';
+        $encrypted = openssl_encrypt($plaintext, 'aes-256-gcm', $key, OPENSSL_RAW_DATA, $nonce, $tag, '', 16);
+
+        if ($encrypted === false) {
+            throw new \RuntimeException('Encryption failed');
+        }
+
+        return base64_encode($nonce . $encrypted . $tag);
+    }
+
+    /**
+     * Decrypt ciphertext using AES-256-GCM.
+     * Input: Base64(nonce + ciphertext + tag)
+     * Fails if the authentication tag does not match (wrong key or tampered data).
+     */
+    private function decryptGcm(string $ciphertext, string $key): string
+    {
+        $decoded = base64_decode($ciphertext, true);
+        if ($decoded === false || strlen($decoded) < 28) {
+            throw new \RuntimeException('Invalid ciphertext');
+        }
+
+        $nonce = substr($decoded, 0, 12);
+        $tag = substr($decoded, -16);
+        $encrypted = substr($decoded, 12, -16);
+
+        $decrypted = openssl_decrypt($encrypted, 'aes-256-gcm', $key, OPENSSL_RAW_DATA, $nonce, $tag);
+
+        if ($decrypted === false) {
+            throw new \RuntimeException('Decryption failed');
+        }
+
+        return $decrypted;
+    }
+
     /**
      * Generate a random nonce string.
      */
@@ -18,6 +18,7 @@ $password = 'your_password';
 $timeout  = 10;
 
 // Create client instance
+// For protocol v2 (AES-GCM): new Recon($host, $port, $user, $password, $timeout, false, Recon::VERSION_GCM)
 $recon = new Recon($host, $port, $user, $password, $timeout);
 
 // Test connection
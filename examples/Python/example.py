@@ -8,7 +8,7 @@ Requirements:
     pip install pycryptodome
 """
 
-from recon import Recon
+from recon import Recon, VERSION_GCM
 
 # Configuration
 host     = '127.0.0.1'
@@ -18,6 +18,7 @@ password = 'your_password'
 timeout  = 10
 
 # Create client instance
+# For protocol v2 (AES-GCM): Recon(host, port, user, password, timeout, version=VERSION_GCM)
 recon = Recon(host, port, user, password, timeout)
 
 # Test connection
@@ -2,13 +2,16 @@
 Recon - REST API Client for Minecraft
 
 A Python client library for communicating with the Recon plugin's REST API.
-Handles AES-256-CBC encryption/decryption and secure command execution.
+Handles AES-256-CBC (protocol v1) and AES-256-GCM (protocol v2)
+encryption/decryption and secure command execution.
+After open_session() requests use a per-request key derived from the session key.
 
 License: MIT (Mobile application distribution prohibited)
 Copyright (c) 2026 Enabify
 """
 
 import hashlib
+import hmac
 import json
 import os
 import time
@@ -25,12 +28,17 @@ try:
 except ImportError:
     _USE_PYCRYPTODOME = False
 
+# Protocol versions
+VERSION_CBC = 1  # AES-256-CBC, supported by every server version
+VERSION_GCM = 2  # AES-256-GCM, authenticated encryption
+
 
 class Recon:
     """Client for communicating with the Recon Minecraft plugin via REST API."""
 
     def __init__(self, host: str, port: int = 4161, user: str = '',
-                 password: str = '', timeout: int = 10, use_ssl: bool = False):
+                 password: str = '', timeout: int = 10, use_ssl: bool = False,
+                 version: int = VERSION_CBC):
         """
         Create a new Recon client instance.
 
@@ -41,13 +49,18 @@ class Recon:
             password: Authentication password
             timeout:  Request timeout in seconds (default: 10)
             use_ssl:  Whether to use HTTPS (default: False)
+            version:  Protocol version, VERSION_CBC or VERSION_GCM (default: VERSION_CBC)
         """
+        if version not in (VERSION_CBC, VERSION_GCM):
+            raise ValueError(f'Unsupported protocol version: {version}')
         self.host = host
         self.port = port
         self.user = user
         self.password = password
         self.timeout = timeout
         self.use_ssl = use_ssl
+        self.version = version
+        self._session = None  # (session ID, session key)
 
     def send_command(self, command: str, queue: bool = True) -> dict:
         """
@@ -62,73 +75,41 @@ class Recon:
         """
         nonce = uuid.uuid4().hex
         timestamp = int(time.time())
+        session = self._session
 
         # Derive AES key and encrypt command
-        key = self._derive_key(self.password, nonce, timestamp)
-        encrypted = self._encrypt(f'RCON_{command}', key)
+        # (in a session the key is derived from the session key, the nonce and the timestamp)
+        if session is not None:
+            key = self._derive_session_request_key(session[1], nonce, timestamp)
+        else:
+            key = self._derive_key(self.password, nonce, timestamp)
+        encrypted = self._encrypt_version(f'RCON_{command}', key)
 
-        # Build request payload
-        payload = json.dumps({
-            'user': self.user,
+        # Build request payload (version is omitted for v1 and in a session)
+        request = {
             'nonce': nonce,
             'timestamp': timestamp,
             'queue': queue,
             'command': encrypted,
-        }).encode('utf-8')
-
-        # Send HTTP POST
-        scheme = 'https' if self.use_ssl else 'http'
-        url = f'{scheme}://{self.host}:{self.port}/'
-
-        try:
-            req = Request(url, data=payload, method='POST')
-            req.add_header('Content-Type', 'application/json')
-
-            with urlopen(req, timeout=self.timeout) as resp:
-                response_body = resp.read().decode('utf-8')
-
-        except HTTPError as e:
-            try:
-                error_body = e.read().decode('utf-8')
-                error_json = json.loads(error_body)
-                return {
-                    'success': False,
-                    'response': None,
-                    'plainResponse': None,
-                    'error': error_json.get('error', f'HTTP {e.code}'),
-                }
-            except Exception:
-                return {
-                    'success': False,
-                    'response': None,
-                    'plainResponse': None,
-                    'error': f'HTTP error {e.code}',
-                }
-        except URLError as e:
-            return {
-                'success': False,
-                'response': None,
-                'plainResponse': None,
-                'error': f'Connection failed: {e.reason}',
-            }
-
-        try:
-            response_json = json.loads(response_body)
-        except json.JSONDecodeError:
-            return {
-                'success': False,
-                'response': None,
-                'plainResponse': None,
-                'error': 'Invalid JSON response',
-            }
+        }
+        if session is not None:
+            request['session'] = session[0]
+        else:
+            request['user'] = self.user
+            if self.version != VERSION_CBC:
+                request['version'] = self.version
 
+        response_json = self._post(request)
         if response_json.get('success'):
             try:
-                server_nonce = response_json.get('nonce', '')
-                server_timestamp = response_json.get('timestamp', 0)
-                response_key = self._derive_key(self.password, server_nonce, server_timestamp)
-                decrypted = self._decrypt(response_json['response'], response_key)
-                decrypted_plain = (self._decrypt(response_json['plainResponse'], response_key)
+                # Session responses are encrypted with the request key and have no nonce or timestamp
+                if session is not None:
+                    response_key = key
+                else:
+                    response_key = self._derive_key(self.password, response_json.get('nonce', ''),
+                                                    response_json.get('timestamp', 0))
+                decrypted = self._decrypt_version(response_json['response'], response_key)
+                decrypted_plain = (self._decrypt_version(response_json['plainResponse'], response_key)
                                    if 'plainResponse' in response_json else decrypted)
                 return {
                     'success': True,
@@ -151,12 +132,92 @@ class Recon:
             'error': response_json.get('error', 'Unknown error'),
         }
 
+    def open_session(self) -> dict:
+        """
+        Open a session. Later send_command calls use a per-request key derived from the
+        session key instead of deriving a key from the password.
+        When the session expires (HTTP 401), open a new one.
+
+        Returns:
+            dict with 'success' (bool), 'session' (str or None), 'error' (str or None)
+        """
+        nonce = uuid.uuid4().hex
+        timestamp = int(time.time())
+        request = {
+            'user': self.user,
+            'nonce': nonce,
+            'timestamp': timestamp,
+            'auth': self._encrypt_version('RCON_AUTH', self._derive_key(self.password, nonce, timestamp)),
+        }
+        if self.version != VERSION_CBC:
+            request['version'] = self.version
+
+        response_json = self._post(request)
+        if not response_json.get('success'):
+            return {'success': False, 'session': None, 'error': response_json.get('error', 'Unknown error')}
+
+        # The session key is derived from the password and the server's nonce and timestamp
+        session_key = self._derive_key(self.password, response_json['nonce'], response_json['timestamp'])
+        self._session = (response_json['session'], session_key)
+        return {'success': True, 'session': response_json['session'], 'error': None}
+
+    def close_session(self) -> None:
+        """Stop using the session. Later send_command calls derive the key from the password again."""
+        self._session = None
+
+    def _post(self, request: dict) -> dict:
+        """Send the request and return the response JSON (or a dict with 'success': False and 'error')."""
+        payload = json.dumps(request).encode('utf-8')
+
+        # Send HTTP POST
+        scheme = 'https' if self.use_ssl else 'http'
+        url = f'{scheme}://{self.host}:{self.port}/'
+
+        try:
+            req = Request(url, data=payload, method='POST')
+            req.add_header('Content-Type', 'application/json')
+
+            with urlopen(req, timeout=self.timeout) as resp:
+                response_body = resp.read().decode('utf-8')
+
+        except HTTPError as e:
+            try:
+                error_body = e.read().decode('utf-8')
+                error_json = json.loads(error_body)
+                return {'success': False, 'error': error_json.get('error', f'HTTP {e.code}')}
+            except Exception:
+                return {'success': False, 'error': f'HTTP error {e.code}'}
+        except URLError as e:
+            return {'success': False, 'error': f'Connection failed: {e.reason}'}
+
+        try:
+            return json.loads(response_body)
+        except json.JSONDecodeError:
+            return {'success': False, 'error': 'Invalid JSON response'}
+
     @staticmethod
     def _derive_key(password: str, nonce: str, timestamp: int) -> bytes:
         """Derive a 256-bit AES key using SHA-256."""
         combined = f'{password}_{nonce}_{timestamp}'
         return hashlib.sha256(combined.encode('utf-8')).digest()
 
+    def _encrypt_version(self, plaintext: str, key: bytes) -> str:
+        """Encrypt plaintext in the format of the configured protocol version."""
+        if self.version == VERSION_GCM:
+            return self._encrypt_gcm(plaintext, key)
+        return self._encrypt(plaintext, key)
+
+    def _decrypt_version(self, ciphertext: str, key: bytes) -> str:
+        """Decrypt ciphertext in the format of the configured protocol version."""
+        if self.version == VERSION_GCM:
+            return self._decrypt_gcm(ciphertext, key)
+        return self._decrypt(ciphertext, key)
+
+    @staticmethod
+    def _derive_session_request_key(session_key: bytes, nonce: str, timestamp: int) -> bytes:
+        """Derive the 256-bit AES key of a session request using HMAC-SHA256."""
+        return hmac.new(session_key, f'{nonce}_{timestamp}'.encode('utf-8'), hashlib.sha256).digest()
+
     @staticmethod
     def _encrypt(plaintext: str, key: bytes) -> str:
         """Encrypt plaintext using AES-256-CBC. Returns Base64(IV + ciphertext)."""
@@ -182,6 +243,30 @@ class Recon:
             decrypted = _aes_decrypt_stdlib(encrypted, key, iv)
         return decrypted.decode('utf-8')
 
+    @staticmethod
+    def _encrypt_gcm(plaintext: str, key: bytes) -> str:
+        """Encrypt plaintext using AES-256-GCM. Returns Base64(nonce + ciphertext + tag)."""
+        nonce = os.urandom(12)
+        if _USE_PYCRYPTODOME:
+            cipher = AES.new(key, AES.MODE_GCM, nonce=nonce)
+            encrypted, tag = cipher.encrypt_and_digest(plaintext.encode('utf-8'))
+            encrypted += tag
+        else:
+            encrypted = _aes_gcm().AESGCM(key).encrypt(nonce, plaintext.encode('utf-8'), None)
+        return b64encode(nonce + encrypted).decode('ascii')
+
+    @staticmethod
+    def _decrypt_gcm(ciphertext: str, key: bytes) -> str:
+        """Decrypt Base64(nonce + ciphertext + tag) using AES-256-GCM. Raises if the tag does not match."""
+        decoded = b64decode(ciphertext)
+        nonce = decoded[:12]
+        if _USE_PYCRYPTODOME:
+            cipher = AES.new(key, AES.MODE_GCM, nonce=nonce)
+            decrypted = cipher.decrypt_and_verify(decoded[12:-16], decoded[-16:])
+        else:
+            decrypted = _aes_gcm().AESGCM(key).decrypt(nonce, decoded[12:], None)
+        return decrypted.decode('utf-8')
+
 
 def _pkcs7_pad(data: bytes, block_size: int = 16) -> bytes:
     """Apply PKCS7 padding."""
@@ -197,6 +282,17 @@ def _pkcs7_unpad(data: bytes) -> bytes:
     return data[:-pad_len]
 
 
+def _aes_gcm():
+    """Fallback AES-GCM implementation from the cryptography package (if pycryptodome unavailable)."""
+    try:
+        from cryptography.hazmat.primitives.ciphers import aead
+        return aead
+    except ImportError:
+        raise ImportError(
+            'AES-GCM requires pycryptodome or cryptography. Install it with: pip install pycryptodome'
+        )
+
+
 def _aes_encrypt_stdlib(data: bytes, key: bytes, iv: bytes) -> bytes:
     """Fallback AES-CBC encryption using ctypes to OpenSSL (if pycryptodome unavailable)."""
     try:
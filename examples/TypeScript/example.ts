@@ -7,7 +7,7 @@
  * Run with: npx ts-node example.ts
  */
 
-import { Recon } from './recon';
+import { Recon, VERSION_GCM } from './recon';
 
 // Configuration
 const host     = '127.0.0.1';
@@ -17,6 +17,7 @@ const password = 'your_password';
 const timeout  = 10000; // milliseconds
 
 // Create client instance
+// For protocol v2 (AES-GCM): new Recon({ host, port, user, password, timeout, version: VERSION_GCM })
 const recon = new Recon(host, port, user, password, timeout);
 
 async function main(): Promise<void> {
@@ -2,7 +2,8 @@
  * Recon - REST API Client for Minecraft
  *
  * A TypeScript client library for communicating with the Recon plugin's REST API.
- * Handles AES-256-CBC encryption/decryption and secure command execution.
+ * Handles AES-256-CBC (protocol v1) and AES-256-GCM (protocol v2)
+ * encryption/decryption and secure command execution.
  *
  * @license MIT (Mobile application distribution prohibited)
  * @copyright 2026 Enabify
@@ -12,6 +13,13 @@ import * as crypto from 'crypto';
 import * as http from 'http';
 import * as https from 'https';
 
+/** Protocol v1: AES-256-CBC (supported by every server version) */
+export const VERSION_CBC = 1;
+/** Protocol v2: AES-256-GCM (authenticated encryption) */
+export const VERSION_GCM = 2;
+
+export type ProtocolVersion = typeof VERSION_CBC | typeof VERSION_GCM;
+
 export interface ReconResponse {
     success: boolean;
     response: string | null;
@@ -26,6 +34,7 @@ export interface ReconOptions {
     password: string;
     timeout?: number;
     useSSL?: boolean;
+    version?: ProtocolVersion;
 }
 
 export class Recon {
@@ -35,12 +44,14 @@ export class Recon {
     private readonly password: string;
     private readonly timeout: number;
     private readonly useSSL: boolean;
+    private readonly version: ProtocolVersion;
 
     /**
      * Create a new Recon client instance.
      */
     constructor(options: ReconOptions);
-    constructor(host: string, port?: number, user?: string, password?: string, timeout?: number, useSSL?: boolean);
+    constructor(host: string, port?: number, user?: string, password?: string, timeout?: number, useSSL?: boolean,
+                version?: ProtocolVersion);
     constructor(
         hostOrOptions: string | ReconOptions,
         port: number = 4161,
@@ -48,6 +59,7 @@ export class Recon {
         password: string = '',
         timeout: number = 10000,
         useSSL: boolean = false,
+        version: ProtocolVersion = VERSION_CBC,
     ) {
         if (typeof hostOrOptions === 'object') {
             this.host = hostOrOptions.host;
@@ -56,6 +68,7 @@ export class Recon {
             this.password = hostOrOptions.password;
             this.timeout = hostOrOptions.timeout ?? 10000;
             this.useSSL = hostOrOptions.useSSL ?? false;
+            this.version = hostOrOptions.version ?? VERSION_CBC;
         } else {
             this.host = hostOrOptions;
             this.port = port;
@@ -63,6 +76,7 @@ export class Recon {
             this.password = password;
             this.timeout = timeout;
             this.useSSL = useSSL;
+            this.version = version;
         }
     }
 
@@ -78,12 +92,14 @@ export class Recon {
             const timestamp = Math.floor(Date.now() / 1000);
 
             const key = this.deriveKey(this.password, nonce, timestamp);
-            const encrypted = this.encrypt(`RCON_${command}`, key);
+            const encrypted = this.encryptVersion(`RCON_${command}`, key);
 
+            // version is omitted for v1
             const payload = JSON.stringify({
                 user: this.user,
                 nonce,
                 timestamp,
+                ...(this.version !== VERSION_CBC ? { version: this.version } : {}),
                 queue,
                 command: encrypted,
             });
@@ -95,9 +111,9 @@ export class Recon {
                 const serverNonce: string = responseJson.nonce || '';
                 const serverTimestamp: number = responseJson.timestamp || 0;
                 const responseKey = this.deriveKey(this.password, serverNonce, serverTimestamp);
-                const decrypted = this.decrypt(responseJson.response, responseKey);
+                const decrypted = this.decryptVersion(responseJson.response, responseKey);
                 const decryptedPlain = responseJson.plainResponse
-                    ? this.decrypt(responseJson.plainResponse, responseKey)
+                    ? this.decryptVersion(responseJson.plainResponse, responseKey)
                     : decrypted;
 
                 return { success: true, response: decrypted, plainResponse: decryptedPlain, error: null };
@@ -125,6 +141,14 @@ export class Recon {
             .digest();
     }
 
+    private encryptVersion(plaintext: string, key: Buffer): string {
+        return this.version === VERSION_GCM ? this.encryptGcm(plaintext, key) : this.encrypt(plaintext, key);
+    }
+
+    private decryptVersion(ciphertext: string, key: Buffer): string {
+        return this.version === VERSION_GCM ? this.decryptGcm(ciphertext, key) : this.decrypt(ciphertext, key);
+    }
+
     private encrypt(plaintext: string, key: Buffer): string {
         const iv = crypto.randomBytes(16);
         const cipher = crypto.createCipheriv('aes-256-cbc', key, iv);
@@ -140,6 +164,21 @@ export class Recon {
         return decipher.update(encrypted, undefined, 'utf8') + decipher.final('utf8');
     }
 
+    // v2 payload: base64(nonce(12) + ciphertext + tag(16))
+    private encryptGcm(plaintext: string, key: Buffer): string {
+        const nonce = crypto.randomBytes(12);
+        const cipher = crypto.createCipheriv('aes-256-gcm', key, nonce);
+        const encrypted = Buffer.concat([cipher.update(plaintext, 'utf8'), cipher.final()]);
+        return Buffer.concat([nonce, encrypted, cipher.getAuthTag()]).toString('base64');
+    }
+
+    private decryptGcm(ciphertext: string, key: Buffer): string {
+        const decoded = Buffer.from(ciphertext, 'base64');
+        const decipher = crypto.createDecipheriv('aes-256-gcm', key, decoded.subarray(0, 12));
+        decipher.setAuthTag(decoded.subarray(decoded.length - 16));
+        return Buffer.concat([decipher.update(decoded.subarray(12, decoded.length - 16)), decipher.final()]).toString('utf8');
+    }
+
     private post(payload: string): Promise<string> {
         return new Promise((resolve, reject) => {
             const protocol = this.useSSL ? https : http;
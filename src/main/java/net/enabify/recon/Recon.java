@@ -7,8 +7,10 @@ import net.enabify.recon.config.LangManager;
 import net.enabify.recon.config.QueueManager;
 import net.enabify.recon.config.UserManager;
 import net.enabify.recon.execution.CommandRunner;
+import net.enabify.recon.execution.PlayerCaptureHandler;
 import net.enabify.recon.http.RateLimiter;
 import net.enabify.recon.http.ReconHttpServer;
+import net.enabify.recon.listener.PlayerCaptureListener;
 import net.enabify.recon.listener.PlayerJoinListener;
 import net.enabify.recon.logging.ReconLogger;
 import net.enabify.recon.platform.CommandExecutionService;
@@ -70,8 +72,9 @@ public final class Recon extends JavaPlugin implements ReconPlatform {
         // ユーティリティ初期化
         reconLogger = new ReconLogger(getDataFolder());
         nonceTracker = new NonceTracker();
-        rateLimiter = new RateLimiter(configManager.getRateLimit());
+        rateLimiter = new RateLimiter(configManager.getRateLimit(), configManager.getRateLimitMaxKeys());
         commandRunner = new CommandRunner(this);
+        commandRunner.getDispatchQueue().start();
 
         // コマンド登録
         PluginCommand reconCmd = getCommand("recon");
@@ -82,6 +85,12 @@ public final class Recon extends JavaPlugin implements ReconPlatform {
 
         // イベントリスナー登録
         getServer().getPluginManager().registerEvents(new PlayerJoinListener(this), this);
+        getServer().getPluginManager().registerEvents(new PlayerCaptureListener(), this);
+
+        // 既に接続しているプレイヤー（/reload 等）にも出力キャプチャ用のハンドラーを追加
+        for (org.bukkit.entity.Player player : getServer().getOnlinePlayers()) {
+            PlayerCaptureHandler.install(player);
+        }
 
         // HTTPサーバー起動
         try {
@@ -96,6 +105,9 @@ public final class Recon extends JavaPlugin implements ReconPlatform {
         SchedulerUtil.runGlobalTimer(this, () -> {
             nonceTracker.cleanup();
             rateLimiter.cleanup();
+            if (httpServer != null) {
+                httpServer.cleanup();
+            }
             queueManager.cleanExpiredEntries();
         }, 6000L, 6000L); // 5分 = 6000ティック
 
@@ -110,6 +122,9 @@ public final class Recon extends JavaPlugin implements ReconPlatform {
             httpServer.stop();
         }
 
+        // 出力キャプチャ用のハンドラーを削除
+        PlayerCaptureHandler.uninstallAll();
+
         // 設定保存
         if (userManager != null) {
             userManager.saveUsers();
@@ -27,7 +27,7 @@ public class ReconCommandLogic {
         SHORT_FORMS.put("pe", "permission");
     }
 
-    private static final List<String> SUB_COMMANDS = Arrays.asList("create", "edit", "info", "test", "reload", "remove");
+    private static final List<String> SUB_COMMANDS = Arrays.asList("create", "edit", "info", "test", "reload", "remove", "status");
     private static final List<String> CREATE_EDIT_PARAMS = Arrays.asList(
             "user:", "u:", "password:", "pw:", "ip:", "i:", "op:", "o:", "player:", "pl:", "permission:", "pe:", "queue:", "q:");
     private static final List<String> INFO_PARAMS = Arrays.asList("user:", "u:");
@@ -71,6 +71,9 @@ public class ReconCommandLogic {
             case "remove":
                 handleRemove(sender, args);
                 break;
+            case "status":
+                handleStatus(sender);
+                break;
             default:
                 sendUsage(sender);
                 break;
@@ -566,6 +569,34 @@ public class ReconCommandLogic {
         sender.sendMessage(tr("success.user_removed", Collections.singletonMap("username", userName)));
     }
 
+    // ============================
+    // /recon status
+    // ============================
+    private void handleStatus(PlatformCommandSender sender) {
+        if (!sender.hasPermission("recon.status")) {
+            sender.sendMessage(tr("error.no_permission.status"));
+            return;
+        }
+
+        Map<String, String> statistics = platform.getCommandExecutionService().getDispatchStatistics();
+        Map<String, Integer> regionDepths = platform.getCommandExecutionService().getRegionQueueDepths();
+
+        sender.sendMessage(tr("status.header"));
+        if (statistics.isEmpty()) {
+            sender.sendMessage(tr("status.unavailable"));
+        } else {
+            sender.sendMessage(tr("status.dispatch_queue", statistics));
+            sender.sendMessage(tr("status.dispatch_wait", statistics));
+        }
+        for (Map.Entry<String, Integer> entry : regionDepths.entrySet()) {
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("region", entry.getKey());
+            placeholders.put("depth", String.valueOf(entry.getValue()));
+            sender.sendMessage(tr("status.region_queue", placeholders));
+        }
+        sender.sendMessage(tr("status.footer"));
+    }
+
     // ============================
     // ユーティリティ
     // ============================
@@ -578,6 +609,7 @@ public class ReconCommandLogic {
         sender.sendMessage(tr("usage.test"));
         sender.sendMessage(tr("usage.reload"));
         sender.sendMessage(tr("usage.remove"));
+        sender.sendMessage(tr("usage.status"));
         sender.sendMessage("");
         sender.sendMessage(tr("usage.params"));
     }
@@ -10,6 +10,7 @@ import java.io.OutputStreamWriter;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -28,11 +29,43 @@ public class ConfigManager {
     private boolean allowSelfRegistration;
     private boolean autoRegistration;
     private int port;
+    private HttpTransportType httpTransportType;
+    private int httpIoThreads;
+    private HttpExecutorType httpExecutorType;
+    private int httpWorkerThreads;
+    private int httpQueueSize;
+    private int httpCompletionThreads;
+    private boolean httpWebSocketEnabled;
+    private int httpMaxBodyBytes;
     private List<String> globalIpWhitelist;
     private List<String> requestForwardingTargets;
     private boolean allowQueueForAllUsers;
     private int queueExpiryHours;
     private int rateLimit;
+    private int userRateLimit;
+    private int rateLimitMaxKeys;
+    private int maxBatchSize;
+    private int compressionThreshold;
+    private CompletionPolicy completionPolicy;
+    private long completionQuietMillis;
+    private long completionMaxWaitMillis;
+    private Map<String, CompletionPolicy> completionOverrides;
+    private long dispatchTickBudgetNanos;
+    private int captureMaxBytes;
+    private int captureMaxLines;
+    private int streamIdleSeconds;
+    private int streamMaxSeconds;
+    private int streamBufferSize;
+    private int streamThreads;
+    private int maxJobs;
+    private int jobTtlSeconds;
+    private int maxSessions;
+    private int sessionTtlSeconds;
+    private boolean admissionEnabled;
+    private int admissionMinConcurrent;
+    private int admissionMaxConcurrent;
+    private int admissionPerUser;
+    private int admissionTargetLatencyMillis;
     private String language;
     private UserStorageType userStorageType;
     private boolean migrateUsersFromYamlOnFirstRun;
@@ -160,6 +193,14 @@ public class ConfigManager {
         this.allowSelfRegistration = config.getBoolean("allow-self-registration", false);
         this.autoRegistration = config.getBoolean("auto-registration", false);
         this.port = config.getInt("port", 4161);
+        this.httpTransportType = HttpTransportType.fromConfigValue(config.getString("http-server.transport", "jdk"));
+        this.httpIoThreads = Math.max(0, config.getInt("http-server.io-threads", 0));
+        this.httpExecutorType = HttpExecutorType.fromConfigValue(config.getString("http-server.executor", "pool"));
+        this.httpWorkerThreads = Math.max(1, config.getInt("http-server.threads", 8));
+        this.httpQueueSize = Math.max(1, config.getInt("http-server.queue-size", 256));
+        this.httpCompletionThreads = Math.max(1, config.getInt("http-server.completion-threads", 4));
+        this.httpWebSocketEnabled = config.getBoolean("http-server.websocket", true);
+        this.httpMaxBodyBytes = Math.max(1024, config.getInt("http-server.max-body-bytes", 1048576));
         this.globalIpWhitelist = config.getStringList("global-ip-whitelist");
         if (this.globalIpWhitelist == null) {
             this.globalIpWhitelist = new ArrayList<>();
@@ -183,6 +224,42 @@ public class ConfigManager {
         this.allowQueueForAllUsers = config.getBoolean("allow-queue-for-all-users", false);
         this.queueExpiryHours = config.getInt("queue-expiry-hours", 72);
         this.rateLimit = config.getInt("rate-limit", 30);
+        this.userRateLimit = Math.max(0, config.getInt("rate-limit-per-user", 0));
+        this.rateLimitMaxKeys = Math.max(100, config.getInt("rate-limit-max-keys", 10000));
+        this.maxBatchSize = Math.max(1, config.getInt("max-batch-size", 50));
+        this.compressionThreshold = Math.max(0, config.getInt("compression-threshold", 1024));
+        this.completionPolicy = CompletionPolicy.fromConfigValue(config.getString("completion.policy", "sync"));
+        this.completionQuietMillis = Math.max(0, config.getInt("completion.quiet-ms", 150));
+        // コマンドのタイムアウト（10秒）より前に応答できるよう上限を設ける
+        this.completionMaxWaitMillis = Math.min(9000, Math.max(50, config.getInt("completion.max-wait-ms", 2000)));
+        Map<String, CompletionPolicy> overrides = new HashMap<>();
+        for (String entry : config.getStringList("completion.overrides")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                logger.warning("Invalid completion override (expected command:policy): " + entry);
+                continue;
+            }
+            overrides.put(normalizeCommandLabel(entry.substring(0, separator)),
+                    CompletionPolicy.fromConfigValue(entry.substring(separator + 1)));
+        }
+        this.completionOverrides = Collections.unmodifiableMap(overrides);
+        this.dispatchTickBudgetNanos = Math.max(0, config.getInt("dispatch.tick-budget-ns", 5000000));
+        this.captureMaxBytes = Math.max(1024, config.getInt("capture.max-bytes", 1048576));
+        this.captureMaxLines = Math.max(1, config.getInt("capture.max-lines", 10000));
+        this.streamIdleSeconds = Math.max(1, config.getInt("stream-idle-seconds", 3));
+        this.streamMaxSeconds = Math.max(streamIdleSeconds, config.getInt("stream-max-seconds", 300));
+        this.streamBufferSize = Math.max(1024, config.getInt("stream-buffer-size", 1048576));
+        this.streamThreads = Math.max(1, config.getInt("stream-threads", 4));
+        this.maxJobs = Math.max(1, config.getInt("max-jobs", 1000));
+        this.jobTtlSeconds = Math.max(1, config.getInt("job-ttl-seconds", 600));
+        this.maxSessions = Math.max(1, config.getInt("max-sessions", 1000));
+        this.sessionTtlSeconds = Math.max(1, config.getInt("session-ttl-seconds", 300));
+        this.admissionEnabled = config.getBoolean("admission.enabled", true);
+        this.admissionMaxConcurrent = Math.max(1, config.getInt("admission.max-concurrent", 64));
+        this.admissionMinConcurrent = Math.min(admissionMaxConcurrent,
+                Math.max(1, config.getInt("admission.min-concurrent", 4)));
+        this.admissionPerUser = Math.max(1, config.getInt("admission.per-user", 16));
+        this.admissionTargetLatencyMillis = Math.max(10, config.getInt("admission.target-latency-ms", 3000));
         this.language = config.getString("language", "en");
 
         boolean hasNewDbEnabled = config.contains("database.enabled");
@@ -238,6 +315,38 @@ public class ConfigManager {
         return port;
     }
 
+    public HttpTransportType getHttpTransportType() {
+        return httpTransportType;
+    }
+
+    public int getHttpIoThreads() {
+        return httpIoThreads;
+    }
+
+    public HttpExecutorType getHttpExecutorType() {
+        return httpExecutorType;
+    }
+
+    public int getHttpWorkerThreads() {
+        return httpWorkerThreads;
+    }
+
+    public int getHttpQueueSize() {
+        return httpQueueSize;
+    }
+
+    public int getHttpCompletionThreads() {
+        return httpCompletionThreads;
+    }
+
+    public boolean isHttpWebSocketEnabled() {
+        return httpWebSocketEnabled;
+    }
+
+    public int getHttpMaxBodyBytes() {
+        return httpMaxBodyBytes;
+    }
+
     public List<String> getGlobalIpWhitelist() {
         return globalIpWhitelist;
     }
@@ -258,6 +367,122 @@ public class ConfigManager {
         return rateLimit;
     }
 
+    /**
+     * ユーザー単位のレート制限（0 = 制限しない）
+     */
+    public int getUserRateLimit() {
+        return userRateLimit;
+    }
+
+    public int getRateLimitMaxKeys() {
+        return rateLimitMaxKeys;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public CompletionPolicy getCompletionPolicy() {
+        return completionPolicy;
+    }
+
+    /**
+     * コマンドに適用する完了判定ポリシーを返す（completion.overrides を優先）
+     *
+     * @param command 実行するコマンド（引数付き）
+     */
+    public CompletionPolicy getCompletionPolicy(String command) {
+        if (command == null || completionOverrides.isEmpty()) {
+            return completionPolicy;
+        }
+        String trimmed = command.trim();
+        int space = trimmed.indexOf(' ');
+        String label = normalizeCommandLabel(space < 0 ? trimmed : trimmed.substring(0, space));
+        CompletionPolicy override = completionOverrides.get(label);
+        return override != null ? override : completionPolicy;
+    }
+
+    public long getCompletionQuietMillis() {
+        return completionQuietMillis;
+    }
+
+    public long getCompletionMaxWaitMillis() {
+        return completionMaxWaitMillis;
+    }
+
+    private static String normalizeCommandLabel(String label) {
+        String normalized = label.trim().toLowerCase(Locale.ROOT);
+        return normalized.startsWith("/") ? normalized.substring(1) : normalized;
+    }
+
+    public long getDispatchTickBudgetNanos() {
+        return dispatchTickBudgetNanos;
+    }
+
+    public int getCaptureMaxBytes() {
+        return captureMaxBytes;
+    }
+
+    public int getCaptureMaxLines() {
+        return captureMaxLines;
+    }
+
+    public int getStreamIdleSeconds() {
+        return streamIdleSeconds;
+    }
+
+    public int getStreamMaxSeconds() {
+        return streamMaxSeconds;
+    }
+
+    public int getStreamBufferSize() {
+        return streamBufferSize;
+    }
+
+    public int getStreamThreads() {
+        return streamThreads;
+    }
+
+    public int getMaxJobs() {
+        return maxJobs;
+    }
+
+    public int getJobTtlSeconds() {
+        return jobTtlSeconds;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public int getSessionTtlSeconds() {
+        return sessionTtlSeconds;
+    }
+
+    public boolean isAdmissionEnabled() {
+        return admissionEnabled;
+    }
+
+    public int getAdmissionMinConcurrent() {
+        return admissionMinConcurrent;
+    }
+
+    public int getAdmissionMaxConcurrent() {
+        return admissionMaxConcurrent;
+    }
+
+    public int getAdmissionPerUser() {
+        return admissionPerUser;
+    }
+
+    public int getAdmissionTargetLatencyMillis() {
+        return admissionTargetLatencyMillis;
+    }
+
     public String getLanguage() {
         return language;
     }
@@ -299,6 +524,78 @@ public class ConfigManager {
         }
     }
 
+    public enum HttpTransportType {
+        JDK,
+        NETTY;
+
+        public static HttpTransportType fromConfigValue(String value) {
+            if (value != null && "netty".equals(value.trim().toLowerCase(Locale.ROOT))) {
+                return NETTY;
+            }
+            return JDK;
+        }
+
+        public String toConfigValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public enum HttpExecutorType {
+        DEFAULT,
+        POOL,
+        VIRTUAL;
+
+        public static HttpExecutorType fromConfigValue(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return POOL;
+            }
+
+            String normalized = value.trim().toLowerCase(Locale.ROOT);
+            if ("default".equals(normalized)) {
+                return DEFAULT;
+            }
+            if ("virtual".equals(normalized)) {
+                return VIRTUAL;
+            }
+            return POOL;
+        }
+
+        public String toConfigValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * コマンド出力の収集を終了するタイミングの判定方法
+     */
+    public enum CompletionPolicy {
+        /** 常に3ティック待機する（従来の動作） */
+        FIXED,
+        /** 1ティック以内に出力が無ければ即座に応答し、遅れて出力があればQUIETと同様に待機する */
+        SYNC,
+        /** 出力が一定時間途切れた時点で応答する */
+        QUIET;
+
+        public static CompletionPolicy fromConfigValue(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return SYNC;
+            }
+
+            String normalized = value.trim().toLowerCase(Locale.ROOT);
+            if ("fixed".equals(normalized)) {
+                return FIXED;
+            }
+            if ("quiet".equals(normalized)) {
+                return QUIET;
+            }
+            return SYNC;
+        }
+
+        public String toConfigValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
     public static class DatabaseSettings {
         private final String host;
         private final int port;
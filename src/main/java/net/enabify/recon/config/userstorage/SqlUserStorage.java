@@ -62,19 +62,39 @@ public class SqlUserStorage implements UserStorage {
                 + "`queue_flag` TINYINT(1) NOT NULL DEFAULT 0,"
                 + "`player` VARCHAR(64) NULL,"
                 + "`permissions` TEXT NOT NULL,"
+                + "`priority` INT NOT NULL DEFAULT " + ReconUser.DEFAULT_PRIORITY + ","
+                + "`weight` INT NOT NULL DEFAULT " + ReconUser.DEFAULT_WEIGHT + ","
                 + "PRIMARY KEY (`username`)"
                 + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
 
         try (Connection connection = getConnection();
              Statement statement = connection.createStatement()) {
             statement.executeUpdate(createTableSql);
+            addColumnIfMissing(connection, "priority", "INT NOT NULL DEFAULT " + ReconUser.DEFAULT_PRIORITY);
+            addColumnIfMissing(connection, "weight", "INT NOT NULL DEFAULT " + ReconUser.DEFAULT_WEIGHT);
         }
     }
 
+    /**
+     * 既存のテーブルに後から追加した列が無い場合は追加する
+     */
+    private void addColumnIfMissing(Connection connection, String column, String definition) throws SQLException {
+        try (ResultSet columns = connection.getMetaData().getColumns(connection.getCatalog(), null, tableName, column)) {
+            if (columns.next()) {
+                return;
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE `" + tableName + "` ADD COLUMN `" + column + "` " + definition);
+        }
+        logger.info("Added column '" + column + "' to user table " + tableName + ".");
+    }
+
     @Override
     public Map<String, ReconUser> loadAllUsers() throws Exception {
         Map<String, ReconUser> users = new HashMap<>();
-        String sql = "SELECT username, password, ip_whitelist, op_flag, queue_flag, player, permissions "
+        String sql = "SELECT username, password, ip_whitelist, op_flag, queue_flag, player, permissions, priority, weight "
                 + "FROM `" + tableName + "`";
 
         try (Connection connection = getConnection();
@@ -89,6 +109,8 @@ public class SqlUserStorage implements UserStorage {
                 user.setQueue(resultSet.getBoolean("queue_flag"));
                 user.setPlayer(resultSet.getString("player"));
                 user.setPermissions(decodeList(resultSet.getString("permissions")));
+                user.setPriority(resultSet.getInt("priority"));
+                user.setWeight(resultSet.getInt("weight"));
                 users.put(username, user);
             }
         }
@@ -165,15 +187,17 @@ public class SqlUserStorage implements UserStorage {
 
     private String buildUpsertSql() {
         return "INSERT INTO `" + tableName + "` "
-                + "(`username`, `password`, `ip_whitelist`, `op_flag`, `queue_flag`, `player`, `permissions`) "
-                + "VALUES (?, ?, ?, ?, ?, ?, ?) "
+                + "(`username`, `password`, `ip_whitelist`, `op_flag`, `queue_flag`, `player`, `permissions`, `priority`, `weight`) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) "
                 + "ON DUPLICATE KEY UPDATE "
                 + "`password` = VALUES(`password`),"
                 + "`ip_whitelist` = VALUES(`ip_whitelist`),"
                 + "`op_flag` = VALUES(`op_flag`),"
                 + "`queue_flag` = VALUES(`queue_flag`),"
                 + "`player` = VALUES(`player`),"
-                + "`permissions` = VALUES(`permissions`)";
+                + "`permissions` = VALUES(`permissions`),"
+                + "`priority` = VALUES(`priority`),"
+                + "`weight` = VALUES(`weight`)";
     }
 
     private void bindUser(PreparedStatement statement, ReconUser user) throws SQLException {
@@ -191,6 +215,8 @@ public class SqlUserStorage implements UserStorage {
         }
 
         statement.setString(7, encodeList(user.getPermissions()));
+        statement.setInt(8, user.getPriority());
+        statement.setInt(9, user.getWeight());
     }
 
     private String encodeList(List<String> values) {
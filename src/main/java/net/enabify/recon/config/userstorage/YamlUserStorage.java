@@ -44,6 +44,8 @@ public class YamlUserStorage implements UserStorage {
             user.setQueue(usersConfig.getBoolean(key + ".queue", false));
             user.setPlayer(usersConfig.getString(key + ".player", null));
             user.setPermissions(usersConfig.getStringList(key + ".permissions"));
+            user.setPriority(usersConfig.getInt(key + ".priority", ReconUser.DEFAULT_PRIORITY));
+            user.setWeight(usersConfig.getInt(key + ".weight", ReconUser.DEFAULT_WEIGHT));
             result.put(key, user);
         }
 
@@ -62,6 +64,8 @@ public class YamlUserStorage implements UserStorage {
             usersConfig.set(key + ".queue", user.isQueue());
             usersConfig.set(key + ".player", user.getPlayer());
             usersConfig.set(key + ".permissions", user.getPermissions());
+            usersConfig.set(key + ".priority", user.getPriority());
+            usersConfig.set(key + ".weight", user.getWeight());
         }
 
         usersConfig.save(usersFile);
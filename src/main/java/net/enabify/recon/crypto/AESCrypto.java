@@ -1,24 +1,71 @@
 package net.enabify.recon.crypto;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
 
 /**
  * AES暗号化・復号ユーティリティ
- * AES-256-CBC方式を使用し、キーはSHA-256で導出
- * IVはランダム生成し、暗号文の先頭に付加してBase64エンコードする
+ * キーはSHA-256で導出し、ペイロードの形式はプロトコルバージョンで選択する
+ * - v1: AES-256-CBC（PKCS5パディング）。IVはランダム生成し、暗号文の先頭に付加してBase64エンコードする
+ * - v2: AES-256-GCM。12バイトのnonceを暗号文の先頭に、16バイトの認証タグを末尾に付加してBase64エンコードする
+ *       改ざんや誤ったキーは復号時（平文の生成前）に認証タグの検証で検出される
+ *
+ * Cipher・MessageDigest・Macはスレッド毎に1つ生成して再利用する（呼び出し毎のプロバイダー検索を避ける）
  */
 public class AESCrypto {
 
+    /** プロトコルバージョン1（AES-256-CBC、既定） */
+    public static final int VERSION_CBC = 1;
+    /** プロトコルバージョン2（AES-256-GCM） */
+    public static final int VERSION_GCM = 2;
+
     private static final String ALGORITHM = "AES/CBC/PKCS5Padding";
+    private static final String GCM_ALGORITHM = "AES/GCM/NoPadding";
     private static final int IV_LENGTH = 16;
+    private static final int GCM_NONCE_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
     private static final SecureRandom RANDOM = new SecureRandom();
 
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (Exception e) {
+            throw new IllegalStateException("AES cipher is not available", e);
+        }
+    });
+
+    private static final ThreadLocal<Cipher> GCM_CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(GCM_ALGORITHM);
+        } catch (Exception e) {
+            throw new IllegalStateException("AES-GCM cipher is not available", e);
+        }
+    });
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private static final ThreadLocal<Mac> HMAC_SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance("HmacSHA256");
+        } catch (Exception e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    });
+
     /**
      * AESキーを導出する
      * 「パスワード_ランダム文字列_タイムスタンプ」をSHA-256でハッシュし32バイトキーを生成
@@ -30,8 +77,23 @@ public class AESCrypto {
      */
     public static byte[] deriveKey(String password, String nonce, long timestamp) throws Exception {
         String combined = password + "_" + nonce + "_" + timestamp;
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        return digest.digest(combined.getBytes(StandardCharsets.UTF_8));
+        return SHA256.get().digest(combined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * セッションのリクエスト毎のAESキーを導出する
+     * 「ランダム文字列_タイムスタンプ」をセッションキーでHMAC-SHA256し、32バイトキーを生成する
+     * 暗号文がリクエストのnonce・タイムスタンプに結び付くため、暗号文を別のnonceで再送しても復号できない
+     *
+     * @param sessionKey セッション発行時に導出したキー
+     * @param nonce      リクエストのランダム文字列
+     * @param timestamp  リクエストのUnixタイムスタンプ（秒）
+     * @return AES-256用の32バイトキー
+     */
+    public static byte[] deriveSessionRequestKey(byte[] sessionKey, String nonce, long timestamp) throws Exception {
+        Mac mac = HMAC_SHA256.get();
+        mac.init(new SecretKeySpec(sessionKey, "HmacSHA256"));
+        return mac.doFinal((nonce + "_" + timestamp).getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -42,19 +104,7 @@ public class AESCrypto {
      * @return Base64エンコードされた暗号文（IV + 暗号文）
      */
     public static String encrypt(String plaintext, byte[] key) throws Exception {
-        byte[] iv = new byte[IV_LENGTH];
-        RANDOM.nextBytes(iv);
-
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
-        byte[] encrypted = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
-
-        // IV + 暗号文を結合
-        byte[] combined = new byte[iv.length + encrypted.length];
-        System.arraycopy(iv, 0, combined, 0, iv.length);
-        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
-
-        return Base64.getEncoder().encodeToString(combined);
+        return Base64.getEncoder().encodeToString(encrypt(plaintext.getBytes(StandardCharsets.UTF_8), key));
     }
 
     /**
@@ -66,23 +116,141 @@ public class AESCrypto {
      */
     public static String decrypt(String ciphertext, byte[] key) throws Exception {
         byte[] decoded = Base64.getDecoder().decode(ciphertext);
+        return new String(decrypt(decoded, 0, decoded.length, key), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 指定したプロトコルバージョンの形式で平文を暗号化する
+     *
+     * @param version VERSION_CBC または VERSION_GCM
+     * @return Base64エンコードされた暗号文
+     */
+    public static String encrypt(String plaintext, byte[] key, int version) throws Exception {
+        return Base64.getEncoder().encodeToString(encryptToBytes(plaintext, key, version));
+    }
+
+    /**
+     * 指定したプロトコルバージョンの形式で平文を暗号化する（Base64エンコードしない）
+     * バイナリ形式のエンベロープで暗号文をそのまま格納する場合に使用する
+     *
+     * @return IV（v2はnonce） + 暗号文（v2は認証タグを含む）
+     */
+    public static byte[] encryptToBytes(String plaintext, byte[] key, int version) throws Exception {
+        return encryptToBytes(plaintext.getBytes(StandardCharsets.UTF_8), key, version);
+    }
+
+    /**
+     * 指定したプロトコルバージョンの形式でバイト列を暗号化する（圧縮済みのペイロード用）
+     *
+     * @return IV（v2はnonce） + 暗号文（v2は認証タグを含む）
+     */
+    public static byte[] encryptToBytes(byte[] data, byte[] key, int version) throws Exception {
+        return version == VERSION_GCM ? encryptGcm(data, key) : encrypt(data, key);
+    }
+
+    /**
+     * 指定したプロトコルバージョンの形式で暗号文を復号する
+     * v2では認証タグの検証に失敗した場合、平文を生成せずに例外を投げる
+     *
+     * @param version VERSION_CBC または VERSION_GCM
+     */
+    public static String decrypt(String ciphertext, byte[] key, int version) throws Exception {
+        return decrypt(Base64.getDecoder().decode(ciphertext), key, version);
+    }
+
+    /**
+     * 指定したプロトコルバージョンの形式でBase64エンコードされていない暗号文を復号する
+     *
+     * @param ciphertext IV（v2はnonce） + 暗号文（v2は認証タグを含む）
+     */
+    public static String decrypt(byte[] ciphertext, byte[] key, int version) throws Exception {
+        byte[] plaintext = version == VERSION_GCM
+                ? decryptGcm(ciphertext, 0, ciphertext.length, key)
+                : decrypt(ciphertext, 0, ciphertext.length, key);
+        return new String(plaintext, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * サポートしているプロトコルバージョンか
+     */
+    public static boolean isSupportedVersion(int version) {
+        return version == VERSION_CBC || version == VERSION_GCM;
+    }
 
-        if (decoded.length < IV_LENGTH) {
+    /**
+     * バイト列を暗号化する
+     * IVと暗号文は1つの配列に直接書き込む（結合のためのコピーは行わない）
+     *
+     * @param plaintext 平文
+     * @param key       32バイトのAESキー
+     * @return IV + 暗号文
+     */
+    public static byte[] encrypt(byte[] plaintext, byte[] key) throws Exception {
+        Cipher cipher = CIPHER.get();
+        byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+
+        byte[] combined = new byte[IV_LENGTH + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(iv, 0, combined, 0, IV_LENGTH);
+        int length = cipher.doFinal(plaintext, 0, plaintext.length, combined, IV_LENGTH);
+        return IV_LENGTH + length == combined.length ? combined : Arrays.copyOf(combined, IV_LENGTH + length);
+    }
+
+    /**
+     * バイト列を復号する
+     * IVと暗号文は入力の配列から直接読み取る（分割のためのコピーは行わない）
+     *
+     * @param data   IV + 暗号文を含む配列
+     * @param offset IVの開始位置
+     * @param length IV + 暗号文の長さ
+     * @param key    32バイトのAESキー
+     * @return 復号された平文
+     */
+    public static byte[] decrypt(byte[] data, int offset, int length, byte[] key) throws Exception {
+        if (length < IV_LENGTH) {
             throw new IllegalArgumentException("Ciphertext too short");
         }
 
-        // IVを抽出（先頭16バイト）
-        byte[] iv = new byte[IV_LENGTH];
-        System.arraycopy(decoded, 0, iv, 0, IV_LENGTH);
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(data, offset, IV_LENGTH));
+        return cipher.doFinal(data, offset + IV_LENGTH, length - IV_LENGTH);
+    }
 
-        // 暗号文を抽出（残り）
-        byte[] encrypted = new byte[decoded.length - IV_LENGTH];
-        System.arraycopy(decoded, IV_LENGTH, encrypted, 0, encrypted.length);
+    /**
+     * バイト列をAES-GCMで暗号化する（暗号化と認証タグの計算は1回の処理で行う）
+     *
+     * @return nonce（12バイト） + 暗号文 + 認証タグ（16バイト）
+     */
+    public static byte[] encryptGcm(byte[] plaintext, byte[] key) throws Exception {
+        Cipher cipher = GCM_CIPHER.get();
+        byte[] nonce = new byte[GCM_NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(GCM_TAG_BITS, nonce));
 
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
-        byte[] decrypted = cipher.doFinal(encrypted);
+        byte[] combined = new byte[GCM_NONCE_LENGTH + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(nonce, 0, combined, 0, GCM_NONCE_LENGTH);
+        int length = cipher.doFinal(plaintext, 0, plaintext.length, combined, GCM_NONCE_LENGTH);
+        return GCM_NONCE_LENGTH + length == combined.length
+                ? combined : Arrays.copyOf(combined, GCM_NONCE_LENGTH + length);
+    }
+
+    /**
+     * バイト列をAES-GCMで復号する
+     * 認証タグが一致しない場合（誤ったキー・改ざん）はAEADBadTagExceptionを投げる
+     *
+     * @param data   nonce + 暗号文 + 認証タグを含む配列
+     * @param offset nonceの開始位置
+     * @param length nonce + 暗号文 + 認証タグの長さ
+     */
+    public static byte[] decryptGcm(byte[] data, int offset, int length, byte[] key) throws Exception {
+        if (length < GCM_NONCE_LENGTH + GCM_TAG_BITS / 8) {
+            throw new IllegalArgumentException("Ciphertext too short");
+        }
 
-        return new String(decrypted, StandardCharsets.UTF_8);
+        Cipher cipher = GCM_CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"),
+                new GCMParameterSpec(GCM_TAG_BITS, data, offset, GCM_NONCE_LENGTH));
+        return cipher.doFinal(data, offset + GCM_NONCE_LENGTH, length - GCM_NONCE_LENGTH);
     }
 }
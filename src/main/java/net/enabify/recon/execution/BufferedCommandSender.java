@@ -10,7 +10,6 @@ import org.bukkit.permissions.PermissionAttachment;
 import org.bukkit.permissions.PermissionAttachmentInfo;
 import org.bukkit.plugin.Plugin;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -23,42 +22,72 @@ import java.util.UUID;
 public class BufferedCommandSender implements ConsoleCommandSender {
 
     private final Server server;
-    private final List<String> messages = new ArrayList<>();
+    private final CaptureBuffer buffer;
+    private final CommandOutputListener listener;
 
     public BufferedCommandSender(Server server) {
+        this(server, new CaptureBuffer());
+    }
+
+    /**
+     * @param buffer メッセージを蓄積するバッファ（上限付き）
+     */
+    public BufferedCommandSender(Server server, CaptureBuffer buffer) {
+        this.server = server;
+        this.buffer = buffer;
+        this.listener = null;
+    }
+
+    /**
+     * @param listener 指定した場合、メッセージは蓄積せずキャプチャ時点でリスナーへ通知する
+     */
+    public BufferedCommandSender(Server server, CommandOutputListener listener) {
         this.server = server;
+        this.buffer = new CaptureBuffer();
+        this.listener = listener;
     }
 
     /**
      * キャプチャされたメッセージを結合して返す（装飾コード付き）
      */
     public String getOutput() {
-        return String.join("\n", messages);
+        return buffer.getOutput();
     }
 
     /**
      * キャプチャされたメッセージを結合して返す（装飾コード無し）
      */
     public String getPlainOutput() {
-        return String.join("\n", messages).replaceAll("\u00a7[0-9a-fk-or]", "");
+        return buffer.getPlainOutput();
     }
 
     /**
      * キャプチャされたメッセージのリストを返す
      */
     public List<String> getMessages() {
-        return messages;
+        return buffer.getLines();
+    }
+
+    /**
+     * これまでにキャプチャされたメッセージ数を返す（上限により破棄したものを含む）
+     */
+    public int getCapturedCount() {
+        return buffer.getReceivedCount();
     }
 
     @Override
     public void sendMessage(String message) {
-        messages.add(message);
+        if (listener != null) {
+            listener.onOutput(message);
+            return;
+        }
+        buffer.append(message);
     }
 
     @Override
     public void sendMessage(String[] messages) {
         for (String msg : messages) {
-            this.messages.add(msg);
+            sendMessage(msg);
         }
     }
 
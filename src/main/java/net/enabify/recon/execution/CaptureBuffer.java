@@ -0,0 +1,227 @@
+package net.enabify.recon.execution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * コマンド出力をキャプチャするバッファ
+ *
+ * 追加時に1回だけ走査し、装飾コード付きの出力と装飾コード（§x）を除いた出力を同時に組み立てる
+ * 取得時に結合や正規表現による置換は行わない
+ * 保持するバイト数（UTF-8換算）と行数には上限があり、超えた分は破棄して
+ * 出力の末尾に切り詰めた旨を付ける
+ *
+ * 行毎の終端位置を記録しているため、行範囲を指定して出力を切り出せる（バッチ実行用）
+ * 複数のスレッドから追加・取得できる
+ */
+public class CaptureBuffer {
+
+    /** 1回分の出力の最大バイト数の既定値 */
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+    /** 1回分の出力の最大行数の既定値 */
+    public static final int DEFAULT_MAX_LINES = 10000;
+
+    /** 上限を超えて出力を切り詰めた場合に末尾へ付ける行 */
+    static final String TRUNCATION_MARKER = "... (output truncated)";
+
+    private static final char COLOR_CHAR = '\u00a7';
+
+    private final int maxBytes;
+    private final int maxLines;
+    private final StringBuilder output = new StringBuilder();
+    private final StringBuilder plainOutput = new StringBuilder();
+    /** 各行の終端位置（output, plainOutputの順に交互に格納） */
+    private int[] lineEnds = new int[32];
+    private int lineCount;
+    private int receivedCount;
+    private int bytes;
+    private boolean truncated;
+
+    public CaptureBuffer() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_MAX_LINES);
+    }
+
+    public CaptureBuffer(int maxBytes, int maxLines) {
+        this.maxBytes = Math.max(1, maxBytes);
+        this.maxLines = Math.max(1, maxLines);
+    }
+
+    /**
+     * 1行分のメッセージを追加する
+     * 上限に達している場合は破棄する（受信数には数える）
+     */
+    public synchronized void append(String message) {
+        receivedCount++;
+        if (truncated || message == null) {
+            return;
+        }
+        if (lineCount >= maxLines) {
+            truncated = true;
+            return;
+        }
+
+        if (lineCount > 0) {
+            if (bytes + 1 > maxBytes) {
+                truncated = true;
+                return;
+            }
+            output.append('\n');
+            plainOutput.append('\n');
+            bytes++;
+        }
+
+        int length = message.length();
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            boolean colorCode = c == COLOR_CHAR && i + 1 < length && isColorCode(message.charAt(i + 1));
+            int size = colorCode ? 3 : utf8Length(c);
+            if (bytes + size > maxBytes) {
+                if (Character.isLowSurrogate(c) && output.length() > 0) {
+                    // サロゲートペアを分割しない
+                    output.setLength(output.length() - 1);
+                    plainOutput.setLength(plainOutput.length() - 1);
+                }
+                truncated = true;
+                break;
+            }
+            bytes += size;
+            output.append(c);
+            if (colorCode) {
+                // 装飾コードは装飾付きの出力にのみ含める
+                output.append(message.charAt(++i));
+                continue;
+            }
+            plainOutput.append(c);
+        }
+
+        if (lineEnds.length < (lineCount + 1) * 2) {
+            lineEnds = Arrays.copyOf(lineEnds, lineEnds.length * 2);
+        }
+        lineEnds[lineCount * 2] = output.length();
+        lineEnds[lineCount * 2 + 1] = plainOutput.length();
+        lineCount++;
+    }
+
+    /**
+     * 追加されたメッセージ数（上限により破棄したものを含む）
+     */
+    public synchronized int getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * 保持しているメッセージ数
+     */
+    public synchronized int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * 上限により出力を切り詰めたか
+     */
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * 出力全体を返す（装飾コード付き）
+     */
+    public String getOutput() {
+        return getOutput(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 出力全体を返す（装飾コード無し）
+     */
+    public String getPlainOutput() {
+        return getPlainOutput(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 指定範囲の行を返す（装飾コード付き）
+     * 範囲が最後の行を含み、出力を切り詰めている場合は末尾に切り詰めた旨を付ける
+     *
+     * @param fromLine 開始行（含む）
+     * @param toLine   終了行（含まない、保持している行数を超えた分は無視する）
+     */
+    public synchronized String getOutput(int fromLine, int toLine) {
+        return slice(output, 0, fromLine, toLine);
+    }
+
+    /**
+     * 指定範囲の行を返す（装飾コード無し）
+     */
+    public synchronized String getPlainOutput(int fromLine, int toLine) {
+        return slice(plainOutput, 1, fromLine, toLine);
+    }
+
+    /**
+     * 保持しているメッセージを行毎に返す（装飾コード付き）
+     */
+    public synchronized List<String> getLines() {
+        List<String> lines = new ArrayList<>(lineCount);
+        int start = 0;
+        for (int i = 0; i < lineCount; i++) {
+            int end = lineEnds[i * 2];
+            lines.add(output.substring(start, end));
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    private String slice(StringBuilder source, int column, int fromLine, int toLine) {
+        int to = Math.min(toLine, lineCount);
+        boolean includesLast = to == lineCount;
+        String text;
+        if (fromLine >= to) {
+            text = "";
+        } else {
+            int start = fromLine == 0 ? 0 : lineEnds[(fromLine - 1) * 2 + column] + 1;
+            text = source.substring(start, lineEnds[(to - 1) * 2 + column]);
+        }
+        if (truncated && includesLast) {
+            return text.isEmpty() ? TRUNCATION_MARKER : text + "\n" + TRUNCATION_MARKER;
+        }
+        return text;
+    }
+
+    /**
+     * 文字列から装飾コード（§x）を1回の走査で除去する
+     */
+    public static String stripColorCodes(String message) {
+        if (message == null) return null;
+        int index = message.indexOf(COLOR_CHAR);
+        if (index < 0) {
+            return message;
+        }
+
+        int length = message.length();
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(message, 0, index);
+        for (int i = index; i < length; i++) {
+            char c = message.charAt(i);
+            if (c == COLOR_CHAR && i + 1 < length && isColorCode(message.charAt(i + 1))) {
+                i++;
+                continue;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isColorCode(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'k' && c <= 'o') || c == 'r';
+    }
+
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        if (c < 0x800 || Character.isSurrogate(c)) {
+            // サロゲートペアは2文字で4バイト
+            return 2;
+        }
+        return 3;
+    }
+}
@@ -0,0 +1,17 @@
+package net.enabify.recon.execution;
+
+/**
+ * コマンド出力をキャプチャした時点で通知を受け取るリスナー
+ * ストリーミングレスポンスで使用する
+ */
+@FunctionalInterface
+public interface CommandOutputListener {
+
+    /**
+     * 出力メッセージを1件キャプチャした際に呼ばれる
+     * メインスレッドやNettyのスレッドから呼ばれるため、重い処理は行わないこと
+     *
+     * @param message キャプチャしたメッセージ（装飾コード付き）
+     */
+    void onOutput(String message);
+}
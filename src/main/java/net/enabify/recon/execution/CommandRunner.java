@@ -1,6 +1,7 @@
 package net.enabify.recon.execution;
 
 import net.enabify.recon.Recon;
+import net.enabify.recon.config.ConfigManager.CompletionPolicy;
 import net.enabify.recon.model.ReconUser;
 import net.enabify.recon.platform.CommandExecutionService;
 import net.enabify.recon.util.SchedulerUtil;
@@ -8,8 +9,18 @@ import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.permissions.PermissionAttachment;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
 
 /**
  * コマンド実行エンジン
@@ -18,14 +29,17 @@ import java.util.concurrent.TimeUnit;
  *
  * コマンド実行後、dispatchCommandの戻り値(boolean)をsuccessに反映し、
  * キャプチャしたメッセージをresponseに格納して返す
- * 非同期メッセージにも対応するため、実行後数ティック待機してから結果を返す
+ * 非同期メッセージにも対応するため、実行後は完了判定ポリシーに従って出力を待機してから結果を返す
+ * 結果はCompletableFutureで返し、呼び出し元のHTTPスレッドをブロックしない
  */
 public class CommandRunner implements CommandExecutionService {
 
     private final Recon plugin;
+    private final TickDispatchQueue dispatchQueue;
+    private final RegionDispatchPlanner regionPlanner;
 
-    /** コマンド結果待機のティック数（非同期メッセージ対応） */
-    private static final long RESPONSE_WAIT_TICKS = 3L;
+    /** ストリーミング時に出力の途切れを確認する間隔（ティック） */
+    private static final long STREAM_POLL_TICKS = 10L;
 
     /**
      * コマンド実行結果
@@ -40,38 +54,121 @@ public class CommandRunner implements CommandExecutionService {
 
     public CommandRunner(Recon plugin) {
         this.plugin = plugin;
+        this.dispatchQueue = new TickDispatchQueue(plugin);
+        this.regionPlanner = new RegionDispatchPlanner(plugin);
     }
 
     /**
-     * ユーザー設定に基づいてコマンドを実行する
-     * HTTPスレッドから呼び出される想定
+     * APIコマンドの実行キュー
+     */
+    public TickDispatchQueue getDispatchQueue() {
+        return dispatchQueue;
+    }
+
+    /**
+     * 実行キューのキュー長・待ち時間（/recon status で表示する）
+     */
+    @Override
+    public Map<String, String> getDispatchStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("depth", String.valueOf(dispatchQueue.getQueueDepth()));
+        statistics.put("max_depth", String.valueOf(dispatchQueue.getMaxQueueDepth()));
+        statistics.put("dispatched", String.valueOf(dispatchQueue.getDispatchedCount()));
+        statistics.put("skipped", String.valueOf(dispatchQueue.getSkippedCount() + regionPlanner.getSkippedCount()));
+        statistics.put("avg_wait_ms", formatMillis(dispatchQueue.getAverageWaitNanos()));
+        statistics.put("max_wait_ms", formatMillis(dispatchQueue.getMaxWaitNanos()));
+        statistics.put("last_tick_ms", formatMillis(dispatchQueue.getLastTickNanos()));
+        return statistics;
+    }
+
+    /**
+     * Foliaでプレイヤー対象のコマンドを実行するリージョン毎のキュー長（/recon status で表示する）
+     */
+    @Override
+    public Map<String, Integer> getRegionQueueDepths() {
+        return regionPlanner.getRegionQueueDepths();
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * ユーザー設定に基づいてコマンドを非同期で実行する
+     * HTTPスレッドから呼び出される想定（呼び出し元はブロックしない）
      *
      * @param reconUser 実行元ユーザーの設定
      * @param command   実行するコマンド
      * @param queue     プレイヤーがオフライン時にキューに保存するか
-     * @return 実行結果
+     * @return 実行結果のステージ
      */
     @Override
-    public ExecutionResult executeCommand(ReconUser reconUser, String command, boolean queue) {
+    public CompletionStage<ExecutionResult> executeCommandAsync(ReconUser reconUser, String command, boolean queue) {
+        CompletableFuture<ExecutionResult> future;
         if (reconUser.getPlayer() != null && !reconUser.getPlayer().isEmpty()) {
             // プレイヤーとして実行
-            return executeAsPlayer(reconUser, command, queue);
+            future = executeAsPlayer(reconUser, command, queue);
         } else {
             // コンソールとして実行（権限管理不要）
-            return executeAsConsole(command);
+            future = executeAsConsole(reconUser, command);
+        }
+        return withTimeout(future);
+    }
+
+    /**
+     * コマンドを実行し、キャプチャした出力を逐次リスナーへ通知する
+     * 出力が stream-idle-seconds の間途切れるか、stream-max-seconds を経過した時点で完了する
+     * 出力は蓄積しないため、長時間の出力でもメモリ使用量は増えない
+     * 待機時間はコマンドの実行待ちの時間を含めず、コマンドを実行した時点から数える
+     */
+    @Override
+    public CompletionStage<ExecutionResult> executeCommandStreaming(ReconUser reconUser, String command, boolean queue,
+                                                                    CommandOutputListener listener) {
+        long maxSeconds = plugin.getConfigManager().getStreamMaxSeconds();
+        CompletionDetector window = new CompletionDetector(CompletionPolicy.QUIET,
+                plugin.getConfigManager().getStreamIdleSeconds() * 1000L, maxSeconds * 1000L, null);
+        CommandOutputListener tracked = message -> {
+            window.touch();
+            listener.onOutput(message);
+        };
+
+        CompletableFuture<ExecutionResult> future;
+        if (reconUser.getPlayer() != null && !reconUser.getPlayer().isEmpty()) {
+            future = streamAsPlayer(reconUser, command, queue, tracked, window);
+        } else {
+            future = streamAsConsole(reconUser, command, tracked, window);
         }
+        return withTimeout(future, maxSeconds + COMMAND_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * コマンド完了待機にタイムアウトを設定し、例外をエラー結果に変換する
+     */
+    private CompletableFuture<ExecutionResult> withTimeout(CompletableFuture<ExecutionResult> future) {
+        return withTimeout(future, COMMAND_TIMEOUT_SECONDS);
+    }
+
+    private CompletableFuture<ExecutionResult> withTimeout(CompletableFuture<ExecutionResult> future, long timeoutSeconds) {
+        return future
+                .orTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    return new ExecutionResult(false, null, null,
+                            plugin.getLangManager().format("error.internal",
+                                    java.util.Collections.singletonMap("error", cause.getMessage())));
+                });
     }
 
     /**
      * コンソールとしてコマンドを実行
      * BufferedCommandSenderでメッセージをキャプチャし、dispatchCommandの戻り値でsuccess判定
-     * 実行後、数ティック待機してから結果を返す（非同期メッセージ対応）
+     * 実行後、完了判定ポリシー（completion.policy）に従って待機してから結果を返す（非同期メッセージ対応）
      */
-    private ExecutionResult executeAsConsole(String command) {
+    private CompletableFuture<ExecutionResult> executeAsConsole(ReconUser reconUser, String command) {
         CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
 
-        SchedulerUtil.runGlobal(plugin, () -> {
-            BufferedCommandSender sender = new BufferedCommandSender(Bukkit.getServer());
+        dispatchQueue.submit(reconUser, future, () -> {
+            BufferedCommandSender sender = new BufferedCommandSender(Bukkit.getServer(), newCaptureBuffer());
             boolean success;
             try {
                 success = Bukkit.dispatchCommand(sender, command);
@@ -84,51 +181,36 @@ public class CommandRunner implements CommandExecutionService {
 
             final boolean cmdSuccess = success;
 
-            // 数ティック待機して非同期メッセージも取得してから結果を返す
-            SchedulerUtil.runGlobalLater(plugin, () -> {
+            // 完了判定ポリシーに従って待機し、非同期メッセージも取得してから結果を返す
+            CompletionDetector detector = newDetector(command, sender::getCapturedCount);
+            awaitCompletion(detector, task -> SchedulerUtil.runGlobalLater(plugin, task, 1L), () -> {
                 String response = sender.getOutput();
                 String plainResponse = sender.getPlainOutput();
                 String error = cmdSuccess ? null : plugin.getLangManager().get("error.command_returned_false");
                 future.complete(new ExecutionResult(cmdSuccess, response, plainResponse, error));
-            }, RESPONSE_WAIT_TICKS);
+            });
         });
 
-        try {
-            return future.get(10, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            return new ExecutionResult(false, null, null,
-                    plugin.getLangManager().format("error.internal",
-                            java.util.Collections.singletonMap("error", e.getMessage())));
-        }
+        return future;
     }
 
     /**
      * プレイヤーとしてコマンドを実行
-     * PlayerMessageInterceptorでNettyパイプラインを監視し、プレイヤーへ送信されるメッセージをキャプチャ
+     * PlayerMessageInterceptorをプレイヤーの常駐ハンドラーに登録し、プレイヤーへ送信されるメッセージをキャプチャ
      * オフラインの場合はキュー保存またはエラーを返す
      */
-    private ExecutionResult executeAsPlayer(ReconUser reconUser, String command, boolean queueIfOffline) {
+    private CompletableFuture<ExecutionResult> executeAsPlayer(ReconUser reconUser, String command, boolean queueIfOffline) {
         Player player = Bukkit.getPlayerExact(reconUser.getPlayer());
 
         if (player == null || !player.isOnline()) {
-            // プレイヤーがオフライン
-            if (queueIfOffline) {
-                plugin.getQueueManager().addToQueue(reconUser.getPlayer(), command, reconUser.getUser());
-                return new ExecutionResult(true,
-                        plugin.getLangManager().get("queue.player_offline_queued"),
-                        plugin.getLangManager().get("queue.player_offline_queued"), null);
-            } else {
-                return new ExecutionResult(false, null, null,
-                        plugin.getLangManager().format("error.player_offline_queue_disabled",
-                                java.util.Collections.singletonMap("player", reconUser.getPlayer())));
-            }
+            return CompletableFuture.completedFuture(offlineResult(reconUser, command, queueIfOffline));
         }
 
         CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
 
-        SchedulerUtil.runForEntity(plugin, player, () -> {
-            // Nettyインターセプターを注入してプレイヤーへのメッセージをキャプチャ
-            PlayerMessageInterceptor interceptor = new PlayerMessageInterceptor(player);
+        dispatchForEntity(reconUser, player, future, () -> {
+            // キャプチャセッションを登録してプレイヤーへのメッセージをキャプチャ
+            PlayerMessageInterceptor interceptor = new PlayerMessageInterceptor(player, newCaptureBuffer());
             boolean interceptorActive = interceptor.inject();
 
             boolean success;
@@ -144,8 +226,9 @@ public class CommandRunner implements CommandExecutionService {
 
             final boolean cmdSuccess = success;
 
-            // 数ティック待機して非同期メッセージも取得してから結果を返す
-            SchedulerUtil.runForEntityLater(plugin, player, () -> {
+            // 完了判定ポリシーに従って待機し、非同期メッセージも取得してから結果を返す
+            CompletionDetector detector = newDetector(command, interceptorActive ? interceptor::getCapturedCount : null);
+            awaitCompletion(detector, task -> SchedulerUtil.runForEntityLater(plugin, player, task, 1L), () -> {
                 String response;
                 String plainResponse;
                 if (interceptorActive) {
@@ -158,16 +241,362 @@ public class CommandRunner implements CommandExecutionService {
                 }
                 String error = cmdSuccess ? null : plugin.getLangManager().get("error.command_returned_false");
                 future.complete(new ExecutionResult(cmdSuccess, response, plainResponse, error));
-            }, RESPONSE_WAIT_TICKS);
+            });
+        }, () -> future.complete(offlineResult(reconUser, command, queueIfOffline)));
+
+        return future;
+    }
+
+    /**
+     * プレイヤーがオフラインの場合の結果（キュー保存が有効ならキューに保存する）
+     */
+    private ExecutionResult offlineResult(ReconUser reconUser, String command, boolean queueIfOffline) {
+        if (queueIfOffline) {
+            plugin.getQueueManager().addToQueue(reconUser.getPlayer(), command, reconUser.getUser());
+            return new ExecutionResult(true,
+                    plugin.getLangManager().get("queue.player_offline_queued"),
+                    plugin.getLangManager().get("queue.player_offline_queued"), null);
+        }
+        return new ExecutionResult(false, null, null,
+                plugin.getLangManager().format("error.player_offline_queue_disabled",
+                        java.util.Collections.singletonMap("player", reconUser.getPlayer())));
+    }
+
+    /**
+     * コンソールとしてコマンドを実行し、出力をストリーミングする
+     */
+    private CompletableFuture<ExecutionResult> streamAsConsole(ReconUser reconUser, String command,
+                                                               CommandOutputListener listener,
+                                                               CompletionDetector window) {
+        CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
+
+        dispatchQueue.submit(reconUser, future, () -> {
+            window.restart();
+            BufferedCommandSender sender = new BufferedCommandSender(Bukkit.getServer(), listener);
+            boolean success;
+            try {
+                success = Bukkit.dispatchCommand(sender, command);
+            } catch (Exception e) {
+                future.complete(new ExecutionResult(false,
+                        plugin.getLangManager().format("error.command_execution",
+                                java.util.Collections.singletonMap("error", e.getMessage())), "", null));
+                return;
+            }
+
+            String error = success ? null : plugin.getLangManager().get("error.command_returned_false");
+            awaitCompletion(window, task -> SchedulerUtil.runGlobalLater(plugin, task, STREAM_POLL_TICKS),
+                    () -> future.complete(new ExecutionResult(success, "", "", error)));
         });
 
-        try {
-            return future.get(10, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            return new ExecutionResult(false, null, null,
-                    plugin.getLangManager().format("error.internal",
-                            java.util.Collections.singletonMap("error", e.getMessage())));
+        return future;
+    }
+
+    /**
+     * プレイヤーとしてコマンドを実行し、出力をストリーミングする
+     * オフラインの場合は通常実行と同じ結果を1件の出力として通知する
+     */
+    private CompletableFuture<ExecutionResult> streamAsPlayer(ReconUser reconUser, String command, boolean queueIfOffline,
+                                                              CommandOutputListener listener, CompletionDetector window) {
+        Player player = Bukkit.getPlayerExact(reconUser.getPlayer());
+
+        if (player == null || !player.isOnline()) {
+            return executeAsPlayer(reconUser, command, queueIfOffline).thenApply(result -> {
+                if (result.response != null && !result.response.isEmpty()) {
+                    listener.onOutput(result.response);
+                }
+                return new ExecutionResult(result.success, "", "", result.error);
+            });
+        }
+
+        CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
+
+        dispatchForEntity(reconUser, player, future, () -> {
+            window.restart();
+            PlayerMessageInterceptor interceptor = new PlayerMessageInterceptor(player, listener);
+            boolean interceptorActive = interceptor.inject();
+
+            boolean success;
+            try {
+                success = executeWithPermissions(player, reconUser, command);
+            } catch (Exception e) {
+                if (interceptorActive) interceptor.remove();
+                future.complete(new ExecutionResult(false,
+                        plugin.getLangManager().format("error.command_execution",
+                                java.util.Collections.singletonMap("error", e.getMessage())), "", null));
+                return;
+            }
+
+            String error = success ? null : plugin.getLangManager().get("error.command_returned_false");
+            awaitCompletion(window, task -> SchedulerUtil.runForEntityLater(plugin, player, task, STREAM_POLL_TICKS),
+                    () -> {
+                        if (interceptorActive) interceptor.remove();
+                        future.complete(new ExecutionResult(success, "", "", error));
+                    });
+        }, () -> {
+            ExecutionResult result = offlineResult(reconUser, command, queueIfOffline);
+            if (result.response != null && !result.response.isEmpty()) {
+                listener.onOutput(result.response);
+            }
+            future.complete(new ExecutionResult(result.success, "", "", result.error));
+        });
+
+        return future;
+    }
+
+    /**
+     * プレイヤーのスケジューラーでタスクを実行する
+     * Foliaではプレイヤーのリージョンスレッドで実行する必要があるため、所有リージョン毎のキューに追加し
+     * （リージョン間は並列に実行される）、
+     * それ以外ではメインスレッドの実行キュー（実行元ユーザーのレーン）に追加する
+     * 実行する時点でプレイヤーがオフラインになっていた場合は、taskの代わりにonOfflineを実行する
+     * 実行する時点でresultが完了している（タイムアウトした）場合はどちらも実行しない
+     */
+    private void dispatchForEntity(ReconUser reconUser, Player player, CompletableFuture<?> result, Runnable task,
+                                   Runnable onOffline) {
+        if (SchedulerUtil.isFolia()) {
+            regionPlanner.submit(player, result, task, onOffline);
+        } else {
+            dispatchQueue.submit(reconUser, result, () -> {
+                if (player.isOnline()) {
+                    task.run();
+                } else {
+                    onOffline.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * 設定された上限（capture.max-bytes / capture.max-lines）で出力のキャプチャバッファを生成する
+     */
+    private CaptureBuffer newCaptureBuffer() {
+        return new CaptureBuffer(plugin.getConfigManager().getCaptureMaxBytes(),
+                plugin.getConfigManager().getCaptureMaxLines());
+    }
+
+    /**
+     * 設定された完了判定ポリシー（コマンド別の上書きを含む）で判定器を生成する
+     * コマンド実行直後に生成すること（生成時点のキャプチャ件数を基準にする）
+     */
+    private CompletionDetector newDetector(String command, IntSupplier capturedCount) {
+        return new CompletionDetector(
+                plugin.getConfigManager().getCompletionPolicy(command),
+                plugin.getConfigManager().getCompletionQuietMillis(),
+                plugin.getConfigManager().getCompletionMaxWaitMillis(),
+                capturedCount);
+    }
+
+    /**
+     * 完了条件を満たすまで一定間隔で確認し、満たした時点でonCompleteを実行する
+     */
+    private void awaitCompletion(CompletionDetector detector, Consumer<Runnable> scheduleLater, Runnable onComplete) {
+        scheduleLater.accept(() -> {
+            if (detector.isComplete()) {
+                onComplete.run();
+            } else {
+                awaitCompletion(detector, scheduleLater, onComplete);
+            }
+        });
+    }
+
+    /**
+     * 複数のコマンドを実行キューのユーザーのレーンで順番に実行する
+     * コマンド毎に1件のタスクとして実行するため、ティックの時間予算はコマンド毎に確認され、
+     * 1回のバッチで1ティックを占有しない（結果待機は最後のコマンドの後に1回だけ行う）
+     *
+     * @param reconUser 実行元ユーザーの設定
+     * @param commands  実行するコマンド（実行順）
+     * @param queue     プレイヤーがオフライン時にキューに保存するか
+     * @return コマンドと同じ順序の実行結果リストのステージ
+     */
+    @Override
+    public CompletionStage<List<ExecutionResult>> executeBatchAsync(ReconUser reconUser, List<String> commands, boolean queue) {
+        CompletableFuture<List<ExecutionResult>> future;
+        if (reconUser.getPlayer() != null && !reconUser.getPlayer().isEmpty()) {
+            future = executeBatchAsPlayer(reconUser, commands, queue);
+        } else {
+            future = executeBatchAsConsole(reconUser, commands);
+        }
+
+        return future
+                .orTimeout(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    ExecutionResult error = new ExecutionResult(false, null, null,
+                            plugin.getLangManager().format("error.internal",
+                                    java.util.Collections.singletonMap("error", cause.getMessage())));
+                    return new ArrayList<>(java.util.Collections.nCopies(commands.size(), error));
+                });
+    }
+
+    /**
+     * バッチのコマンドを1件ずつ実行キューへ追加する
+     * 前のコマンドを実行した後に次のコマンドを追加するため、実行順は保たれる
+     *
+     * @param dispatch 1件分のタスクを実行キューへ追加する処理
+     * @param entry    index番目のコマンドを実行する処理
+     * @param onDone   最後のコマンドを実行した後の処理
+     */
+    private void dispatchBatchEntries(Consumer<Runnable> dispatch, int index, int size, IntConsumer entry,
+                                      Runnable onDone) {
+        dispatch.accept(() -> {
+            entry.accept(index);
+            if (index + 1 < size) {
+                dispatchBatchEntries(dispatch, index + 1, size, entry, onDone);
+            } else {
+                onDone.run();
+            }
+        });
+    }
+
+    /**
+     * コンソールとして複数コマンドを実行
+     * コマンド毎にBufferedCommandSenderを用意し、出力を個別にキャプチャする
+     */
+    private CompletableFuture<List<ExecutionResult>> executeBatchAsConsole(ReconUser reconUser, List<String> commands) {
+        CompletableFuture<List<ExecutionResult>> future = new CompletableFuture<>();
+
+        int size = commands.size();
+        BufferedCommandSender[] senders = new BufferedCommandSender[size];
+        ExecutionResult[] failures = new ExecutionResult[size];
+        boolean[] successes = new boolean[size];
+
+        dispatchBatchEntries(task -> dispatchQueue.submit(reconUser, future, task), 0, size, i -> {
+            senders[i] = new BufferedCommandSender(Bukkit.getServer(), newCaptureBuffer());
+            try {
+                successes[i] = Bukkit.dispatchCommand(senders[i], commands.get(i));
+            } catch (Exception e) {
+                failures[i] = new ExecutionResult(false,
+                        plugin.getLangManager().format("error.command_execution",
+                                java.util.Collections.singletonMap("error", e.getMessage())), "", null);
+            }
+        }, () -> {
+            // 完了判定ポリシー（バッチでは既定のポリシー）に従って待機してから結果を返す
+            CompletionDetector detector = newDetector(null, () -> {
+                int total = 0;
+                for (BufferedCommandSender sender : senders) {
+                    total += sender.getCapturedCount();
+                }
+                return total;
+            });
+            awaitCompletion(detector, task -> SchedulerUtil.runGlobalLater(plugin, task, 1L), () -> {
+                List<ExecutionResult> results = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    if (failures[i] != null) {
+                        results.add(failures[i]);
+                        continue;
+                    }
+                    String error = successes[i] ? null : plugin.getLangManager().get("error.command_returned_false");
+                    results.add(new ExecutionResult(successes[i],
+                            senders[i].getOutput(), senders[i].getPlainOutput(), error));
+                }
+                future.complete(results);
+            });
+        });
+
+        return future;
+    }
+
+    /**
+     * プレイヤーとして複数コマンドを実行
+     * キャプチャセッションは最初のコマンドの実行時に1回だけ登録し、各コマンド実行直後のキャプチャ件数で出力を区切る
+     * 待機中に遅れて届いたメッセージは最後のコマンドの出力として扱う
+     * 途中でプレイヤーがオフラインになった場合、残りのコマンドはオフライン時の結果（キュー保存またはエラー）とする
+     */
+    private CompletableFuture<List<ExecutionResult>> executeBatchAsPlayer(ReconUser reconUser, List<String> commands,
+                                                                          boolean queueIfOffline) {
+        Player player = Bukkit.getPlayerExact(reconUser.getPlayer());
+
+        if (player == null || !player.isOnline()) {
+            // コマンド毎にキュー保存（またはエラー）の結果を順番に連結する（呼び出し元スレッドでは待機しない）
+            CompletableFuture<List<ExecutionResult>> chain = CompletableFuture.completedFuture(new ArrayList<>());
+            for (String command : commands) {
+                chain = chain.thenCompose(results -> executeAsPlayer(reconUser, command, queueIfOffline)
+                        .thenApply(result -> {
+                            results.add(result);
+                            return results;
+                        }));
+            }
+            return chain;
+        }
+
+        CompletableFuture<List<ExecutionResult>> future = new CompletableFuture<>();
+
+        int size = commands.size();
+        PlayerMessageInterceptor interceptor = new PlayerMessageInterceptor(player, newCaptureBuffer());
+        boolean[] interceptorActive = new boolean[1];
+        ExecutionResult[] failures = new ExecutionResult[size];
+        boolean[] successes = new boolean[size];
+        int[] boundaries = new int[size];
+        // 次に実行するコマンドの位置（オフラインになった時点で残りのコマンドを判定する）
+        int[] next = new int[1];
+
+        // タイムアウトで残りのコマンドが破棄された場合もキャプチャセッションを解除する
+        future.whenComplete((results, error) -> interceptor.remove());
+
+        Runnable onOffline = () -> {
+            interceptor.remove();
+            for (int i = next[0]; i < size; i++) {
+                failures[i] = offlineResult(reconUser, commands.get(i), queueIfOffline);
+                boundaries[i] = interceptorActive[0] ? interceptor.getCapturedCount() : 0;
+            }
+            future.complete(collectPlayerBatchResults(interceptor, interceptorActive[0], failures, successes,
+                    boundaries));
+        };
+
+        dispatchBatchEntries(task -> dispatchForEntity(reconUser, player, future, task, onOffline), 0, size, i -> {
+            if (i == 0) {
+                interceptorActive[0] = interceptor.inject();
+                if (future.isDone()) {
+                    interceptor.remove();
+                }
+            }
+            try {
+                successes[i] = executeWithPermissions(player, reconUser, commands.get(i));
+            } catch (Exception e) {
+                failures[i] = new ExecutionResult(false,
+                        plugin.getLangManager().format("error.command_execution",
+                                java.util.Collections.singletonMap("error", e.getMessage())), "", null);
+            }
+            boundaries[i] = interceptorActive[0] ? interceptor.getCapturedCount() : 0;
+            next[0] = i + 1;
+        }, () -> {
+            // 完了判定ポリシー（バッチでは既定のポリシー）に従って待機してから結果を返す
+            CompletionDetector detector = newDetector(null,
+                    interceptorActive[0] ? interceptor::getCapturedCount : null);
+            awaitCompletion(detector, task -> SchedulerUtil.runForEntityLater(plugin, player, task, 1L), () -> {
+                interceptor.remove();
+                future.complete(collectPlayerBatchResults(interceptor, interceptorActive[0], failures, successes,
+                        boundaries));
+            });
+        });
+
+        return future;
+    }
+
+    /**
+     * プレイヤーとして実行したバッチの結果を、コマンド毎のキャプチャ件数の区切りで組み立てる
+     */
+    private List<ExecutionResult> collectPlayerBatchResults(PlayerMessageInterceptor interceptor,
+                                                            boolean interceptorActive, ExecutionResult[] failures,
+                                                            boolean[] successes, int[] boundaries) {
+        int size = failures.length;
+        List<ExecutionResult> results = new ArrayList<>(size);
+        int from = 0;
+        for (int i = 0; i < size; i++) {
+            int to = i == size - 1 ? Integer.MAX_VALUE : Math.max(from, boundaries[i]);
+            String response = interceptorActive ? interceptor.getOutput(from, to) : "";
+            String plainResponse = interceptorActive ? interceptor.getPlainOutput(from, to) : "";
+            from = to;
+
+            if (failures[i] != null) {
+                results.add(failures[i]);
+                continue;
+            }
+            String error = successes[i] ? null : plugin.getLangManager().get("error.command_returned_false");
+            results.add(new ExecutionResult(successes[i], response, plainResponse, error));
         }
+        return results;
     }
 
     /**
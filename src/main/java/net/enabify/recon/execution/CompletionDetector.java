@@ -0,0 +1,92 @@
+package net.enabify.recon.execution;
+
+import net.enabify.recon.config.ConfigManager.CompletionPolicy;
+
+import java.util.function.IntSupplier;
+
+/**
+ * コマンド出力の収集を終了するタイミングを判定する
+ * コマンド実行後、一定間隔（通常は1ティック毎）に isComplete() を呼び出して使用する
+ *
+ * 出力の到着は、キャプチャ件数の変化（capturedCount）または touch() の呼び出しで検知する
+ */
+class CompletionDetector {
+
+    /** FIXEDポリシーで待機するティック数（従来の固定待機） */
+    static final int FIXED_WAIT_TICKS = 3;
+
+    private final CompletionPolicy policy;
+    private final long quietMillis;
+    private final long maxWaitMillis;
+    private volatile long deadline;
+    private final IntSupplier capturedCount;
+    private int lastCount;
+    private int checks;
+    private volatile long lastActivity;
+    private volatile boolean activity;
+
+    /**
+     * @param capturedCount キャプチャ済みの件数（取得できない場合はnullとし、touch()で通知する）
+     */
+    CompletionDetector(CompletionPolicy policy, long quietMillis, long maxWaitMillis, IntSupplier capturedCount) {
+        long now = System.currentTimeMillis();
+        this.policy = policy;
+        this.quietMillis = quietMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.deadline = now + maxWaitMillis;
+        this.capturedCount = capturedCount;
+        this.lastCount = capturedCount != null ? capturedCount.getAsInt() : 0;
+        this.lastActivity = now;
+    }
+
+    /**
+     * 待機の起点を現在時刻にやり直す
+     * 生成からコマンド実行までに時間が掛かる場合（メインスレッドでの実行待ち等）に、実行直前に呼ぶ
+     */
+    void restart() {
+        long now = System.currentTimeMillis();
+        deadline = now + maxWaitMillis;
+        lastActivity = now;
+    }
+
+    /**
+     * 出力のキャプチャを通知する
+     */
+    void touch() {
+        lastActivity = System.currentTimeMillis();
+        activity = true;
+    }
+
+    /**
+     * 収集を終了してよいか判定する
+     */
+    boolean isComplete() {
+        checks++;
+        if (capturedCount != null) {
+            int count = capturedCount.getAsInt();
+            if (count != lastCount) {
+                lastCount = count;
+                touch();
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (now >= deadline) {
+            return true;
+        }
+
+        switch (policy) {
+            case FIXED:
+                return checks >= FIXED_WAIT_TICKS;
+            case SYNC:
+                // コマンド実行後に何も届いていなければ同期的に完了したとみなす
+                if (!activity) {
+                    return true;
+                }
+                return now - lastActivity >= quietMillis;
+            case QUIET:
+            default:
+                return now - lastActivity >= quietMillis;
+        }
+    }
+}
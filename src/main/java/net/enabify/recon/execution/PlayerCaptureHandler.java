@@ -0,0 +1,154 @@
+package net.enabify.recon.execution;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * オンラインのプレイヤー毎に1つだけNettyパイプラインへ常駐させる送信パケットのハンドラー
+ * 参加時に追加し、退出時・接続の切断時に削除する
+ *
+ * コマンド毎のキャプチャはセッション（PlayerMessageInterceptor）の登録・解除だけで行い、
+ * コマンド実行の度にパイプラインを変更しない
+ * セッションのリストは読み取り時にロックを取らないため、送信パケット毎のコストは
+ * セッションが無い間はリストが空かの確認だけになる
+ * 同じプレイヤーで複数のキャプチャが同時に動いている場合は、すべてのセッションへ通知する
+ */
+public class PlayerCaptureHandler extends ChannelDuplexHandler {
+
+    private static final String HANDLER_NAME = "recon_capture";
+    private static final Map<UUID, PlayerCaptureHandler> HANDLERS = new ConcurrentHashMap<>();
+
+    private final UUID playerId;
+    private final Channel channel;
+    private final List<PlayerMessageInterceptor> sessions = new CopyOnWriteArrayList<>();
+
+    private PlayerCaptureHandler(UUID playerId, Channel channel) {
+        this.playerId = playerId;
+        this.channel = channel;
+    }
+
+    /**
+     * プレイヤーのパイプラインにハンドラーを追加する（追加済みの場合は既存のものを返す）
+     *
+     * 切断済みのチャンネルには追加しない（追加後の切断は channelInactive で登録を削除する）
+     *
+     * @return チャンネルが取得できない・切断済み等で追加できなかった場合 null
+     */
+    public static synchronized PlayerCaptureHandler install(Player player) {
+        UUID playerId = player.getUniqueId();
+        PlayerCaptureHandler existing = HANDLERS.get(playerId);
+        if (existing != null && existing.channel.isActive()) {
+            return existing;
+        }
+
+        Channel channel = PlayerMessageInterceptor.getPlayerChannel(player);
+        if (channel == null || !channel.isActive()) {
+            HANDLERS.remove(playerId);
+            return null;
+        }
+
+        PlayerCaptureHandler handler = new PlayerCaptureHandler(playerId, channel);
+        // パイプラインへの追加より先に登録し、追加直後の切断でも channelInactive で確実に削除されるようにする
+        HANDLERS.put(playerId, handler);
+        try {
+            // プラグインの再読み込み前に追加されたハンドラーが残っている場合は置き換える
+            if (channel.pipeline().get(HANDLER_NAME) != null) {
+                channel.pipeline().remove(HANDLER_NAME);
+            }
+            channel.pipeline().addBefore("packet_handler", HANDLER_NAME, handler);
+        } catch (Exception e) {
+            HANDLERS.remove(playerId, handler);
+            return null;
+        }
+        // 追加する前に切断された場合は channelInactive が呼ばれないため、ここで削除する
+        if (!channel.isActive()) {
+            HANDLERS.remove(playerId, handler);
+            handler.detach();
+            return null;
+        }
+        return handler;
+    }
+
+    /**
+     * プレイヤーのパイプラインからハンドラーを削除する
+     */
+    public static synchronized void uninstall(Player player) {
+        PlayerCaptureHandler handler = HANDLERS.remove(player.getUniqueId());
+        if (handler != null) {
+            handler.detach();
+        }
+    }
+
+    /**
+     * すべてのプレイヤーのハンドラーを削除する（プラグイン無効化時）
+     */
+    public static synchronized void uninstallAll() {
+        for (PlayerCaptureHandler handler : HANDLERS.values()) {
+            handler.detach();
+        }
+        HANDLERS.clear();
+    }
+
+    /**
+     * キャプチャ用のハンドラーを取得する
+     * 参加時に追加されていない場合（参加前から接続していた等）は、ここで追加する
+     */
+    static PlayerCaptureHandler forPlayer(Player player) {
+        PlayerCaptureHandler handler = HANDLERS.get(player.getUniqueId());
+        if (handler != null && handler.channel.isActive()) {
+            return handler;
+        }
+        return install(player);
+    }
+
+    void addSession(PlayerMessageInterceptor session) {
+        sessions.add(session);
+    }
+
+    void removeSession(PlayerMessageInterceptor session) {
+        sessions.remove(session);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!sessions.isEmpty()) {
+            try {
+                String text = PlayerMessageInterceptor.extractChatMessage(msg);
+                if (text != null && !text.isEmpty()) {
+                    for (PlayerMessageInterceptor session : sessions) {
+                        session.onMessage(text);
+                    }
+                }
+            } catch (Exception ignored) {
+            }
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // 退出イベントより先に切断された場合も登録が残らないようにする
+        HANDLERS.remove(playerId, this);
+        sessions.clear();
+        super.channelInactive(ctx);
+    }
+
+    private void detach() {
+        sessions.clear();
+        try {
+            if (channel.pipeline().get(HANDLER_NAME) == this) {
+                channel.pipeline().remove(this);
+            }
+        } catch (Exception ignored) {
+        }
+    }
+}
@@ -1,16 +1,16 @@
 package net.enabify.recon.execution;
 
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelDuplexHandler;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelPromise;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -20,8 +20,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Bukkit.dispatchCommand()の結果としてプレイヤーに送られるメッセージを取得するために使用
  *
  * CraftPlayer → EntityPlayer → PlayerConnection → NetworkManager → Channel
- * の順にリフレクションでNettyチャンネルを取得し、ChannelDuplexHandlerを注入して
- * 送信されるチャットパケットからテキストを抽出する
+ * の順にリフレクションで取得したNettyチャンネルには、プレイヤー毎に常駐する
+ * PlayerCaptureHandlerが追加されている
+ * このクラスはキャプチャ1回分のセッションとしてハンドラーに登録され、
+ * 送信されるチャットパケットから抽出したテキストを受け取る
  *
  * 対応バージョン: 1.13以降のSpigot/Paper/Folia
  */
@@ -29,17 +31,52 @@ public class PlayerMessageInterceptor {
 
     // CraftChatMessage.fromComponent() メソッドのキャッシュ
     private static volatile boolean reflectionInitialized = false;
-    private static Method fromComponentMethod;
+    private static MethodHandle fromComponentHandle;
+
+    private static final MethodHandle[] NO_HANDLES = new MethodHandle[0];
+
+    /** パケットクラス毎のテキスト読み取り対象フィールド（チャット以外のパケットは空） */
+    private static final ClassValue<MethodHandle[]> PACKET_FIELDS = new ClassValue<MethodHandle[]>() {
+        @Override
+        protected MethodHandle[] computeValue(Class<?> type) {
+            return resolvePacketFields(type);
+        }
+    };
+
+    /** コンポーネントクラス毎のテキスト取得メソッド（優先順） */
+    private static final ClassValue<MethodHandle[]> COMPONENT_METHODS = new ClassValue<MethodHandle[]>() {
+        @Override
+        protected MethodHandle[] computeValue(Class<?> type) {
+            return resolveComponentMethods(type);
+        }
+    };
 
     private final Player player;
-    private final List<String> capturedMessages = Collections.synchronizedList(new ArrayList<String>());
-    private final String handlerName;
-    private Channel channel;
+    private final CaptureBuffer buffer;
+    private PlayerCaptureHandler handler;
     private final AtomicBoolean active = new AtomicBoolean(false);
+    private final CommandOutputListener listener;
 
     public PlayerMessageInterceptor(Player player) {
+        this(player, new CaptureBuffer());
+    }
+
+    /**
+     * @param buffer メッセージを蓄積するバッファ（上限付き）
+     */
+    public PlayerMessageInterceptor(Player player, CaptureBuffer buffer) {
         this.player = player;
-        this.handlerName = "recon_intercept_" + System.nanoTime();
+        this.buffer = buffer;
+        this.listener = null;
+    }
+
+    /**
+     * @param listener 指定した場合、メッセージは蓄積せずキャプチャ時点でリスナーへ通知する
+     */
+    public PlayerMessageInterceptor(Player player, CommandOutputListener listener) {
+        this.player = player;
+        this.buffer = new CaptureBuffer();
+        this.listener = listener;
     }
 
     /**
@@ -58,7 +95,7 @@ public class PlayerMessageInterceptor {
                                     && m.getParameterCount() == 1
                                     && m.getReturnType() == String.class) {
                                 m.setAccessible(true);
-                                fromComponentMethod = m;
+                                fromComponentHandle = toObjectHandle(m);
                                 break;
                             }
                         }
@@ -71,32 +108,18 @@ public class PlayerMessageInterceptor {
     }
 
     /**
-     * プレイヤーのNettyパイプラインにインターセプターを注入する
+     * プレイヤーの常駐ハンドラーにキャプチャセッションを登録する
+     * （パイプラインの変更は行わない）
      *
-     * @return 注入に成功した場合 true
+     * @return 登録に成功した場合 true
      */
     public boolean inject() {
         try {
-            channel = getPlayerChannel(player);
-            if (channel == null) return false;
-
-            channel.pipeline().addBefore("packet_handler", handlerName, new ChannelDuplexHandler() {
-                @Override
-                public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-                    if (active.get()) {
-                        try {
-                            String text = extractChatMessage(msg);
-                            if (text != null && !text.isEmpty()) {
-                                capturedMessages.add(text);
-                            }
-                        } catch (Exception ignored) {
-                        }
-                    }
-                    super.write(ctx, msg, promise);
-                }
-            });
+            handler = PlayerCaptureHandler.forPlayer(player);
+            if (handler == null) return false;
 
             active.set(true);
+            handler.addSession(this);
             return true;
         } catch (Exception e) {
             return false;
@@ -104,17 +127,26 @@ public class PlayerMessageInterceptor {
     }
 
     /**
-     * インターセプターを削除する
+     * キャプチャセッションの登録を解除する
      */
     public void remove() {
         active.set(false);
-        if (channel != null) {
-            try {
-                if (channel.pipeline().get(handlerName) != null) {
-                    channel.pipeline().remove(handlerName);
-                }
-            } catch (Exception ignored) {
-            }
+        if (handler != null) {
+            handler.removeSession(this);
+        }
+    }
+
+    /**
+     * 常駐ハンドラーから、送信されるチャットメッセージのテキストを受け取る
+     */
+    void onMessage(String text) {
+        if (!active.get()) {
+            return;
+        }
+        if (listener != null) {
+            listener.onOutput(text);
+        } else {
+            buffer.append(text);
         }
     }
 
@@ -122,21 +154,45 @@ public class PlayerMessageInterceptor {
      * キャプチャされたメッセージのリストを返す
      */
     public List<String> getCapturedMessages() {
-        return new ArrayList<String>(capturedMessages);
+        return buffer.getLines();
+    }
+
+    /**
+     * これまでにキャプチャされたメッセージ数を返す（上限により破棄したものを含む）
+     */
+    public int getCapturedCount() {
+        return buffer.getReceivedCount();
     }
 
     /**
      * キャプチャされたメッセージを結合して返す（装飾コード付き）
      */
     public String getOutput() {
-        return String.join("\n", capturedMessages);
+        return buffer.getOutput();
     }
 
     /**
      * キャプチャされたメッセージを結合して返す（装飾コード無し）
      */
     public String getPlainOutput() {
-        return String.join("\n", capturedMessages).replaceAll("\u00a7[0-9a-fk-or]", "");
+        return buffer.getPlainOutput();
+    }
+
+    /**
+     * 指定範囲のメッセージを結合して返す（装飾コード付き）
+     *
+     * @param fromIndex 開始位置（getCapturedCount()の値、含む）
+     * @param toIndex   終了位置（getCapturedCount()の値、含まない）
+     */
+    public String getOutput(int fromIndex, int toIndex) {
+        return buffer.getOutput(fromIndex, toIndex);
+    }
+
+    /**
+     * 指定範囲のメッセージを結合して返す（装飾コード無し）
+     */
+    public String getPlainOutput(int fromIndex, int toIndex) {
+        return buffer.getPlainOutput(fromIndex, toIndex);
     }
 
     // ==========================================
@@ -147,7 +203,7 @@ public class PlayerMessageInterceptor {
      * CraftPlayer → EntityPlayer → PlayerConnection → NetworkManager → Channel
      * の順にリフレクションでNettyチャンネルを取得する
      */
-    private static Channel getPlayerChannel(Player player) {
+    static Channel getPlayerChannel(Player player) {
         try {
             // CraftPlayer.getHandle() → ServerPlayer/EntityPlayer
             Object entityPlayer = player.getClass().getMethod("getHandle").invoke(player);
@@ -245,6 +301,7 @@ public class PlayerMessageInterceptor {
     /**
      * 送信パケットからチャットメッセージのテキストを抽出する
      * バージョンに依存しないようリフレクションで各種パターンに対応
+     * フィールドの探索はパケットクラス毎に1回だけ行い、以降はキャッシュした手順で読み取る
      *
      * 対応パケット:
      * - PacketPlayOutChat (1.13-1.18)
@@ -252,23 +309,22 @@ public class PlayerMessageInterceptor {
      * - ClientboundPlayerChatPacket (1.19+)
      * - ClientboundDisguisedChatPacket (1.19.3+)
      */
-    private static String extractChatMessage(Object packet) {
-        String className = packet.getClass().getSimpleName();
+    static String extractChatMessage(Object packet) {
+        MethodHandle[] getters = PACKET_FIELDS.get(packet.getClass());
 
         // チャット関連パケットのみ処理
-        if (!className.contains("Chat") && !className.contains("Disguised")) {
+        if (getters.length == 0) {
             return null;
         }
 
         ensureReflectionInitialized();
 
-        for (Field f : packet.getClass().getDeclaredFields()) {
+        for (MethodHandle getter : getters) {
             try {
-                f.setAccessible(true);
-                Object value = f.get(packet);
+                Object value = (Object) getter.invokeExact(packet);
                 if (value == null) continue;
 
-                // プリミティブ型・列挙型・UUIDはスキップ
+                // 宣言型がObject等の場合は、値の型で改めて判定する
                 if (value instanceof Boolean || value instanceof Number
                         || value instanceof Enum || value instanceof java.util.UUID) {
                     continue;
@@ -295,13 +351,41 @@ public class PlayerMessageInterceptor {
                 if (text != null && !text.isEmpty()) {
                     return text;
                 }
-            } catch (Exception ignored) {
+            } catch (Throwable ignored) {
             }
         }
 
         return null;
     }
 
+    /**
+     * パケットクラスから、テキストを含み得るフィールドの読み取りハンドルを列挙する
+     * チャット関連以外のパケットクラスは空の配列（以降のパケットでは何も読み取らない）
+     */
+    private static MethodHandle[] resolvePacketFields(Class<?> packetClass) {
+        String className = packetClass.getSimpleName();
+        if (!className.contains("Chat") && !className.contains("Disguised")) {
+            return NO_HANDLES;
+        }
+
+        List<MethodHandle> getters = new ArrayList<MethodHandle>();
+        for (Field f : packetClass.getDeclaredFields()) {
+            Class<?> type = f.getType();
+            // プリミティブ型・列挙型・UUID・静的フィールドはスキップ
+            if (Modifier.isStatic(f.getModifiers()) || type.isPrimitive() || type.isEnum()
+                    || type == java.util.UUID.class) {
+                continue;
+            }
+            try {
+                f.setAccessible(true);
+                getters.add(MethodHandles.lookup().unreflectGetter(f)
+                        .asType(MethodType.methodType(Object.class, Object.class)));
+            } catch (Exception ignored) {
+            }
+        }
+        return getters.toArray(NO_HANDLES);
+    }
+
     /**
      * IChatBaseComponent / Component オブジェクトからプレーンテキストを取得する
      * 複数のストラテジーを試行して最適な変換方法を使用する
@@ -309,23 +393,43 @@ public class PlayerMessageInterceptor {
     private static String componentToText(Object component) {
         // Strategy 1: CraftChatMessage.fromComponent(component)
         // CraftBukkit/Spigot全バージョンで最も確実な変換方法
-        if (fromComponentMethod != null) {
+        if (fromComponentHandle != null) {
             try {
-                Object result = fromComponentMethod.invoke(null, component);
+                Object result = (Object) fromComponentHandle.invokeExact(component);
                 if (result instanceof String) {
                     // 装飾コード付きのまま返す
                     return (String) result;
                 }
-            } catch (Exception ignored) {
+            } catch (Throwable ignored) {
             }
         }
 
+        // Strategy 2, 3: コンポーネントクラス毎に解決したメソッド
+        for (MethodHandle method : COMPONENT_METHODS.get(component.getClass())) {
+            try {
+                Object result = (Object) method.invokeExact(component);
+                if (result instanceof String && !((String) result).isEmpty()) {
+                    return (String) result;
+                }
+            } catch (Throwable ignored) {
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * コンポーネントクラスから、テキストを返すメソッドを優先順に列挙する
+     */
+    private static MethodHandle[] resolveComponentMethods(Class<?> componentClass) {
+        List<MethodHandle> methods = new ArrayList<MethodHandle>();
+
         // Strategy 2: getString() メソッド (1.16+)
         try {
-            Method m = component.getClass().getMethod("getString");
-            Object result = m.invoke(component);
-            if (result instanceof String) {
-                return (String) result;
+            Method m = componentClass.getMethod("getString");
+            if (m.getReturnType() == String.class) {
+                m.setAccessible(true);
+                methods.add(toObjectHandle(m));
             }
         } catch (Exception ignored) {
         }
@@ -334,24 +438,31 @@ public class PlayerMessageInterceptor {
         String[] altMethods = {"getText", "getContents", "text", "a"};
         for (String name : altMethods) {
             try {
-                Method m = component.getClass().getDeclaredMethod(name);
-                m.setAccessible(true);
-                Object result = m.invoke(component);
-                if (result instanceof String && !((String) result).isEmpty()) {
-                    return (String) result;
+                Method m = componentClass.getDeclaredMethod(name);
+                if (m.getReturnType() == String.class) {
+                    m.setAccessible(true);
+                    methods.add(toObjectHandle(m));
                 }
             } catch (Exception ignored) {
             }
         }
 
-        return null;
+        return methods.toArray(NO_HANDLES);
+    }
+
+    /**
+     * 引数1つのメソッド（インスタンスメソッドはレシーバー、静的メソッドは第1引数）を
+     * (Object)Object 型のハンドルに変換する
+     */
+    private static MethodHandle toObjectHandle(Method method) throws IllegalAccessException {
+        return MethodHandles.lookup().unreflect(method)
+                .asType(MethodType.methodType(Object.class, Object.class));
     }
 
     /**
      * Minecraftカラーコード（§x）を除去する
      */
-    private static String cleanColorCodes(String message) {
-        if (message == null) return null;
-        return message.replaceAll("\u00a7[0-9a-fk-or]", "");
+    static String cleanColorCodes(String message) {
+        return CaptureBuffer.stripColorCodes(message);
     }
 }
@@ -0,0 +1,198 @@
+package net.enabify.recon.execution;
+
+import net.enabify.recon.Recon;
+import net.enabify.recon.util.SchedulerUtil;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Folia向けに、プレイヤー対象のコマンドを所有リージョン毎にまとめて実行するプランナー
+ *
+ * コマンド毎にEntitySchedulerへタスクを登録する代わりに、プレイヤーの位置から
+ * リージョンセクション（既定のgrid-exponent 4 = 16x16チャンク）を求めてキューを分け、
+ * リージョン毎に1つのタスクでまとめて実行する
+ * 異なるリージョンのキューはそれぞれのリージョンスレッドで並列に処理される
+ *
+ * 1回の処理時間は dispatch.tick-budget-ns までに制限し、残りは次のタスクに持ち越す
+ * 登録後にプレイヤーが別のリージョンへ移動していた場合は、EntitySchedulerで実行し直す
+ * 実行時点でプレイヤーがオフラインの場合は、タスクの代わりにオフライン時の処理を実行する
+ * 実行時点で結果のFutureが完了している（呼び出し元がタイムアウトした）タスクは実行せずに破棄する
+ *
+ * プレイヤーの位置はリージョンスレッドでしか読めないため、タスクを実行した際に記録した位置で
+ * キューを選ぶ（登録元のスレッドからはエンティティの状態を読まない）
+ * 位置が未記録のプレイヤーはEntitySchedulerで実行し、その際に位置を記録する
+ */
+public class RegionDispatchPlanner {
+
+    /** Foliaのリージョンセクションの大きさ（チャンク数の2の指数、Foliaの既定値） */
+    private static final int SECTION_SHIFT = 4;
+
+    private final Recon plugin;
+    private final Map<String, RegionQueue> regions = new ConcurrentHashMap<>();
+    /** プレイヤー → 所有リージョンのスレッドで最後に記録した位置（ログアウトしたプレイヤーは自動的に外れる） */
+    private final Map<Player, Location> lastLocations = Collections.synchronizedMap(new WeakHashMap<>());
+    private final LongAdder skippedCount = new LongAdder();
+
+    public RegionDispatchPlanner(Recon plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * プレイヤーの所有リージョンのキューにタスクを追加する（任意のスレッドから呼び出せる）
+     *
+     * @param result    タスクが完了させる結果（実行前に完了していればタスクを実行しない）
+     * @param task      プレイヤーの所有リージョンのスレッドで実行するタスク
+     * @param onOffline 実行時点でプレイヤーがオフラインだった場合に、taskの代わりに実行する処理
+     */
+    public void submit(Player player, Future<?> result, Runnable task, Runnable onOffline) {
+        PlayerTask playerTask = new PlayerTask(player, result, task, onOffline);
+        Location location = lastLocations.get(player);
+        if (location == null) {
+            dispatchToEntity(playerTask);
+            return;
+        }
+
+        String key = regionKey(location);
+        RegionQueue region = regions.computeIfAbsent(key, k -> new RegionQueue(location));
+        region.tasks.add(playerTask);
+        region.depth.incrementAndGet();
+        schedule(key, region);
+    }
+
+    /**
+     * リージョン毎の現在の待機タスク数（待機が無いリージョンは含まない）
+     */
+    public Map<String, Integer> getRegionQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        for (Map.Entry<String, RegionQueue> entry : regions.entrySet()) {
+            int depth = entry.getValue().depth.get();
+            if (depth > 0) {
+                depths.put(entry.getKey(), depth);
+            }
+        }
+        return depths;
+    }
+
+    /**
+     * 起動後に実行前にタイムアウトしたため破棄したタスク数
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    private void schedule(String key, RegionQueue region) {
+        if (region.scheduled.compareAndSet(false, true)) {
+            SchedulerUtil.runAtLocation(plugin, region.location, () -> drain(key, region));
+        }
+    }
+
+    /**
+     * 時間予算の範囲内でリージョンのキューを処理する（リージョンスレッドで実行される）
+     */
+    private void drain(String key, RegionQueue region) {
+        long start = System.nanoTime();
+        long budget = plugin.getConfigManager().getDispatchTickBudgetNanos();
+
+        PlayerTask task;
+        while ((task = region.tasks.poll()) != null) {
+            region.depth.decrementAndGet();
+            if (task.result.isDone()) {
+                skippedCount.increment();
+            } else if (!task.player.isOnline()) {
+                lastLocations.remove(task.player);
+                run(task.onOffline);
+            } else if (SchedulerUtil.isOwnedByCurrentRegion(task.player)) {
+                lastLocations.put(task.player, task.player.getLocation());
+                run(task.task);
+            } else {
+                // 記録した位置から別リージョンへ移動していた
+                dispatchToEntity(task);
+            }
+            if (System.nanoTime() - start >= budget) {
+                break;
+            }
+        }
+
+        region.scheduled.set(false);
+        if (region.tasks.isEmpty()) {
+            // 空になったキューは外す（削除と同時に追加されたタスクも、下の再確認で処理される）
+            regions.remove(key, region);
+        }
+        if (!region.tasks.isEmpty()) {
+            schedule(key, region);
+        }
+    }
+
+    /**
+     * プレイヤーのEntitySchedulerで実行し、実行時の位置を記録する
+     * 実行前にログアウトした場合はオフライン時の処理を行う
+     */
+    private void dispatchToEntity(PlayerTask task) {
+        SchedulerUtil.runForEntity(plugin, task.player, () -> {
+            if (task.result.isDone()) {
+                skippedCount.increment();
+                return;
+            }
+            if (!task.player.isOnline()) {
+                lastLocations.remove(task.player);
+                run(task.onOffline);
+                return;
+            }
+            lastLocations.put(task.player, task.player.getLocation());
+            run(task.task);
+        }, task.onOffline);
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error in region command task: " + e.getMessage());
+        }
+    }
+
+    private static String regionKey(Location location) {
+        World world = location.getWorld();
+        return (world != null ? world.getName() : "?") + ":"
+                + ((location.getBlockX() >> 4) >> SECTION_SHIFT) + ","
+                + ((location.getBlockZ() >> 4) >> SECTION_SHIFT);
+    }
+
+    private static class RegionQueue {
+        private final Location location;
+        private final Queue<PlayerTask> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        private RegionQueue(Location location) {
+            this.location = location;
+        }
+    }
+
+    private static class PlayerTask {
+        private final Player player;
+        private final Future<?> result;
+        private final Runnable task;
+        private final Runnable onOffline;
+
+        private PlayerTask(Player player, Future<?> result, Runnable task, Runnable onOffline) {
+            this.player = player;
+            this.result = result;
+            this.task = task;
+            this.onOffline = onOffline;
+        }
+    }
+}
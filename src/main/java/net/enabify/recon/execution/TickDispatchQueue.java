@@ -0,0 +1,298 @@
+package net.enabify.recon.execution;
+
+import net.enabify.recon.Recon;
+import net.enabify.recon.model.ReconUser;
+import net.enabify.recon.util.SchedulerUtil;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * APIから実行するコマンドをメインスレッド（Foliaではグローバルリージョン）で順番に実行するキュー
+ *
+ * リクエスト毎にタスクを登録する代わりに、1つの繰り返しタスクが毎ティックキューを処理する
+ * 1ティックあたりの処理時間を dispatch.tick-budget-ns までに制限し、残りは次のティックに持ち越す
+ * （少なくとも1件は毎ティック実行する）
+ * これにより、リクエストが集中してもティックの遅延を抑える
+ *
+ * タスクはReconユーザー毎のレーンに積まれ、次の順序で取り出す
+ * - 優先度（priority）が高いクラスのレーンを常に先に処理する（厳密な優先度）
+ * - 同じ優先度のレーン間はDeficit Round Robinで処理する
+ *   1巡毎に QUANTUM_NANOS × weight の実行時間を割り当て、実際に掛かった時間を差し引く
+ *   （割り当てを使い切ったレーンは次の巡回まで待つ）
+ *   空になったレーンが超過分（負の割り当て）を持つ場合は IDLE_RETENTION_NANOS の間保持し、
+ *   その間にタスクが追加されれば超過分を持ち越す（空になる度に超過分が帳消しにならないようにする）
+ * 大量のコマンドを送るユーザーがいても、他のユーザーの待ち時間は自分のレーンの分だけに抑えられる
+ *
+ * 取り出した時点で結果のFutureが完了している（呼び出し元がタイムアウトした）タスクは実行せずに破棄する
+ */
+public class TickDispatchQueue {
+
+    /** Deficit Round Robinで1巡毎に重み1あたり割り当てる実行時間（ナノ秒） */
+    private static final long QUANTUM_NANOS = 1_000_000L;
+    /** 超過分を持つ空のレーンを保持する時間（ナノ秒） */
+    private static final long IDLE_RETENTION_NANOS = 1_000_000_000L;
+
+    private final Recon plugin;
+    /** 優先度（降順） → 同じ優先度のスケジューリングクラス（lockで保護） */
+    private final NavigableMap<Integer, PriorityClass> classes = new TreeMap<>(Collections.reverseOrder());
+    private final Object lock = new Object();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LongAdder dispatchedCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private volatile long lastTickNanos;
+
+    public TickDispatchQueue(Recon plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * キューを処理する繰り返しタスクを開始する
+     */
+    public void start() {
+        SchedulerUtil.runGlobalTimer(plugin, this::drain, 1L, 1L);
+    }
+
+    /**
+     * 実行元ユーザーのレーンにタスクを追加する（任意のスレッドから呼び出せる）
+     * ユーザーの優先度・重みは追加時点の値を使用する
+     *
+     * @param result タスクが完了させる結果（実行前に完了していればタスクを実行しない）
+     */
+    public void submit(ReconUser reconUser, Future<?> result, Runnable task) {
+        QueuedTask queued = new QueuedTask(task, result, System.nanoTime());
+        synchronized (lock) {
+            PriorityClass priorityClass = classes.computeIfAbsent(reconUser.getPriority(), p -> new PriorityClass());
+            Lane lane = priorityClass.lanes.get(reconUser.getUser());
+            if (lane == null) {
+                lane = new Lane(reconUser.getUser());
+                priorityClass.lanes.put(lane.user, lane);
+            }
+            if (!lane.active) {
+                // 保持していた空のレーンは超過分を持ち越したまま巡回に戻す
+                lane.active = true;
+                priorityClass.active.add(lane);
+            }
+            lane.weight = Math.max(1, reconUser.getWeight());
+            lane.tasks.add(queued);
+        }
+        int current = depth.incrementAndGet();
+        maxDepth.accumulateAndGet(current, Math::max);
+    }
+
+    /**
+     * 時間予算の範囲内でキューを処理する
+     */
+    private void drain() {
+        long start = System.nanoTime();
+        long budget = plugin.getConfigManager().getDispatchTickBudgetNanos();
+        long now = start;
+
+        while (true) {
+            Lane lane;
+            QueuedTask task;
+            synchronized (lock) {
+                lane = nextLane(now);
+                if (lane == null) {
+                    break;
+                }
+                task = lane.tasks.poll();
+            }
+            depth.decrementAndGet();
+            if (task.result.isDone()) {
+                // 呼び出し元がタイムアウト済みで結果を受け取らないため、コマンドを実行しない
+                skippedCount.increment();
+                continue;
+            }
+            long wait = now - task.enqueuedAt;
+            totalWaitNanos.add(wait);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+            dispatchedCount.increment();
+
+            try {
+                task.task.run();
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error in dispatched command task: " + e.getMessage());
+            }
+
+            long finished = System.nanoTime();
+            synchronized (lock) {
+                // 実際の実行時間を割り当てから差し引く（負になった分は次の巡回で返済する）
+                lane.deficit -= finished - now;
+            }
+            now = finished;
+            if (now - start >= budget) {
+                break;
+            }
+        }
+
+        lastTickNanos = now - start;
+    }
+
+    /**
+     * 次にタスクを実行するレーンを選ぶ（lockを保持して呼ぶこと）
+     * 最も優先度の高いクラスの先頭レーンに割り当てが残っていればそれを返し、
+     * 残っていなければ割り当てを補充して末尾に回す
+     */
+    private Lane nextLane(long now) {
+        Iterator<PriorityClass> classIterator = classes.values().iterator();
+        while (classIterator.hasNext()) {
+            PriorityClass priorityClass = classIterator.next();
+            priorityClass.expireIdle(now);
+            while (true) {
+                Lane lane = priorityClass.active.peek();
+                if (lane == null) {
+                    break;
+                }
+                if (lane.tasks.isEmpty()) {
+                    priorityClass.deactivate(priorityClass.active.poll(), now);
+                    continue;
+                }
+                if (lane.deficit > 0L) {
+                    return lane;
+                }
+                // 割り当てを補充して末尾に回し、次のレーンを試す
+                lane.deficit += QUANTUM_NANOS * lane.weight;
+                priorityClass.active.add(priorityClass.active.poll());
+            }
+            if (priorityClass.lanes.isEmpty()) {
+                classIterator.remove();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 現在キューで待機しているタスク数
+     */
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    /**
+     * 起動後のキューの最大待機数
+     */
+    public int getMaxQueueDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * 起動後に実行したタスク数
+     */
+    public long getDispatchedCount() {
+        return dispatchedCount.sum();
+    }
+
+    /**
+     * 起動後に実行前にタイムアウトしたため破棄したタスク数
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    /**
+     * キューに追加されてから実行されるまでの平均待ち時間（ナノ秒）
+     */
+    public long getAverageWaitNanos() {
+        long count = dispatchedCount.sum();
+        return count == 0 ? 0L : totalWaitNanos.sum() / count;
+    }
+
+    /**
+     * キューに追加されてから実行されるまでの最大待ち時間（ナノ秒）
+     */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * 直近のティックでキューの処理に使った時間（ナノ秒）
+     */
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    /**
+     * 同じ優先度のレーンの集合（activeはDRRの巡回順）
+     */
+    private static class PriorityClass {
+        private final Map<String, Lane> lanes = new HashMap<>();
+        private final ArrayDeque<Lane> active = new ArrayDeque<>();
+        /** 超過分を持つ空のレーン（空になった順） */
+        private final ArrayDeque<Lane> idle = new ArrayDeque<>();
+
+        /**
+         * 空になったレーンを巡回から外す
+         * 残った割り当ては持ち越さず、超過分がある場合のみレーンを保持する
+         */
+        private void deactivate(Lane lane, long now) {
+            lane.active = false;
+            if (lane.deficit >= 0L) {
+                lanes.remove(lane.user);
+                return;
+            }
+            lane.idleSince = now;
+            idle.add(lane);
+        }
+
+        /**
+         * 保持期間を過ぎた空のレーンを削除する（超過分は帳消しにする）
+         */
+        private void expireIdle(long now) {
+            Lane lane;
+            while ((lane = idle.peek()) != null) {
+                if (lane.active) {
+                    // 保持中にタスクが追加されて巡回に戻った
+                    idle.poll();
+                } else if (now - lane.idleSince >= IDLE_RETENTION_NANOS) {
+                    idle.poll();
+                    // 同じユーザーのレーンが作り直されている場合はそちらを残す
+                    lanes.remove(lane.user, lane);
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reconユーザー1人分のタスク列と、DRRの残り割り当て
+     */
+    private static class Lane {
+        private final String user;
+        private final ArrayDeque<QueuedTask> tasks = new ArrayDeque<>();
+        private int weight = 1;
+        private long deficit;
+        /** 巡回中（active に入っている）か */
+        private boolean active;
+        private long idleSince;
+
+        private Lane(String user) {
+            this.user = user;
+        }
+    }
+
+    private static class QueuedTask {
+        private final Runnable task;
+        private final Future<?> result;
+        private final long enqueuedAt;
+
+        private QueuedTask(Runnable task, Future<?> result, long enqueuedAt) {
+            this.task = task;
+            this.result = result;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
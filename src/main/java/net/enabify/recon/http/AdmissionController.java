@@ -0,0 +1,192 @@
+package net.enabify.recon.http;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * コマンド実行の同時実行数を制限するアドミッション制御
+ *
+ * 実行中のコマンド数に全体の上限とユーザー毎の上限を設け、上限を超えたリクエストは
+ * コマンドを実行せずに即座に拒否する（呼び出し元が503を返す）
+ * 全体の上限はコマンドの所要時間からAIMD（加算増加・乗算減少）で調整する
+ * - 所要時間が目標以下で、上限の半分以上が使用されていれば上限を1増やす
+ * - 所要時間が目標を超えた場合は上限を減らす（目標時間内に1回まで）
+ * メインスレッドが停止した場合は所要時間が延びて上限が下がり、待機するリクエストが積み上がらない
+ * 完了時の処理（暗号化・送信）の待機数にも上限を設け、達している間は新しいコマンドを拒否する
+ */
+class AdmissionController {
+
+    /** 所要時間が目標を超えた場合に上限に掛ける値 */
+    private static final double BACKOFF_RATIO = 0.75;
+    /** 所要時間の指数移動平均の重み */
+    private static final double SMOOTHING = 0.2;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int perUserLimit;
+    private final long targetLatencyNanos;
+    private final int maxRetryAfterSeconds;
+
+    private final Map<String, Integer> inFlightByUser = new HashMap<>();
+    /** 完了時の処理の待機数（上限を設けない場合は null） */
+    private volatile IntSupplier backlog;
+    private volatile int maxBacklog;
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+    private double smoothedLatencyNanos;
+
+    /**
+     * @param minLimit             全体の上限の最小値
+     * @param maxLimit             全体の上限の最大値（初期値）
+     * @param perUserLimit         ユーザー毎の上限
+     * @param targetLatencyMillis  コマンド1件あたりの所要時間の目標
+     * @param maxRetryAfterSeconds Retry-After の最大秒数
+     */
+    AdmissionController(int minLimit, int maxLimit, int perUserLimit, long targetLatencyMillis,
+                        int maxRetryAfterSeconds) {
+        this(true, minLimit, maxLimit, perUserLimit, targetLatencyMillis, maxRetryAfterSeconds);
+    }
+
+    private AdmissionController(boolean enabled, int minLimit, int maxLimit, int perUserLimit,
+                                long targetLatencyMillis, int maxRetryAfterSeconds) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.perUserLimit = perUserLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.maxRetryAfterSeconds = maxRetryAfterSeconds;
+        this.limit = maxLimit;
+        this.lastDecreaseNanos = System.nanoTime() - targetLatencyNanos;
+    }
+
+    /**
+     * 全てのリクエストを受け付ける（アドミッション制御が無効の場合）
+     */
+    static AdmissionController unlimited() {
+        return new AdmissionController(false, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 1);
+    }
+
+    /**
+     * 完了時の処理の待機数の上限を設定する（アドミッション制御が無効の場合も適用する）
+     *
+     * @param backlog    完了時の処理の待機数
+     * @param maxBacklog 新しいコマンドを受け付ける待機数の上限
+     */
+    void limitBacklog(IntSupplier backlog, int maxBacklog) {
+        this.maxBacklog = maxBacklog;
+        this.backlog = backlog;
+    }
+
+    /**
+     * コマンドの実行を受け付ける
+     *
+     * @return 受け付けた場合は実行完了時に解放する許可、上限を超える場合は null
+     */
+    synchronized Permit tryAcquire(String user) {
+        IntSupplier pending = backlog;
+        if (pending != null && pending.getAsInt() >= maxBacklog) {
+            return null;
+        }
+        if (!enabled) {
+            return new Permit(user, 0L, true);
+        }
+        if (inFlight >= (int) limit) {
+            return null;
+        }
+        int userInFlight = inFlightByUser.getOrDefault(user, 0);
+        if (userInFlight >= perUserLimit) {
+            return null;
+        }
+        inFlight++;
+        inFlightByUser.put(user, userInFlight + 1);
+        return new Permit(user, System.nanoTime(), false);
+    }
+
+    /**
+     * 拒否したリクエストに返す Retry-After の秒数（実行枠が空くまでの目安として平均所要時間を使う）
+     */
+    synchronized int getRetryAfterSeconds() {
+        long seconds = (long) Math.ceil(smoothedLatencyNanos / TimeUnit.SECONDS.toNanos(1));
+        return (int) Math.min(maxRetryAfterSeconds, Math.max(1, seconds));
+    }
+
+    private synchronized void releasePermit(Permit permit, int commands, boolean sample) {
+        int userInFlight = inFlightByUser.getOrDefault(permit.user, 1) - 1;
+        if (userInFlight <= 0) {
+            inFlightByUser.remove(permit.user);
+        } else {
+            inFlightByUser.put(permit.user, userInFlight);
+        }
+
+        if (sample) {
+            long now = System.nanoTime();
+            long latency = (now - permit.startNanos) / Math.max(1, commands);
+            smoothedLatencyNanos = smoothedLatencyNanos == 0
+                    ? latency : smoothedLatencyNanos + SMOOTHING * (latency - smoothedLatencyNanos);
+            if (latency > targetLatencyNanos) {
+                if (now - lastDecreaseNanos >= targetLatencyNanos) {
+                    limit = Math.max(minLimit, Math.floor(limit * BACKOFF_RATIO));
+                    lastDecreaseNanos = now;
+                }
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+        inFlight--;
+    }
+
+    /**
+     * 受け付けたコマンドの実行枠
+     */
+    final class Permit {
+
+        private final String user;
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(String user, long startNanos, boolean released) {
+            this.user = user;
+            this.startNanos = startNanos;
+            this.released = released;
+        }
+
+        /**
+         * 実行完了時に解放し、所要時間を上限の調整に使う
+         *
+         * @param commands 実行したコマンド数（バッチの場合は所要時間をコマンド数で割る）
+         */
+        void release(int commands) {
+            releaseOnce(commands, true);
+        }
+
+        /**
+         * 所要時間を上限の調整に使わずに解放する（ストリーミング・ジョブ等、実行時間がコマンドに依存する場合）
+         */
+        void releaseWithoutSample() {
+            releaseOnce(0, false);
+        }
+
+        /**
+         * 指定した秒数が経過しても解放されていなければ解放する
+         * （ストリーミングのレスポンスが送信開始前に破棄され、完了時の解放が呼ばれない場合に備える）
+         */
+        void releaseAfter(long seconds) {
+            CompletableFuture.delayedExecutor(seconds, TimeUnit.SECONDS).execute(this::releaseWithoutSample);
+        }
+
+        private void releaseOnce(int commands, boolean sample) {
+            synchronized (AdmissionController.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                releasePermit(this, commands, sample);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package net.enabify.recon.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * トランスポート非依存のAPIリクエスト
+ * JDK HttpServer / Netty のどちらで受信したリクエストもこの形に変換してApiHandlerに渡す
+ */
+public class ApiRequest {
+
+    private final String clientIp;
+    private final String method;
+    private final String path;
+    private final Map<String, String> headers;
+    private final byte[] body;
+
+    /**
+     * @param clientIp 接続元IPアドレス
+     * @param method   HTTPメソッド
+     * @param path     リクエストパス（クエリ文字列を除く）
+     * @param headers  リクエストヘッダー（同名ヘッダーは先頭の値のみ）
+     * @param body     リクエストボディ（UTF-8のバイト列、コピーせずに保持する）
+     */
+    public ApiRequest(String clientIp, String method, String path, Map<String, String> headers, byte[] body) {
+        this.clientIp = clientIp;
+        this.method = method;
+        this.path = path;
+        Map<String, String> normalized = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (headers != null) {
+            normalized.putAll(headers);
+        }
+        this.headers = Collections.unmodifiableMap(normalized);
+        this.body = body != null ? body : new byte[0];
+    }
+
+    public String getClientIp() {
+        return clientIp;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * ヘッダー値を取得する（大文字小文字を区別しない）
+     *
+     * @return ヘッダー値、存在しない場合は null
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * リクエストボディのバイト列
+     */
+    public byte[] getBodyBytes() {
+        return body;
+    }
+
+    /**
+     * リクエストボディを文字列として取得する（呼び出す度にデコードする）
+     */
+    public String getBody() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * バイト列から直接読み取るReaderを返す（ボディ全体の文字列は生成しない）
+     */
+    public Reader openBodyReader() {
+        return new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8);
+    }
+}
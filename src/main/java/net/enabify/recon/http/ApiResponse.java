@@ -0,0 +1,118 @@
+package net.enabify.recon.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * トランスポート非依存のAPIレスポンス
+ * ApiHandlerが生成し、各トランスポートがHTTPレスポンスとして送信する
+ */
+public class ApiResponse {
+
+    /** JSONレスポンスのContent-Type */
+    public static final String JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+    /** Server-Sent EventsのContent-Type */
+    public static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream; charset=UTF-8";
+    /** CBORレスポンスのContent-Type */
+    public static final String CBOR_CONTENT_TYPE = "application/cbor";
+
+    private final int statusCode;
+    private final byte[] body;
+    private final Map<String, String> headers;
+    private final String contentType;
+    private final Consumer<ResponseSink> streamingBody;
+
+    public ApiResponse(int statusCode, String body) {
+        this(statusCode, body, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * @param statusCode HTTPステータスコード
+     * @param body       レスポンスボディ（UTF-8のJSON、コピーせずに保持する）
+     */
+    ApiResponse(int statusCode, byte[] body) {
+        this(statusCode, body, JSON_CONTENT_TYPE);
+    }
+
+    /**
+     * @param contentType レスポンスボディの形式（JSON・CBOR）
+     */
+    ApiResponse(int statusCode, byte[] body, String contentType) {
+        this(statusCode, body, Collections.<String, String>emptyMap(), contentType, null);
+    }
+
+    /**
+     * @param statusCode HTTPステータスコード
+     * @param body       レスポンスボディ（JSON文字列）
+     * @param headers    Content-Type以外の追加ヘッダー
+     */
+    public ApiResponse(int statusCode, String body, Map<String, String> headers) {
+        this(statusCode, body.getBytes(StandardCharsets.UTF_8), headers, JSON_CONTENT_TYPE, null);
+    }
+
+    private ApiResponse(int statusCode, byte[] body, Map<String, String> headers,
+                        String contentType, Consumer<ResponseSink> streamingBody) {
+        this.statusCode = statusCode;
+        this.body = body;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        this.contentType = contentType;
+        this.streamingBody = streamingBody;
+    }
+
+    /**
+     * Server-Sent Eventsのストリーミングレスポンスを生成する
+     * トランスポートはヘッダー送信後にstreamingBodyへ送信先を渡し、以降のボディ送信はstreamingBody側が行う
+     *
+     * @param streamingBody 送信先を受け取ってイベントを書き込む処理
+     */
+    static ApiResponse eventStream(Consumer<ResponseSink> streamingBody) {
+        return new ApiResponse(200, new byte[0], Collections.singletonMap("Cache-Control", "no-cache"),
+                EVENT_STREAM_CONTENT_TYPE, streamingBody);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * レスポンスボディを文字列として取得する（呼び出す度にデコードする）
+     */
+    public String getBody() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * レスポンスボディのバイト列（UTF-8）
+     */
+    public byte[] getBodyBytes() {
+        return body;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * ストリーミングレスポンスか
+     */
+    public boolean isStreaming() {
+        return streamingBody != null;
+    }
+
+    /**
+     * ストリーミングレスポンスの送信を開始する
+     */
+    void startStreaming(ResponseSink sink) {
+        streamingBody.accept(sink);
+    }
+
+    /**
+     * Content-Type以外の追加ヘッダー
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+}
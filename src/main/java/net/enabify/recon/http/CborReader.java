@@ -0,0 +1,274 @@
+package net.enabify.recon.http;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * リクエストのエンベロープを読み取るための最小限のCBOR（RFC 8949）リーダー
+ *
+ * バイト列を先頭から1回走査する。整数・バイト列・文字列・配列・マップ・真偽値・nullを読み取れ、
+ * それ以外（浮動小数点数・タグ付きの値等）は読み飛ばしのみ対応する
+ * 長さ不定の配列・マップに対応し、長さ不定のバイト列・文字列は受け付けない
+ */
+class CborReader {
+
+    /** メジャータイプ */
+    static final int UNSIGNED = 0;
+    static final int NEGATIVE = 1;
+    static final int BYTES = 2;
+    static final int TEXT = 3;
+    static final int ARRAY = 4;
+    static final int MAP = 5;
+    static final int TAG = 6;
+    static final int SIMPLE = 7;
+
+    private static final int BREAK = 0xff;
+    /** 入れ子の深さの上限（読み飛ばし時の再帰を制限する） */
+    private static final int MAX_DEPTH = 32;
+
+    private final byte[] data;
+    private int position;
+
+    CborReader(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * 次の値のメジャータイプ
+     */
+    int peekType() throws IOException {
+        return (peekByte() & 0xff) >>> 5;
+    }
+
+    /**
+     * 次の値が null（または undefined）か
+     */
+    boolean peekNull() throws IOException {
+        int initial = peekByte() & 0xff;
+        return initial == 0xf6 || initial == 0xf7;
+    }
+
+    /**
+     * マップの開始を読み取る
+     *
+     * @return 要素数、長さ不定の場合は -1（{@link #hasNext()} で終端を判定する）
+     */
+    int readMapStart() throws IOException {
+        return readContainerStart(MAP);
+    }
+
+    /**
+     * 配列の開始を読み取る
+     *
+     * @return 要素数、長さ不定の場合は -1
+     */
+    int readArrayStart() throws IOException {
+        return readContainerStart(ARRAY);
+    }
+
+    /**
+     * 長さ不定の配列・マップに次の要素があるか（終端であれば読み進める）
+     */
+    boolean hasNext() throws IOException {
+        if ((peekByte() & 0xff) == BREAK) {
+            position++;
+            return false;
+        }
+        return true;
+    }
+
+    String readText() throws IOException {
+        int length = readLength(TEXT);
+        String text = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return text;
+    }
+
+    byte[] readBytes() throws IOException {
+        int length = readLength(BYTES);
+        byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+        position += length;
+        return bytes;
+    }
+
+    long readLong() throws IOException {
+        int initial = readByte() & 0xff;
+        int type = initial >>> 5;
+        if (type != UNSIGNED && type != NEGATIVE) {
+            throw new IOException("Expected integer, got major type " + type);
+        }
+        long value = readArgument(initial & 0x1f);
+        if (value < 0) {
+            throw new IOException("Integer out of range");
+        }
+        return type == NEGATIVE ? -1 - value : value;
+    }
+
+    int readInt() throws IOException {
+        long value = readLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Integer out of range");
+        }
+        return (int) value;
+    }
+
+    boolean readBoolean() throws IOException {
+        int initial = readByte() & 0xff;
+        if (initial == 0xf4) {
+            return false;
+        }
+        if (initial == 0xf5) {
+            return true;
+        }
+        throw new IOException("Expected boolean");
+    }
+
+    void readNull() throws IOException {
+        if (!peekNull()) {
+            throw new IOException("Expected null");
+        }
+        position++;
+    }
+
+    /**
+     * 次の値（入れ子を含む）を読み飛ばす
+     */
+    void skipValue() throws IOException {
+        skipValue(0);
+    }
+
+    /**
+     * 全て読み取ったか
+     */
+    boolean isAtEnd() {
+        return position >= data.length;
+    }
+
+    private void skipValue(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("CBOR nesting too deep");
+        }
+        int initial = readByte() & 0xff;
+        int type = initial >>> 5;
+        int info = initial & 0x1f;
+        switch (type) {
+            case UNSIGNED:
+            case NEGATIVE:
+                readArgument(info);
+                break;
+            case BYTES:
+            case TEXT:
+                position += checkedLength(readArgument(info));
+                break;
+            case ARRAY:
+            case MAP:
+                int perEntry = type == MAP ? 2 : 1;
+                if (info == 31) {
+                    while (hasNext()) {
+                        for (int i = 0; i < perEntry; i++) {
+                            skipValue(depth + 1);
+                        }
+                    }
+                } else {
+                    long count = readArgument(info);
+                    for (long i = 0; i < count * perEntry; i++) {
+                        skipValue(depth + 1);
+                    }
+                }
+                break;
+            case TAG:
+                readArgument(info);
+                skipValue(depth + 1);
+                break;
+            default:
+                // 単純値・浮動小数点数（引数の長さだけ読み飛ばす）
+                if (info == 31) {
+                    throw new IOException("Unexpected break");
+                }
+                readArgument(info);
+                break;
+        }
+    }
+
+    private int readContainerStart(int expectedType) throws IOException {
+        int initial = readByte() & 0xff;
+        if (initial >>> 5 != expectedType) {
+            throw new IOException("Expected major type " + expectedType + ", got " + (initial >>> 5));
+        }
+        if ((initial & 0x1f) == 31) {
+            return -1;
+        }
+        long count = readArgument(initial & 0x1f);
+        if (count > data.length - position) {
+            // 要素は少なくとも1バイトずつ必要
+            throw new IOException("CBOR container length exceeds input");
+        }
+        return (int) count;
+    }
+
+    private int readLength(int expectedType) throws IOException {
+        int initial = readByte() & 0xff;
+        if (initial >>> 5 != expectedType) {
+            throw new IOException("Expected major type " + expectedType + ", got " + (initial >>> 5));
+        }
+        if ((initial & 0x1f) == 31) {
+            throw new IOException("Indefinite-length strings are not supported");
+        }
+        return checkedLength(readArgument(initial & 0x1f));
+    }
+
+    private int checkedLength(long length) throws IOException {
+        if (length < 0 || length > data.length - position) {
+            throw new IOException("CBOR string length exceeds input");
+        }
+        return (int) length;
+    }
+
+    /**
+     * 初期バイトの下位5ビットに続く引数を読み取る
+     */
+    private long readArgument(int info) throws IOException {
+        if (info < 24) {
+            return info;
+        }
+        int size;
+        switch (info) {
+            case 24:
+                size = 1;
+                break;
+            case 25:
+                size = 2;
+                break;
+            case 26:
+                size = 4;
+                break;
+            case 27:
+                size = 8;
+                break;
+            default:
+                throw new IOException("Invalid CBOR additional information: " + info);
+        }
+        if (data.length - position < size) {
+            throw new IOException("Unexpected end of CBOR input");
+        }
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (data[position++] & 0xff);
+        }
+        return value;
+    }
+
+    private byte peekByte() throws IOException {
+        if (position >= data.length) {
+            throw new IOException("Unexpected end of CBOR input");
+        }
+        return data[position];
+    }
+
+    private byte readByte() throws IOException {
+        byte b = peekByte();
+        position++;
+        return b;
+    }
+}
@@ -0,0 +1,103 @@
+package net.enabify.recon.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * レスポンスのエンベロープを書き出すための最小限のCBOR（RFC 8949）ライター
+ *
+ * マップは長さ不定（要素数を先に数えずに書き出せる）で書き込み、
+ * 整数・文字列・バイト列は最短の長さで符号化する
+ */
+class CborWriter {
+
+    private static final int BREAK = 0xff;
+
+    private final ByteArrayOutputStream out;
+
+    CborWriter(ByteArrayOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * 長さ不定のマップを開始する（{@link #end()} で終了する）
+     */
+    CborWriter beginMap() {
+        out.write((CborReader.MAP << 5) | 31);
+        return this;
+    }
+
+    /**
+     * 長さ不定のマップを終了する
+     */
+    CborWriter end() {
+        out.write(BREAK);
+        return this;
+    }
+
+    CborWriter text(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeHead(CborReader.TEXT, bytes.length);
+        out.write(bytes, 0, bytes.length);
+        return this;
+    }
+
+    CborWriter bytes(byte[] value) {
+        if (value == null) {
+            return nullValue();
+        }
+        writeHead(CborReader.BYTES, value.length);
+        out.write(value, 0, value.length);
+        return this;
+    }
+
+    CborWriter integer(long value) {
+        if (value < 0) {
+            writeHead(CborReader.NEGATIVE, -1 - value);
+        } else {
+            writeHead(CborReader.UNSIGNED, value);
+        }
+        return this;
+    }
+
+    CborWriter bool(boolean value) {
+        out.write(value ? 0xf5 : 0xf4);
+        return this;
+    }
+
+    CborWriter nullValue() {
+        out.write(0xf6);
+        return this;
+    }
+
+    /**
+     * メジャータイプと引数を最短の長さで書き込む
+     */
+    private void writeHead(int type, long argument) {
+        int major = type << 5;
+        if (argument < 24) {
+            out.write(major | (int) argument);
+        } else if (argument < 0x100) {
+            out.write(major | 24);
+            out.write((int) argument);
+        } else if (argument < 0x10000) {
+            out.write(major | 25);
+            writeBigEndian(argument, 2);
+        } else if (argument < 0x100000000L) {
+            out.write(major | 26);
+            writeBigEndian(argument, 4);
+        } else {
+            out.write(major | 27);
+            writeBigEndian(argument, 8);
+        }
+    }
+
+    private void writeBigEndian(long value, int size) {
+        for (int i = size - 1; i >= 0; i--) {
+            out.write((int) (value >>> (i * 8)));
+        }
+    }
+}
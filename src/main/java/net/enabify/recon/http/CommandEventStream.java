@@ -0,0 +1,170 @@
+package net.enabify.recon.http;
+
+import net.enabify.recon.execution.CaptureBuffer;
+import net.enabify.recon.execution.CommandOutputListener;
+import net.enabify.recon.execution.ExecutionResult;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * コマンド出力をServer-Sent Eventsとして送信する
+ *
+ * イベントの種類:
+ * - start  : {"user","nonce","timestamp","version"}（以降の暗号化キーの導出に使用、versionはv2以降のみ）
+ *            セッションのリクエストでは nonce・timestamp を含まず、outputはセッションキーで暗号化する
+ * - output : キャプチャしたメッセージ1件を暗号化した {"response","plainResponse"}（responseModeで指定した形式のみ）
+ * - truncated : {"dropped"}（送信待ちの出力が上限を超えたため破棄したメッセージ数）
+ * - end    : {"success","error"}
+ *
+ * 出力の通知はメインスレッド等から呼ばれるため、暗号化と送信はストリーム専用のスレッドで
+ * キャプチャ順に1件ずつ行う（呼び出し元では送信しない。スレッドに渡せない場合は出力を破棄する）
+ * 送信先が書き込み可能になるまで送信を中断し、その間に溜まる出力は maxBufferedChars（文字数）までとする
+ */
+class CommandEventStream implements CommandOutputListener {
+
+    private final ResponseSink sink;
+    private final ResponseEncryption encryption;
+    private final byte[] key;
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final long maxBufferedChars;
+    /** 送信待ちの出力の文字数 */
+    private final AtomicLong bufferedChars = new AtomicLong();
+    /** まだ truncated イベントで通知していない破棄したメッセージ数 */
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    private CommandEventStream(ResponseSink sink, ResponseEncryption encryption, byte[] key, Executor executor,
+                               long maxBufferedChars) {
+        this.sink = sink;
+        this.encryption = encryption;
+        this.key = key;
+        this.executor = executor;
+        this.maxBufferedChars = maxBufferedChars;
+    }
+
+    /**
+     * サーバー側のnonce・タイムスタンプでキーを導出し（セッションの場合はセッションキー）、startイベントを送信する
+     * outputイベントはリクエストと同じプロトコルバージョンで暗号化する
+     *
+     * @param maxBufferedChars 送信待ちの出力の上限（文字数、超えた出力は破棄して truncated イベントで通知する）
+     */
+    static CommandEventStream open(ResponseSink sink, ResponseEncryption encryption,
+                                   Executor executor, long maxBufferedChars) throws Exception {
+        byte[] key;
+        String startJson;
+        try (ResponseEnvelope start = ResponseEnvelope.object()) {
+            key = encryption.begin(start);
+            startJson = start.toJson();
+        }
+
+        CommandEventStream stream = new CommandEventStream(sink, encryption, key, executor, maxBufferedChars);
+        stream.submit(() -> sink.write(event("start", startJson)));
+        return stream;
+    }
+
+    @Override
+    public void onOutput(String message) {
+        long size = message.length();
+        if (bufferedChars.addAndGet(size) > maxBufferedChars) {
+            bufferedChars.addAndGet(-size);
+            if (dropped.getAndIncrement() == 0) {
+                // 破棄が続く間は1件にまとめ、送信時点までに破棄した数を通知する
+                submit(() -> sink.write(event("truncated", "{\"dropped\":" + dropped.getAndSet(0) + "}")));
+            }
+            return;
+        }
+
+        submit(() -> {
+            bufferedChars.addAndGet(-size);
+            if (!sink.isOpen()) {
+                return;
+            }
+            String outputJson;
+            ResponseMode responseMode = encryption.getResponseMode();
+            try (ResponseEnvelope output = ResponseEnvelope.object()) {
+                if (responseMode.includesDecorated()) {
+                    output.put("response", message);
+                }
+                if (responseMode.includesPlain()) {
+                    output.put("plainResponse", CaptureBuffer.stripColorCodes(message));
+                }
+                outputJson = output.toJson();
+            }
+            try {
+                sink.write(event("output", encryption.encrypt(outputJson, key)));
+            } catch (Exception e) {
+                sink.close();
+            }
+        });
+    }
+
+    /**
+     * endイベントを送信してレスポンスを終了する
+     */
+    void finish(ExecutionResult result) {
+        submit(() -> {
+            String endJson;
+            try (ResponseEnvelope end = ResponseEnvelope.object()) {
+                end.put("success", result.success);
+                if (!result.success && result.error != null) {
+                    end.put("error", result.error);
+                }
+                endJson = end.toJson();
+            }
+            sink.write(event("end", endJson));
+            sink.close();
+        });
+    }
+
+    private void submit(Runnable task) {
+        tasks.add(task);
+        if (draining.compareAndSet(false, true)) {
+            schedule();
+        }
+    }
+
+    /**
+     * drainをストリーム専用のスレッドで実行する
+     * 停止中等でスレッドに渡せない場合は、呼び出し元（メインスレッド等）で送信せずに溜まった出力を破棄する
+     */
+    private void schedule() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            tasks.clear();
+            bufferedChars.set(0L);
+            draining.set(false);
+        }
+    }
+
+    /**
+     * 溜まったタスクを順番に実行する（同時に実行されるdrainは常に1つ）
+     * 送信先が書き込み可能でない間は中断し、書き込み可能になった時点で再開する
+     */
+    private void drain() {
+        do {
+            Runnable task;
+            while ((task = tasks.peek()) != null) {
+                if (sink.isOpen() && !sink.isWritable()) {
+                    // 送信バッファが空くまで中断する（draining は true のまま、再開時に続きから実行する）
+                    sink.whenWritable(this::schedule);
+                    return;
+                }
+                tasks.poll();
+                task.run();
+            }
+            draining.set(false);
+        } while (!tasks.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    private static String event(String name, String data) {
+        return "event: " + name + "\ndata: " + data + "\n\n";
+    }
+}
@@ -0,0 +1,136 @@
+package net.enabify.recon.http;
+
+import net.enabify.recon.execution.CaptureBuffer;
+import net.enabify.recon.execution.CommandOutputListener;
+import net.enabify.recon.execution.ExecutionResult;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 非同期ジョブ（"async": true のリクエスト）の実行結果を保持するテーブル
+ * 件数の上限と、完了後の保持期間（TTL）を持つ
+ * 期限切れのジョブは登録・取得時に削除する
+ */
+class CommandJobTable {
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final int maxJobs;
+    private final long ttlMillis;
+    private final Supplier<CaptureBuffer> bufferFactory;
+
+    /**
+     * @param bufferFactory ジョブ毎の出力バッファ（上限付き）を生成する
+     */
+    CommandJobTable(int maxJobs, long ttlMillis, Supplier<CaptureBuffer> bufferFactory) {
+        this.maxJobs = maxJobs;
+        this.ttlMillis = ttlMillis;
+        this.bufferFactory = bufferFactory;
+    }
+
+    /**
+     * ジョブを登録する
+     *
+     * @return 上限に達している場合 null
+     */
+    Job create(String user) {
+        if (jobs.size() >= maxJobs) {
+            evictExpired();
+            if (jobs.size() >= maxJobs) {
+                return null;
+            }
+        }
+        Job job = new Job(UUID.randomUUID().toString().replace("-", ""), user, bufferFactory.get());
+        jobs.put(job.id, job);
+        return job;
+    }
+
+    /**
+     * 指定ユーザーのジョブを取得する
+     *
+     * @return 存在しない・期限切れ・他ユーザーのジョブの場合 null
+     */
+    Job get(String id, String user) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return null;
+        }
+        if (job.isExpired(System.currentTimeMillis(), ttlMillis)) {
+            jobs.remove(id, job);
+            return null;
+        }
+        return job.user.equals(user) ? job : null;
+    }
+
+    /**
+     * 期限切れのジョブを削除する
+     */
+    void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Job> it = jobs.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now, ttlMillis)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 実行中または完了済みのジョブ
+     * 実行中にキャプチャした出力を蓄積し、完了時にExecutionResultとしてまとめる
+     */
+    static class Job implements CommandOutputListener {
+
+        private final String id;
+        private final String user;
+        private final CaptureBuffer output;
+        private final CompletableFuture<ExecutionResult> result = new CompletableFuture<>();
+        private volatile long finishedAt;
+
+        private Job(String id, String user, CaptureBuffer output) {
+            this.id = id;
+            this.user = user;
+            this.output = output;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        /**
+         * ジョブの完了時に完了するフューチャー（出力はまとめて格納される）
+         */
+        CompletableFuture<ExecutionResult> getResult() {
+            return result;
+        }
+
+        @Override
+        public void onOutput(String message) {
+            output.append(message);
+        }
+
+        /**
+         * 実行結果を確定する（蓄積した出力をレスポンスとする）
+         */
+        void complete(ExecutionResult executionResult) {
+            String response = output.getOutput();
+            String plainResponse = output.getPlainOutput();
+            if (response.isEmpty() && executionResult.response != null) {
+                // 実行エラー等、出力ではなく結果側にメッセージがある場合
+                response = executionResult.response;
+                plainResponse = CaptureBuffer.stripColorCodes(response);
+            }
+            finishedAt = System.currentTimeMillis();
+            result.complete(new ExecutionResult(executionResult.success, response,
+                    plainResponse, executionResult.error));
+        }
+
+        private boolean isExpired(long now, long ttlMillis) {
+            return finishedAt != 0L && now - finishedAt > ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.enabify.recon.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 暗号化する前のペイロードの圧縮形式
+ * リクエストの compression で受け付ける形式を指定し（Accept-Encoding と同じくカンマ区切りで複数指定できる）、
+ * 圧縮した場合はレスポンスの compression に使用した形式を書き込む
+ * 暗号文は圧縮できないため、HTTPの Content-Encoding ではなく暗号化の前に圧縮する
+ */
+enum Compression {
+    /** 圧縮しない（従来の動作） */
+    NONE(null),
+    /** gzip（RFC 1952） */
+    GZIP("gzip"),
+    /** deflate（zlib形式、RFC 1950） */
+    DEFLATE("deflate");
+
+    private final String name;
+
+    Compression(String name) {
+        this.name = name;
+    }
+
+    /**
+     * レスポンスの compression に書き込む名前
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * リクエストの値から、受け付ける形式のうち最初に対応しているものを選ぶ
+     * 品質値（;q=）は q=0 の除外のみ扱い、対応していない形式は無視する
+     *
+     * @return 省略時・対応している形式が無い場合は NONE
+     */
+    static Compression fromRequestValue(String value) {
+        if (value == null) {
+            return NONE;
+        }
+
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(";");
+            String normalized = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (parts.length > 1 && parts[1].trim().matches("q\\s*=\\s*0(\\.0*)?")) {
+                continue;
+            }
+            if ("gzip".equals(normalized)) {
+                return GZIP;
+            }
+            if ("deflate".equals(normalized)) {
+                return DEFLATE;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * 平文の長さから、このレスポンスで実際に使用する形式を決める
+     *
+     * @param plaintextLength 暗号化する平文の合計の長さ（文字数）
+     * @param threshold       圧縮する最小の長さ
+     */
+    Compression forLength(long plaintextLength, int threshold) {
+        return plaintextLength >= threshold ? this : NONE;
+    }
+
+    /**
+     * データを圧縮する（NONE の場合はそのまま返す）
+     */
+    byte[] compress(byte[] data) {
+        if (this == NONE) {
+            return data;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (DeflaterOutputStream stream = this == GZIP ? new GZIPOutputStream(out) : new DeflaterOutputStream(out)) {
+            stream.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
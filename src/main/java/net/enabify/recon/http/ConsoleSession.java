@@ -0,0 +1,380 @@
+package net.enabify.recon.http;
+
+import net.enabify.recon.crypto.AESCrypto;
+import net.enabify.recon.execution.ExecutionResult;
+import net.enabify.recon.model.ReconUser;
+import net.enabify.recon.platform.ReconPlatform;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * WebSocketコンソール接続1本分のセッション
+ *
+ * 最初のフレームで既存のnonce/タイムスタンプ方式による認証を1回だけ行い、
+ * 以降はサーバーが発行したnonce/タイムスタンプから導出したセッションキーを使う
+ * コマンドフレームにはフレーム毎のnonce/タイムスタンプを付け、セッションキーとそれらから
+ * HMACで導出したフレームキー（HTTPのセッションのリクエストキーと同じ）でコマンド・結果を暗号化する
+ * （パスワードからのキー導出は行わず、同じフレームを再送してもnonceの再利用として拒否される）
+ * ユーザーの削除・パスワード変更はフレーム毎に確認し、検出した時点で接続を閉じる
+ *
+ * 認証フレーム: {"user","nonce","timestamp","auth": AES("RCON_AUTH"),"version","responseMode"}
+ * 認証応答:     {"type":"auth","success":true,"user","nonce","timestamp","version"}
+ * コマンド:     {"id","nonce","timestamp","command": AES(フレームキー, "RCON_..."),"queue"}
+ * 結果:         {"type":"result","id","success","response","plainResponse","error"}（フレームキーで暗号化）
+ *
+ * 結果は完了順に返すため、クライアントはidで対応付ける
+ * 認証フレームで指定したプロトコルバージョン（省略時はv1）と出力の形式（省略時は両方）を
+ * セッション中のすべてのフレームで使用する
+ */
+class ConsoleSession {
+
+    /** 認証フレーム（HTTPのセッション発行リクエストも同じ）で暗号化する固定文字列 */
+    static final String AUTH_TOKEN = "RCON_AUTH";
+
+    private final ReconPlatform plugin;
+    private final String clientIp;
+    private final Executor executor;
+    /** コマンド完了後の結果フレームの構築を行うExecutor（呼び出し元では処理しない） */
+    private final Executor completionExecutor;
+    private final AdmissionController admission;
+    /** ユーザー単位のレート制限（無効の場合は null） */
+    private final RateLimiter userRateLimiter;
+
+    private CompletableFuture<String> authStage;
+    private volatile ReconUser authUser;
+    /** 認証時のパスワード（変更された場合はセッションを無効にする） */
+    private volatile String password;
+    private volatile byte[] sessionKey;
+    private volatile int version = AESCrypto.VERSION_CBC;
+    private volatile ResponseMode responseMode = ResponseMode.BOTH;
+    private volatile boolean closed;
+
+    ConsoleSession(ReconPlatform plugin, String clientIp, Executor executor, Executor completionExecutor,
+                   AdmissionController admission, RateLimiter userRateLimiter) {
+        this.plugin = plugin;
+        this.clientIp = clientIp;
+        this.executor = executor;
+        this.completionExecutor = completionExecutor;
+        this.admission = admission;
+        this.userRateLimiter = userRateLimiter;
+    }
+
+    /**
+     * 受信したテキストフレームを処理する（I/Oスレッドから受信順に呼ぶこと）
+     * 認証が完了するまで後続のフレームは処理を待機する
+     *
+     * @return 送信するフレーム（送信不要な場合はnull）のステージ
+     */
+    synchronized CompletionStage<String> receive(String text) {
+        if (authStage == null) {
+            authStage = CompletableFuture.supplyAsync(() -> authenticate(text), executor);
+            return authStage;
+        }
+        return authStage.thenComposeAsync(ignored -> {
+            if (closed || sessionKey == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return executeCommand(text);
+        }, executor);
+    }
+
+    /**
+     * 認証に失敗した等の理由で、接続を閉じるべきか
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    /**
+     * 最初のフレームで認証を行い、セッションキーを発行する
+     */
+    private String authenticate(String text) {
+        try {
+            // レート制限チェック（認証時のみ）
+            if (!plugin.getRateLimiter().allowRequest(clientIp)) {
+                return authFailure(plugin.getLangManager().get("http.rate_limited"));
+            }
+
+            RequestEnvelope envelope;
+            try {
+                envelope = RequestEnvelope.read(new StringReader(text));
+            } catch (Exception e) {
+                return authFailure(plugin.getLangManager().get("http.invalid_json"));
+            }
+
+            if (envelope.getUser() == null || envelope.getNonce() == null || !envelope.hasTimestamp()
+                    || envelope.getAuth() == null) {
+                return authFailure(plugin.getLangManager().get("http.missing_required_fields"));
+            }
+
+            String userName = envelope.getUser();
+            String nonce = envelope.getNonce();
+            long timestamp = envelope.getTimestamp();
+            int requestedVersion = envelope.getVersion() != null ? envelope.getVersion() : AESCrypto.VERSION_CBC;
+            if (!AESCrypto.isSupportedVersion(requestedVersion)) {
+                return authFailure(plugin.getLangManager().get("http.unsupported_version"));
+            }
+            ResponseMode requestedMode = ResponseMode.fromRequestValue(envelope.getResponseMode());
+            if (requestedMode == null) {
+                return authFailure(plugin.getLangManager().get("http.unsupported_response_mode"));
+            }
+
+            // ユーザー認証
+            ReconUser user = plugin.getUserManager().getUser(userName);
+            if (user == null) {
+                plugin.getReconLogger().logApiRequest(clientIp, userName, "(unknown)", false);
+                return authFailure(plugin.getLangManager().get("http.auth_user_not_found"));
+            }
+
+            // IPホワイトリストチェック（グローバル・ユーザー別）
+            String whitelistError = checkIpWhitelist(user);
+            if (whitelistError != null) {
+                return authFailure(whitelistError);
+            }
+
+            // タイムスタンプ検証（直近1分以内）
+            long now = System.currentTimeMillis() / 1000L;
+            if (Math.abs(now - timestamp) > 60) {
+                plugin.getReconLogger().logApiRequest(clientIp, userName, "(invalid timestamp)", false);
+                return authFailure(plugin.getLangManager().get("http.timestamp_out_of_range"));
+            }
+
+            // nonce検証（同一nonceの再利用防止）
+            if (!plugin.getNonceTracker().useNonce(nonce)) {
+                plugin.getReconLogger().logApiRequest(clientIp, userName, "(duplicate nonce)", false);
+                return authFailure(plugin.getLangManager().get("http.nonce_used"));
+            }
+
+            // 認証トークンの復号
+            String token;
+            try {
+                token = envelope.getAuth().decrypt(
+                        AESCrypto.deriveKey(user.getPassword(), nonce, timestamp), requestedVersion);
+            } catch (Exception e) {
+                plugin.getReconLogger().logApiRequest(clientIp, userName, "(decrypt failed)", false);
+                return authFailure(plugin.getLangManager().get("http.decrypt_failed"));
+            }
+            if (!AUTH_TOKEN.equals(token)) {
+                plugin.getReconLogger().logApiRequest(clientIp, userName, "(invalid prefix)", false);
+                return authFailure(plugin.getLangManager().get("http.invalid_command_format"));
+            }
+
+            // セッションキーの発行
+            String serverNonce = UUID.randomUUID().toString().replace("-", "");
+            long serverTimestamp = System.currentTimeMillis() / 1000L;
+            version = requestedVersion;
+            responseMode = requestedMode;
+            sessionKey = AESCrypto.deriveKey(user.getPassword(), serverNonce, serverTimestamp);
+            password = user.getPassword();
+            authUser = user;
+
+            try (ResponseEnvelope reply = ResponseEnvelope.object()) {
+                reply.put("type", "auth")
+                        .put("success", true)
+                        .put("user", user.getUser())
+                        .put("nonce", serverNonce)
+                        .put("timestamp", serverTimestamp);
+                ReconHttpServer.addVersion(reply, version);
+                return reply.toJson();
+            }
+        } catch (Exception e) {
+            plugin.getPluginLogger().severe("Unexpected error in console session: " + e.getMessage());
+            return authFailure(plugin.getLangManager().get("http.unexpected_error"));
+        }
+    }
+
+    /**
+     * IPホワイトリスト（グローバル・ユーザー別）を確認する
+     *
+     * @return 許可されていない場合はエラーメッセージ、許可されている場合は null
+     */
+    private String checkIpWhitelist(ReconUser user) {
+        List<String> globalWhitelist = plugin.getConfigManager().getGlobalIpWhitelist();
+        if (globalWhitelist != null && !globalWhitelist.isEmpty() && !globalWhitelist.contains(clientIp)) {
+            plugin.getReconLogger().logApiRequest(clientIp, user.getUser(), "(blocked)", false);
+            return plugin.getLangManager().get("http.ip_not_whitelisted_global");
+        }
+
+        List<String> userWhitelist = user.getIpWhitelist();
+        if (userWhitelist != null && !userWhitelist.isEmpty() && !userWhitelist.contains(clientIp)) {
+            plugin.getReconLogger().logApiRequest(clientIp, user.getUser(), "(blocked)", false);
+            return plugin.getLangManager().get("http.ip_not_whitelisted_user");
+        }
+        return null;
+    }
+
+    /**
+     * コマンドフレームを復号して実行し、結果フレームを返す
+     */
+    private CompletionStage<String> executeCommand(String text) {
+        String id = null;
+        try {
+            RequestEnvelope envelope = RequestEnvelope.read(new StringReader(text));
+            id = envelope.getId();
+            if (envelope.getCommand() == null || envelope.getNonce() == null || !envelope.hasTimestamp()) {
+                return CompletableFuture.completedFuture(
+                        errorResult(id, plugin.getLangManager().get("http.missing_required_fields")));
+            }
+
+            // 認証後にユーザーが削除された・パスワードが変更された場合はセッションを閉じる
+            ReconUser reconUser = plugin.getUserManager().getUser(authUser.getUser());
+            if (reconUser == null || !reconUser.getPassword().equals(password)) {
+                closed = true;
+                plugin.getReconLogger().logApiRequest(clientIp, authUser.getUser(), "(invalid session)", false);
+                return CompletableFuture.completedFuture(
+                        errorResult(id, plugin.getLangManager().get("http.session_invalid")));
+            }
+            String whitelistError = checkIpWhitelist(reconUser);
+            if (whitelistError != null) {
+                return CompletableFuture.completedFuture(errorResult(id, whitelistError));
+            }
+
+            // タイムスタンプ検証（直近1分以内）
+            String nonce = envelope.getNonce();
+            long timestamp = envelope.getTimestamp();
+            if (Math.abs(System.currentTimeMillis() / 1000L - timestamp) > 60) {
+                plugin.getReconLogger().logApiRequest(clientIp, reconUser.getUser(), "(invalid timestamp)", false);
+                return CompletableFuture.completedFuture(
+                        errorResult(id, plugin.getLangManager().get("http.timestamp_out_of_range")));
+            }
+
+            // nonce検証（同じフレームの再送を拒否する）
+            if (!plugin.getNonceTracker().useNonce(nonce)) {
+                plugin.getReconLogger().logApiRequest(clientIp, reconUser.getUser(), "(duplicate nonce)", false);
+                return CompletableFuture.completedFuture(
+                        errorResult(id, plugin.getLangManager().get("http.nonce_used")));
+            }
+
+            boolean queueRequested = envelope.isQueue();
+            boolean queueEnabled = queueRequested &&
+                    (plugin.getConfigManager().isAllowQueueForAllUsers() || reconUser.isQueue());
+
+            // フレームキーで復号する（暗号文がnonce・タイムスタンプに結び付くため、別のnonceでの再送は復号に失敗する）
+            String decryptedCommand;
+            byte[] frameKey;
+            try {
+                frameKey = AESCrypto.deriveSessionRequestKey(sessionKey, nonce, timestamp);
+                decryptedCommand = envelope.getCommand().decrypt(frameKey, version);
+            } catch (Exception e) {
+                plugin.getReconLogger().logApiRequest(clientIp, reconUser.getUser(), "(decrypt failed)", false);
+                return CompletableFuture.completedFuture(
+                        errorResult(id, plugin.getLangManager().get("http.decrypt_failed")));
+            }
+
+            if (!decryptedCommand.startsWith("RCON_")) {
+                plugin.getReconLogger().logApiRequest(clientIp, reconUser.getUser(), "(invalid prefix)", false);
+                return CompletableFuture.completedFuture(
+                        errorResult(id, plugin.getLangManager().get("http.invalid_command_format")));
+            }
+
+            String command = decryptedCommand.substring(5);
+
+            // レート制限チェック（ユーザー単位、コマンド毎）
+            if (userRateLimiter != null && !userRateLimiter.allowRequest(reconUser.getUser())) {
+                plugin.getReconLogger().logApiRequest(clientIp, reconUser.getUser(), "(rate limited)", false);
+                return CompletableFuture.completedFuture(
+                        errorResult(id, plugin.getLangManager().get("http.rate_limited")));
+            }
+
+            // アドミッション制御（HTTPリクエストと同じ上限を共有する）
+            AdmissionController.Permit permit = admission.tryAcquire(reconUser.getUser());
+            if (permit == null) {
+                plugin.getReconLogger().logApiRequest(clientIp, reconUser.getUser(), command, false);
+                return CompletableFuture.completedFuture(errorResult(id, plugin.getLangManager().format(
+                        "http.overloaded", java.util.Collections.singletonMap("seconds",
+                                String.valueOf(admission.getRetryAfterSeconds())))));
+            }
+            plugin.getReconLogger().logApiRequest(clientIp, reconUser.getUser(), command, true);
+
+            String resultId = id;
+            CompletionStage<ExecutionResult> stage;
+            try {
+                stage = plugin.getCommandExecutionService().executeCommandAsync(reconUser, command, queueEnabled)
+                        .whenComplete((result, error) -> permit.release(1));
+            } catch (Exception e) {
+                permit.release(1);
+                throw e;
+            }
+            return stage.handleAsync((result, error) -> {
+                if (error != null || result == null) {
+                    plugin.getPluginLogger().severe("Error executing command: "
+                            + (error != null ? error.getMessage() : "no result"));
+                    return errorResult(resultId, plugin.getLangManager().get("http.execute_error"));
+                }
+                return buildResult(resultId, result, frameKey);
+            }, completionExecutor);
+        } catch (Exception e) {
+            plugin.getPluginLogger().severe("Unexpected error in console session: " + e.getMessage());
+            return CompletableFuture.completedFuture(
+                    errorResult(id, plugin.getLangManager().get("http.unexpected_error")));
+        }
+    }
+
+    /**
+     * 実行結果をフレームキーで暗号化して結果フレームを構築する（responseModeで指定した形式のみ）
+     */
+    private String buildResult(String id, ExecutionResult result, byte[] frameKey) {
+        String encryptedResponse = null;
+        String encryptedPlainResponse = null;
+        try {
+            if (responseMode.includesDecorated()) {
+                encryptedResponse = AESCrypto.encrypt(
+                        result.response != null ? result.response : "", frameKey, version);
+            }
+            if (responseMode.includesPlain()) {
+                encryptedPlainResponse = AESCrypto.encrypt(
+                        result.plainResponse != null ? result.plainResponse : "", frameKey, version);
+            }
+        } catch (Exception e) {
+            return errorResult(id, plugin.getLangManager().get("http.encrypt_failed"));
+        }
+
+        try (ResponseEnvelope reply = ResponseEnvelope.object()) {
+            reply.put("type", "result")
+                    .put("id", id)
+                    .put("success", result.success);
+            if (encryptedResponse != null) {
+                reply.put("response", encryptedResponse);
+            }
+            if (encryptedPlainResponse != null) {
+                reply.put("plainResponse", encryptedPlainResponse);
+            }
+            if (!result.success && result.error != null) {
+                reply.put("error", result.error);
+            }
+            return reply.toJson();
+        }
+    }
+
+    private String errorResult(String id, String error) {
+        try (ResponseEnvelope reply = ResponseEnvelope.object()) {
+            return reply.put("type", "result")
+                    .put("id", id)
+                    .put("success", false)
+                    .put("error", error)
+                    .toJson();
+        }
+    }
+
+    /**
+     * 認証失敗の応答を構築し、セッションを閉じる
+     */
+    private String authFailure(String error) {
+        closed = true;
+        try (ResponseEnvelope reply = ResponseEnvelope.object()) {
+            return reply.put("type", "auth")
+                    .put("success", false)
+                    .put("error", error)
+                    .toJson();
+        }
+    }
+}
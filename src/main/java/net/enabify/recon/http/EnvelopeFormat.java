@@ -0,0 +1,55 @@
+package net.enabify.recon.http;
+
+import java.util.Locale;
+
+/**
+ * リクエスト・レスポンスのエンベロープの形式
+ * Content-Type / Accept ヘッダーで選択する
+ */
+enum EnvelopeFormat {
+    /** JSON（暗号文はBase64文字列、従来の形式） */
+    JSON(ApiResponse.JSON_CONTENT_TYPE),
+    /** CBOR（RFC 8949、暗号文はバイト列のまま格納する） */
+    CBOR(ApiResponse.CBOR_CONTENT_TYPE);
+
+    private final String contentType;
+
+    EnvelopeFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * レスポンスのContent-Type
+     */
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * リクエストの Content-Type から形式を判定する（CBOR以外はJSONとして扱う）
+     */
+    static EnvelopeFormat fromContentType(String contentType) {
+        if (contentType != null && contentType.trim().toLowerCase(Locale.ROOT).startsWith("application/cbor")) {
+            return CBOR;
+        }
+        return JSON;
+    }
+
+    /**
+     * レスポンスの形式を決める
+     * Accept で application/cbor・application/json が指定されていればそれに従い、
+     * 指定が無ければリクエストと同じ形式で返す
+     */
+    static EnvelopeFormat negotiate(String accept, EnvelopeFormat requestFormat) {
+        if (accept != null) {
+            String normalized = accept.toLowerCase(Locale.ROOT);
+            if (normalized.contains("application/cbor")) {
+                return CBOR;
+            }
+            if (normalized.contains("application/json")) {
+                return JSON;
+            }
+        }
+        return requestFormat;
+    }
+}
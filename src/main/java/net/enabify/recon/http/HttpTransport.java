@@ -0,0 +1,25 @@
+package net.enabify.recon.http;
+
+import java.io.IOException;
+
+/**
+ * HTTPの受信・送信を担当するトランスポート層
+ * リクエストはApiRequestに変換してReconHttpServerに渡し、返却されたApiResponseを送信する
+ */
+interface HttpTransport {
+
+    /**
+     * 指定ポートで待ち受けを開始する
+     */
+    void start(int port) throws IOException;
+
+    /**
+     * 待ち受けを停止する
+     */
+    void stop();
+
+    /**
+     * ログ表示用のトランスポート名
+     */
+    String getName();
+}
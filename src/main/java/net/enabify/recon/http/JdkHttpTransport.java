@@ -0,0 +1,210 @@
+package net.enabify.recon.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDK内蔵のcom.sun.net.httpserver.HttpServerを使用するトランスポート
+ */
+class JdkHttpTransport implements HttpTransport {
+
+    /** Content-Length が無い（チャンク転送の）ボディを読み取る際の読み取り単位 */
+    private static final int READ_CHUNK_SIZE = 8192;
+
+    /** チャンク転送のボディを読み取るためのスレッド毎の作業用バッファ */
+    private static final ThreadLocal<byte[]> READ_BUFFER = ThreadLocal.withInitial(() -> new byte[READ_CHUNK_SIZE]);
+
+    private final ReconHttpServer owner;
+    private final int maxBodyBytes;
+    private HttpServer server;
+
+    /**
+     * @param maxBodyBytes リクエストボディの最大サイズ（超える場合は413を返す）
+     */
+    JdkHttpTransport(ReconHttpServer owner, int maxBodyBytes) {
+        this.owner = owner;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(owner.getExecutor()); // nullの場合はデフォルトのディスパッチャースレッドで処理
+        server.start();
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "jdk";
+    }
+
+    /**
+     * HttpExchangeをApiRequestに変換し、処理完了時にレスポンスを送信する
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String clientIp = exchange.getRemoteAddress().getAddress().getHostAddress();
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : exchange.getRequestHeaders().entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                headers.put(entry.getKey(), entry.getValue().get(0));
+            }
+        }
+
+        byte[] body = readRequestBody(exchange);
+        if (body == null) {
+            sendResponse(exchange, owner.payloadTooLargeResponse());
+            return;
+        }
+
+        ApiRequest request = new ApiRequest(clientIp, exchange.getRequestMethod(),
+                exchange.getRequestURI().getPath(), headers, body);
+
+        owner.handleRequest(request).whenComplete((response, error) -> {
+            try {
+                sendResponse(exchange, response != null ? response : owner.unexpectedErrorResponse());
+            } catch (IOException ignored) {
+                // クライアント切断等でレスポンス送信に失敗した場合
+            }
+        });
+    }
+
+    /**
+     * リクエストボディをバイト列として読み取る
+     * Content-Length がある場合はその長さの配列へ直接読み込み、
+     * 無い場合はスレッド毎の作業用バッファを使って読み取る
+     * リクエストは読み取ったスレッドより長く使われる（非同期処理・転送）ため、返す配列は共有しない
+     *
+     * @return 最大サイズを超える場合 null
+     */
+    private byte[] readRequestBody(HttpExchange exchange) throws IOException {
+        long contentLength = parseContentLength(exchange.getRequestHeaders().getFirst("Content-Length"));
+        if (contentLength > maxBodyBytes) {
+            return null;
+        }
+
+        try (InputStream is = exchange.getRequestBody()) {
+            if (contentLength >= 0) {
+                byte[] body = new byte[(int) contentLength];
+                int read = is.readNBytes(body, 0, body.length);
+                return read == body.length ? body : Arrays.copyOf(body, read);
+            }
+
+            byte[] buffer = READ_BUFFER.get();
+            byte[] body = new byte[0];
+            int length = 0;
+            int n;
+            while ((n = is.read(buffer, 0, buffer.length)) > 0) {
+                if (length + n > maxBodyBytes) {
+                    return null;
+                }
+                if (length + n > body.length) {
+                    body = Arrays.copyOf(body, Math.min(maxBodyBytes, Math.max(length + n, body.length * 2)));
+                }
+                System.arraycopy(buffer, 0, body, length, n);
+                length += n;
+            }
+            return length == body.length ? body : Arrays.copyOf(body, length);
+        }
+    }
+
+    /**
+     * Content-Length ヘッダーを解析する
+     *
+     * @return ヘッダーが無い・不正な場合 -1
+     */
+    private static long parseContentLength(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            long length = Long.parseLong(value.trim());
+            return length >= 0 ? length : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * HTTPレスポンスを送信する
+     */
+    private void sendResponse(HttpExchange exchange, ApiResponse response) throws IOException {
+        byte[] responseBytes = response.getBodyBytes();
+        exchange.getResponseHeaders().set("Content-Type", response.getContentType());
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+        }
+        if (response.isStreaming()) {
+            // 長さ0を指定するとチャンク転送になる
+            exchange.sendResponseHeaders(response.getStatusCode(), 0);
+            response.startStreaming(new ChunkedSink(exchange.getResponseBody()));
+            return;
+        }
+        exchange.sendResponseHeaders(response.getStatusCode(), responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+    }
+
+    /**
+     * チャンク転送でボディを順次送信する
+     */
+    private static class ChunkedSink implements ResponseSink {
+
+        private final OutputStream os;
+        private boolean open = true;
+
+        private ChunkedSink(OutputStream os) {
+            this.os = os;
+        }
+
+        @Override
+        public synchronized void write(String chunk) {
+            if (!open) {
+                return;
+            }
+            try {
+                os.write(chunk.getBytes(StandardCharsets.UTF_8));
+                os.flush();
+            } catch (IOException e) {
+                // クライアント切断
+                close();
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            try {
+                os.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public synchronized boolean isOpen() {
+            return open;
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package net.enabify.recon.http;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshaker;
+import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Nettyのイベントループを使用するトランスポート
+ * Keep-Alive、HTTP/1.1パイプライニング（レスポンスはリクエスト順に送信）、
+ * プール化されたバッファ、停止時の処理中リクエストのドレインに対応する
+ *
+ * リクエストの復号・コマンド実行はイベントループではなくワーカースレッドで行う
+ */
+class NettyHttpTransport implements HttpTransport {
+
+    /** 無通信の接続を切断するまでの秒数 */
+    private static final int IDLE_TIMEOUT_SECONDS = 60;
+    /** 停止時に処理中リクエストの完了を待つ最大ミリ秒 */
+    private static final long DRAIN_TIMEOUT_MS = 5000L;
+
+    private final ReconHttpServer owner;
+    private final int ioThreads;
+    /** リクエストボディ・WebSocketメッセージの最大サイズ（バイト） */
+    private final int maxContentLength;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private ChannelGroup channels;
+    private Channel serverChannel;
+
+    /**
+     * @param ioThreads        I/Oスレッド数（0の場合はNettyのデフォルト）
+     * @param maxContentLength リクエストボディの最大サイズ（超える場合は413を返す）
+     */
+    NettyHttpTransport(ReconHttpServer owner, int ioThreads, int maxContentLength) {
+        this.owner = owner;
+        this.ioThreads = ioThreads;
+        this.maxContentLength = maxContentLength;
+    }
+
+    @Override
+    public void start(int port) {
+        bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("Recon-HTTP-Boss", true));
+        workerGroup = new NioEventLoopGroup(ioThreads, new DefaultThreadFactory("Recon-HTTP-IO", true));
+        channels = new DefaultChannelGroup("recon-http", GlobalEventExecutor.INSTANCE);
+
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        channels.add(ch);
+                        ch.pipeline()
+                                .addLast("idle", new IdleStateHandler(0, 0, IDLE_TIMEOUT_SECONDS))
+                                .addLast("codec", new HttpServerCodec())
+                                .addLast("aggregator", new HttpObjectAggregator(maxContentLength))
+                                .addLast("handler", new RequestHandler());
+                    }
+                });
+
+        ChannelFuture bindFuture = bootstrap.bind(new InetSocketAddress(port)).syncUninterruptibly();
+        serverChannel = bindFuture.channel();
+    }
+
+    @Override
+    public void stop() {
+        if (serverChannel == null) {
+            return;
+        }
+
+        // 新規接続の受付を停止
+        serverChannel.close().syncUninterruptibly();
+        serverChannel = null;
+
+        // 処理中のリクエストがレスポンスを送信し終えるまで待機
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while (inFlight.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(20L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        channels.close().awaitUninterruptibly(DRAIN_TIMEOUT_MS);
+        bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly(DRAIN_TIMEOUT_MS);
+    }
+
+    @Override
+    public String getName() {
+        return "netty";
+    }
+
+    /**
+     * 接続毎のリクエストハンドラー
+     * パイプライニング時もリクエスト順にレスポンスを返すため、未送信のレスポンスを順番待ちキューで管理する
+     * キューはイベントループ上でのみ操作する
+     */
+    private class RequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+        private final Queue<PendingResponse> pending = new ArrayDeque<>();
+        /** 送信中のストリーミングレスポンス（書き込み可能になった通知を渡す） */
+        private ChunkedSink streamingSink;
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+            // WebSocketコンソールへのアップグレード（送信待ちのレスポンスが無い場合のみ）
+            if (pending.isEmpty() && isConsoleUpgrade(msg)) {
+                upgradeToConsole(ctx, msg);
+                return;
+            }
+
+            PendingResponse slot = new PendingResponse(HttpUtil.isKeepAlive(msg));
+            pending.add(slot);
+            inFlight.incrementAndGet();
+
+            if (!msg.decoderResult().isSuccess()) {
+                slot.keepAlive = false;
+                complete(ctx, slot, owner.badRequestResponse());
+                return;
+            }
+
+            String clientIp = ((InetSocketAddress) ctx.channel().remoteAddress()).getAddress().getHostAddress();
+            Map<String, String> headers = new HashMap<>();
+            for (Map.Entry<String, String> header : msg.headers()) {
+                headers.putIfAbsent(header.getKey(), header.getValue());
+            }
+            ApiRequest request = new ApiRequest(clientIp, msg.method().name(),
+                    new QueryStringDecoder(msg.uri()).path(), headers,
+                    ByteBufUtil.getBytes(msg.content()));
+
+            // 復号・ログ出力等のブロッキング処理はイベントループ外で行う
+            owner.dispatchToWorker(() -> owner.handleRequest(request).whenComplete((response, error) ->
+                    complete(ctx, slot, response != null ? response : owner.unexpectedErrorResponse())));
+        }
+
+        private boolean isConsoleUpgrade(FullHttpRequest msg) {
+            return msg.decoderResult().isSuccess()
+                    && owner.isConsoleEnabled()
+                    && ReconHttpServer.CONSOLE_PATH.equals(new QueryStringDecoder(msg.uri()).path())
+                    && HttpHeaderValues.WEBSOCKET.contentEqualsIgnoreCase(msg.headers().get(HttpHeaderNames.UPGRADE, ""));
+        }
+
+        /**
+         * ハンドシェイクを行い、この接続をWebSocketコンソールとして扱うようパイプラインを組み替える
+         */
+        private void upgradeToConsole(ChannelHandlerContext ctx, FullHttpRequest msg) {
+            String location = "ws://" + msg.headers().get(HttpHeaderNames.HOST, "localhost") + ReconHttpServer.CONSOLE_PATH;
+            WebSocketServerHandshaker handshaker = new WebSocketServerHandshakerFactory(
+                    location, null, false, maxContentLength).newHandshaker(msg);
+            if (handshaker == null) {
+                WebSocketServerHandshakerFactory.sendUnsupportedVersionResponse(ctx.channel());
+                return;
+            }
+
+            String clientIp = ((InetSocketAddress) ctx.channel().remoteAddress()).getAddress().getHostAddress();
+            ctx.pipeline().replace(this, "console", new ConsoleFrameHandler(handshaker, owner.openConsoleSession(clientIp)));
+            handshaker.handshake(ctx.channel(), msg).addListener((ChannelFutureListener) future -> {
+                if (future.isSuccess()) {
+                    future.channel().pipeline().addBefore("console", "ws-aggregator",
+                            new WebSocketFrameAggregator(maxContentLength));
+                } else {
+                    future.channel().close();
+                }
+            });
+        }
+
+        /**
+         * レスポンスを確定し、先頭から順に送信可能なものを送信する
+         */
+        private void complete(ChannelHandlerContext ctx, PendingResponse slot, ApiResponse response) {
+            if (!ctx.executor().inEventLoop()) {
+                ctx.executor().execute(() -> complete(ctx, slot, response));
+                return;
+            }
+
+            slot.response = response;
+            flushReady(ctx);
+        }
+
+        /**
+         * 先頭から順に確定済みのレスポンスを送信する
+         * ストリーミング中のレスポンスが先頭にある間は後続を送信しない
+         */
+        private void flushReady(ChannelHandlerContext ctx) {
+            boolean written = false;
+            while (!pending.isEmpty() && pending.peek().response != null && !pending.peek().streaming) {
+                if (pending.peek().response.isStreaming()) {
+                    startStreaming(ctx, pending.peek());
+                    written = true;
+                    break;
+                }
+                PendingResponse head = pending.poll();
+                ChannelFuture future = ctx.write(toNettyResponse(ctx, head));
+                inFlight.decrementAndGet();
+                written = true;
+                if (!head.keepAlive) {
+                    future.addListener(ChannelFutureListener.CLOSE);
+                    inFlight.addAndGet(-pending.size());
+                    pending.clear();
+                    break;
+                }
+            }
+            if (written) {
+                ctx.flush();
+            }
+        }
+
+        /**
+         * チャンク転送のヘッダーを送信し、ボディの送信をレスポンス側に委ねる
+         * 終了するまでスロットはキューの先頭に残る
+         */
+        private void startStreaming(ChannelHandlerContext ctx, PendingResponse slot) {
+            slot.streaming = true;
+            ApiResponse response = slot.response;
+
+            HttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpResponseStatus.valueOf(response.getStatusCode()));
+            httpResponse.headers().set(HttpHeaderNames.CONTENT_TYPE, response.getContentType());
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                httpResponse.headers().set(header.getKey(), header.getValue());
+            }
+            HttpUtil.setTransferEncodingChunked(httpResponse, true);
+            httpResponse.headers().set(HttpHeaderNames.CONNECTION,
+                    slot.keepAlive ? HttpHeaderValues.KEEP_ALIVE : HttpHeaderValues.CLOSE);
+            ctx.write(httpResponse);
+
+            streamingSink = new ChunkedSink(ctx, slot);
+            response.startStreaming(streamingSink);
+        }
+
+        /**
+         * ストリーミングの終了処理（イベントループ上で呼ぶ）
+         */
+        private void finishStreaming(ChannelHandlerContext ctx, PendingResponse slot) {
+            if (pending.peek() != slot) {
+                // 切断済み
+                return;
+            }
+            pending.poll();
+            inFlight.decrementAndGet();
+            streamingSink = null;
+            ChannelFuture future = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            if (!slot.keepAlive) {
+                future.addListener(ChannelFutureListener.CLOSE);
+                inFlight.addAndGet(-pending.size());
+                pending.clear();
+                return;
+            }
+            flushReady(ctx);
+        }
+
+        /**
+         * チャンク単位でボディを送信する
+         * writeAndFlushはスレッドセーフなため、任意のスレッドから呼び出せる
+         * 送信バッファが上限（チャネルの WriteBufferWaterMark）を超えている間は isWritable が false を返し、
+         * 書き込み側は whenWritable で再開を待つ
+         */
+        private class ChunkedSink implements ResponseSink {
+
+            private final ChannelHandlerContext ctx;
+            private final PendingResponse slot;
+            private final AtomicReference<Runnable> writableTask = new AtomicReference<>();
+            private volatile boolean open = true;
+
+            private ChunkedSink(ChannelHandlerContext ctx, PendingResponse slot) {
+                this.ctx = ctx;
+                this.slot = slot;
+            }
+
+            @Override
+            public void write(String chunk) {
+                if (!isOpen()) {
+                    return;
+                }
+                ByteBuf content = ctx.alloc().buffer();
+                content.writeCharSequence(chunk, StandardCharsets.UTF_8);
+                ctx.writeAndFlush(new DefaultHttpContent(content));
+            }
+
+            @Override
+            public void close() {
+                if (!open) {
+                    return;
+                }
+                open = false;
+                ctx.executor().execute(() -> finishStreaming(ctx, slot));
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open && ctx.channel().isActive();
+            }
+
+            @Override
+            public boolean isWritable() {
+                return ctx.channel().isWritable();
+            }
+
+            @Override
+            public void whenWritable(Runnable task) {
+                writableTask.set(task);
+                // 登録前に書き込み可能になった・切断された場合は通知を待たずに実行する
+                if (isWritable() || !isOpen()) {
+                    runWritableTask();
+                }
+            }
+
+            /**
+             * 書き込み可能になった・切断された時点で、待機中のタスクを実行する
+             */
+            private void runWritableTask() {
+                Runnable task = writableTask.getAndSet(null);
+                if (task != null) {
+                    task.run();
+                }
+            }
+        }
+
+        private FullHttpResponse toNettyResponse(ChannelHandlerContext ctx, PendingResponse slot) {
+            ApiResponse response = slot.response;
+            ByteBuf content = Unpooled.wrappedBuffer(response.getBodyBytes());
+
+            FullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpResponseStatus.valueOf(response.getStatusCode()), content);
+            httpResponse.headers().set(HttpHeaderNames.CONTENT_TYPE, response.getContentType());
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                httpResponse.headers().set(header.getKey(), header.getValue());
+            }
+            HttpUtil.setContentLength(httpResponse, content.readableBytes());
+            httpResponse.headers().set(HttpHeaderNames.CONNECTION,
+                    slot.keepAlive ? HttpHeaderValues.KEEP_ALIVE : HttpHeaderValues.CLOSE);
+            return httpResponse;
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // 送信前に切断された分を処理中カウントから除外
+            inFlight.addAndGet(-pending.size());
+            pending.clear();
+            if (streamingSink != null) {
+                // 書き込み可能になるのを待っている送信を再開させ、残りを破棄させる
+                streamingSink.runWritableTask();
+                streamingSink = null;
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            if (streamingSink != null && ctx.channel().isWritable()) {
+                streamingSink.runWritableTask();
+            }
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent && pending.isEmpty()) {
+                ctx.close();
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+
+    /**
+     * WebSocketコンソール接続のフレームハンドラー
+     * テキストフレームは受信順にConsoleSessionへ渡し、処理自体はワーカースレッドで行う
+     */
+    private class ConsoleFrameHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
+
+        private final WebSocketServerHandshaker handshaker;
+        private final ConsoleSession session;
+
+        private ConsoleFrameHandler(WebSocketServerHandshaker handshaker, ConsoleSession session) {
+            this.handshaker = handshaker;
+            this.session = session;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) {
+            if (frame instanceof CloseWebSocketFrame) {
+                handshaker.close(ctx.channel(), (CloseWebSocketFrame) frame.retain());
+                return;
+            }
+            if (frame instanceof PingWebSocketFrame) {
+                ctx.writeAndFlush(new PongWebSocketFrame(frame.content().retain()));
+                return;
+            }
+            if (!(frame instanceof TextWebSocketFrame) || session.isClosed()) {
+                return;
+            }
+
+            inFlight.incrementAndGet();
+            session.receive(((TextWebSocketFrame) frame).text()).whenComplete((reply, error) -> {
+                inFlight.decrementAndGet();
+                if (reply != null && ctx.channel().isActive()) {
+                    ctx.writeAndFlush(new TextWebSocketFrame(reply));
+                    if (session.isClosed()) {
+                        // 認証失敗時は応答後に接続を閉じる（1008: Policy Violation）
+                        handshaker.close(ctx.channel(), new CloseWebSocketFrame(1008, "authentication failed"));
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            session.close();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent) {
+                // 無通信が続いた場合は生存確認を送る（応答が無ければ書き込み失敗で切断される）
+                ctx.writeAndFlush(new PingWebSocketFrame()).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+
+    /**
+     * 送信待ちのレスポンス
+     */
+    private static class PendingResponse {
+        private boolean keepAlive;
+        private ApiResponse response;
+        private boolean streaming;
+
+        private PendingResponse(boolean keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+    }
+}
@@ -1,63 +1,106 @@
 package net.enabify.recon.http;
 
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * IPアドレス単位のレート制限
- * 設定された期間内のリクエスト数を制限する
+ * キー（IPアドレス・ユーザー）単位のレート制限
+ * 1分間あたりのリクエスト数を制限する（最大で1分間の上限と同じ数まで連続したリクエストを許可する）
+ *
+ * GCRA（Generic Cell Rate Algorithm、トークンバケットと等価）で判定し、キー毎の状態は
+ * 次のリクエストの理論到着時刻（TAT）を保持する1つのAtomicLongのみとする
+ * 判定はCASで行い、ロックやリクエスト毎のオブジェクト生成を行わない
+ * キーの数には上限を設け、上限に達した場合は制限が完全に回復したキーを削除し、
+ * それでも空きが無ければ任意のキーを削除する（削除されたキーは制限がリセットされる）
  */
 public class RateLimiter {
 
-    private final int maxRequests;
-    private static final long WINDOW_MS = 60_000L; // 1分間
-    private final ConcurrentHashMap<String, Queue<Long>> requestLog = new ConcurrentHashMap<>();
+    /** 保持するキー数の上限（省略時） */
+    public static final int DEFAULT_MAX_KEYS = 10_000;
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** リクエスト1件あたりの間隔（ナノ秒） */
+    private final long emissionIntervalNanos;
+    /** TATが現在時刻より先行できる最大値（連続したリクエストの許容量） */
+    private final long burstToleranceNanos;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, AtomicLong> arrivals = new ConcurrentHashMap<>();
 
     public RateLimiter(int maxRequestsPerMinute) {
-        this.maxRequests = maxRequestsPerMinute;
+        this(maxRequestsPerMinute, DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * @param maxRequestsPerMinute 1分間あたりの最大リクエスト数
+     * @param maxKeys              保持するキー数の上限
+     */
+    public RateLimiter(int maxRequestsPerMinute, int maxKeys) {
+        int rate = Math.max(1, maxRequestsPerMinute);
+        this.emissionIntervalNanos = WINDOW_NANOS / rate;
+        this.burstToleranceNanos = emissionIntervalNanos * rate;
+        this.maxKeys = Math.max(1, maxKeys);
     }
 
     /**
      * リクエストが許可されるかチェックし、許可された場合はカウントする
      *
-     * @param ip IPアドレス
+     * @param key IPアドレス・ユーザー名
      * @return true: 許可, false: レート制限超過
      */
-    public boolean allowRequest(String ip) {
-        long now = System.currentTimeMillis();
-        Queue<Long> timestamps = requestLog.computeIfAbsent(ip, k -> new ConcurrentLinkedQueue<>());
-
-        // ウィンドウ外の古いエントリを削除
-        while (!timestamps.isEmpty() && now - timestamps.peek() > WINDOW_MS) {
-            timestamps.poll();
+    public boolean allowRequest(String key) {
+        long now = System.nanoTime();
+        AtomicLong arrival = arrivals.get(key);
+        if (arrival == null) {
+            if (arrivals.size() >= maxKeys) {
+                evict(now);
+            }
+            arrival = arrivals.computeIfAbsent(key, k -> new AtomicLong(now));
         }
 
-        if (timestamps.size() >= maxRequests) {
-            return false;
+        while (true) {
+            long tat = arrival.get();
+            // 制限が回復済み（TATが過去）の場合は現在時刻から数える
+            long newTat = (tat - now > 0 ? tat : now) + emissionIntervalNanos;
+            if (newTat - now > burstToleranceNanos) {
+                return false;
+            }
+            if (arrival.compareAndSet(tat, newTat)) {
+                return true;
+            }
         }
-
-        timestamps.offer(now);
-        return true;
     }
 
     /**
      * 全エントリのクリーンアップ（定期実行用）
+     * 制限が完全に回復したキーは新規のキーと同じ状態のため削除する
      */
     public void cleanup() {
-        long now = System.currentTimeMillis();
-        Iterator<Map.Entry<String, Queue<Long>>> it = requestLog.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, Queue<Long>> entry = it.next();
-            Queue<Long> timestamps = entry.getValue();
-            while (!timestamps.isEmpty() && now - timestamps.peek() > WINDOW_MS) {
-                timestamps.poll();
-            }
-            if (timestamps.isEmpty()) {
-                it.remove();
-            }
+        removeIdle(System.nanoTime());
+    }
+
+    /**
+     * キー数が上限に達した場合の削除
+     * 制限が回復したキーを削除し、それでも上限の7/8を超える場合は任意のキーを削除して空きを作る
+     * （上限付近で新規のキー毎に全体を走査しないよう、まとめて空きを確保する）
+     */
+    private synchronized void evict(long now) {
+        if (arrivals.size() < maxKeys) {
+            return;
+        }
+        removeIdle(now);
+
+        int target = maxKeys - Math.max(1, maxKeys / 8);
+        Iterator<AtomicLong> it = arrivals.values().iterator();
+        while (arrivals.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
         }
     }
+
+    private void removeIdle(long now) {
+        arrivals.values().removeIf(arrival -> arrival.get() - now <= 0);
+    }
 }
@@ -1,38 +1,86 @@
 package net.enabify.recon.http;
 
-import com.google.gson.JsonObject;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
-import com.sun.net.httpserver.HttpServer;
+import net.enabify.recon.config.ConfigManager;
 import net.enabify.recon.crypto.AESCrypto;
+import net.enabify.recon.execution.CaptureBuffer;
 import net.enabify.recon.execution.ExecutionResult;
 import net.enabify.recon.model.ReconUser;
+import net.enabify.recon.platform.CommandExecutionService;
 import net.enabify.recon.platform.ReconPlatform;
 
-import java.io.*;
-import java.net.InetSocketAddress;
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * REST APIを提供するHTTPサーバー
- * JDK内蔵のcom.sun.net.httpserver.HttpServerを使用してルート直下を受け付ける
+ * ルート直下へのPOSTを受け付ける
+ * 受信・送信はHttpTransport（JDK内蔵HttpServer または Netty）が担当し、
+ * リクエスト処理はトランスポート非依存のApiHandlerで行う
  */
 public class ReconHttpServer {
 
+    /** NettyのHTTPコーデック（実行環境によっては同梱されていない） */
+    private static final String NETTY_HTTP_CODEC_CLASS = "io.netty.handler.codec.http.HttpServerCodec";
+    /** WebSocketコンソールのパス（nettyトランスポートのみ） */
+    static final String CONSOLE_PATH = "/console";
+    /** ジョブ結果のロングポーリングで待機する最大秒数 */
+    private static final int MAX_JOB_WAIT_SECONDS = 30;
+
     private final ReconPlatform plugin;
     private final HttpClient forwardingHttpClient;
-    private HttpServer server;
+    private final ApiHandler apiHandler = new ApiHandler();
+    private final CommandJobTable jobTable;
+    private final SessionTable sessionTable;
+    private final AdmissionController admission;
+    /** ユーザー単位のレート制限（無効の場合は null） */
+    private final RateLimiter userRateLimiter;
+    private HttpTransport transport;
+    private ExecutorService executor;
+    /** コマンド完了後の処理（暗号化・送信）を行うスレッド */
+    private ThreadPoolExecutor completionExecutor;
+    /** ストリーミングの出力の暗号化・送信を行うスレッド */
+    private ExecutorService streamExecutor;
 
     public ReconHttpServer(ReconPlatform plugin) {
         this.plugin = plugin;
         this.forwardingHttpClient = HttpClient.newHttpClient();
+        this.jobTable = new CommandJobTable(plugin.getConfigManager().getMaxJobs(),
+                plugin.getConfigManager().getJobTtlSeconds() * 1000L,
+                () -> new CaptureBuffer(plugin.getConfigManager().getCaptureMaxBytes(),
+                        plugin.getConfigManager().getCaptureMaxLines()));
+        this.sessionTable = new SessionTable(plugin.getConfigManager().getMaxSessions(),
+                plugin.getConfigManager().getSessionTtlSeconds() * 1000L);
+        this.admission = plugin.getConfigManager().isAdmissionEnabled()
+                ? new AdmissionController(plugin.getConfigManager().getAdmissionMinConcurrent(),
+                plugin.getConfigManager().getAdmissionMaxConcurrent(),
+                plugin.getConfigManager().getAdmissionPerUser(),
+                plugin.getConfigManager().getAdmissionTargetLatencyMillis(),
+                (int) CommandExecutionService.COMMAND_TIMEOUT_SECONDS)
+                : AdmissionController.unlimited();
+        this.userRateLimiter = plugin.getConfigManager().getUserRateLimit() > 0
+                ? new RateLimiter(plugin.getConfigManager().getUserRateLimit(),
+                plugin.getConfigManager().getRateLimitMaxKeys())
+                : null;
     }
 
     /**
@@ -40,88 +88,315 @@ public class ReconHttpServer {
      */
     public void start() throws IOException {
         int port = plugin.getConfigManager().getPort();
-        server = HttpServer.create(new InetSocketAddress(port), 0);
-        server.createContext("/", new ApiHandler());
-        server.setExecutor(null); // デフォルトのexecutorを使用
-        server.start();
-        plugin.getPluginLogger().info("Recon HTTP server started on port " + port);
+        executor = createExecutor();
+        ThreadPoolExecutor completions = createCompletionExecutor();
+        completionExecutor = completions;
+        streamExecutor = createStreamExecutor();
+        admission.limitBacklog(() -> completions.getQueue().size(), plugin.getConfigManager().getHttpQueueSize());
+        transport = createTransport();
+        transport.start(port);
+        plugin.getPluginLogger().info("Recon HTTP server started on port " + port
+                + " (transport: " + transport.getName() + ", executor: " + describeExecutor() + ")");
+        // WebSocketコンソールはnettyトランスポートのみ対応（JDK内蔵HttpServerにはWebSocketのアップグレードがない）
+        if (isConsoleEnabled() && transport instanceof JdkHttpTransport) {
+            plugin.getPluginLogger().warning("http-server.websocket is enabled, but the WebSocket console (/console) "
+                    + "is only available with the netty transport. Set http-server.transport to netty to use it.");
+        }
+    }
+
+    /**
+     * 期限切れのジョブ結果・セッションを削除する（定期クリーンアップから呼ばれる）
+     */
+    public void cleanup() {
+        jobTable.evictExpired();
+        sessionTable.evictExpired();
+        if (userRateLimiter != null) {
+            userRateLimiter.cleanup();
+        }
     }
 
     /**
      * HTTPサーバーを停止する
+     * トランスポートが処理中リクエストをドレインした後にワーカーを停止する
      */
     public void stop() {
-        if (server != null) {
-            server.stop(0);
+        if (transport != null) {
+            transport.stop();
+            transport = null;
             plugin.getPluginLogger().info("Recon HTTP server stopped.");
         }
+        shutdownExecutor(executor);
+        executor = null;
+        shutdownExecutor(completionExecutor);
+        completionExecutor = null;
+        shutdownExecutor(streamExecutor);
+        streamExecutor = null;
+    }
+
+    private static void shutdownExecutor(ExecutorService executor) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
-     * APIリクエストハンドラー
-     * 全てのHTTPリクエストを処理する
+     * リクエストを処理する（トランスポートから呼び出される）
+     *
+     * @return レスポンスのステージ（例外ではなくエラーレスポンスで完了する）
+     */
+    CompletionStage<ApiResponse> handleRequest(ApiRequest request) {
+        return apiHandler.handle(request);
+    }
+
+    /**
+     * リクエスト処理用のExecutorを取得する
+     *
+     * @return Executor、デフォルトのディスパッチャースレッドを使用する場合は null
+     */
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * config.yml の http-server.transport 設定に基づいてトランスポートを生成する
+     * NettyのHTTPコーデックが利用できない環境ではJDK内蔵HttpServerにフォールバックする
+     */
+    private HttpTransport createTransport() {
+        ConfigManager config = plugin.getConfigManager();
+        if (config.getHttpTransportType() == ConfigManager.HttpTransportType.NETTY) {
+            if (isNettyHttpAvailable()) {
+                return new NettyHttpTransport(this, config.getHttpIoThreads(), config.getHttpMaxBodyBytes());
+            }
+            plugin.getPluginLogger().warning("Netty HTTP codec is not available on this server. "
+                    + "Falling back to the JDK HTTP server.");
+        }
+        return new JdkHttpTransport(this, config.getHttpMaxBodyBytes());
+    }
+
+    private boolean isNettyHttpAvailable() {
+        try {
+            Class.forName(NETTY_HTTP_CODEC_CLASS, false, getClass().getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * config.yml の http-server 設定に基づいてリクエスト処理用のExecutorを生成する
+     * default: null（JDKのディスパッチャースレッド1本で処理）
+     * pool: 上限付きスレッドプール（キュー満杯時はディスパッチャースレッドで処理してバックプレッシャーをかける）
+     * virtual: リクエスト毎に仮想スレッド（Java 21未満ではpoolにフォールバック）
      */
-    private class ApiHandler implements HttpHandler {
+    private ExecutorService createExecutor() {
+        ConfigManager config = plugin.getConfigManager();
+        ConfigManager.HttpExecutorType type = config.getHttpExecutorType();
+
+        if (type == ConfigManager.HttpExecutorType.DEFAULT) {
+            return null;
+        }
+
+        if (type == ConfigManager.HttpExecutorType.VIRTUAL) {
+            ExecutorService virtual = createVirtualThreadExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+            plugin.getPluginLogger().warning("Virtual threads are not available on this Java runtime. "
+                    + "Falling back to the bounded thread pool.");
+        }
+
+        int threads = config.getHttpWorkerThreads();
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getHttpQueueSize()),
+                new WorkerThreadFactory("Recon-HTTP-Worker-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * コマンド完了後の処理を行うスレッドプールを生成する
+     * 呼び出し元（メインスレッド等）で処理しないよう待機キューは上限を設けず、
+     * 待機数はアドミッション制御で queue-size までに抑える
+     */
+    private ThreadPoolExecutor createCompletionExecutor() {
+        int threads = plugin.getConfigManager().getHttpCompletionThreads();
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new WorkerThreadFactory("Recon-HTTP-Completion-"));
+    }
+
+    /**
+     * ストリーミングの出力を送信するスレッドプールを生成する
+     * JDKトランスポートの送信はクライアントが受信するまでブロックするため、他の処理とスレッドを共有しない
+     * 待機するのはストリーム毎に1件のdrainのみのため、待機キューに上限を設けない
+     */
+    private ExecutorService createStreamExecutor() {
+        int threads = plugin.getConfigManager().getStreamThreads();
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new WorkerThreadFactory("Recon-HTTP-Stream-"));
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() をリフレクションで取得する（Java 21+）
+     * コンパイルターゲットがJava 11のため直接呼び出さない
+     */
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * ログ表示用のExecutor種別
+     */
+    private String describeExecutor() {
+        if (executor == null) {
+            return "default";
+        }
+        if (executor instanceof ThreadPoolExecutor) {
+            return "pool, threads=" + ((ThreadPoolExecutor) executor).getMaximumPoolSize()
+                    + ", queue=" + plugin.getConfigManager().getHttpQueueSize();
+        }
+        return "virtual";
+    }
+
+    /**
+     * HTTPワーカースレッド用のThreadFactory
+     * サーバー停止を妨げないようデーモンスレッドとして生成する
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private WorkerThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
 
         @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            String clientIp = exchange.getRemoteAddress().getAddress().getHostAddress();
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * APIリクエストハンドラー
+     * 全てのHTTPリクエストを処理する（トランスポート非依存）
+     */
+    private class ApiHandler {
+
+        public CompletionStage<ApiResponse> handle(ApiRequest request) {
+            String clientIp = request.getClientIp();
 
             try {
                 // POSTメソッドのみ受付
-                if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
-                    sendErrorResponse(exchange, 404, plugin.getLangManager().get("http.only_post"));
-                    return;
+                if (!"POST".equalsIgnoreCase(request.getMethod())) {
+                    return completed(errorResponse(404, plugin.getLangManager().get("http.only_post")));
                 }
 
                 // パスチェック（ルート直下のみ）
-                String path = exchange.getRequestURI().getPath();
+                String path = request.getPath();
                 if (!"/".equals(path)) {
-                    sendErrorResponse(exchange, 404, plugin.getLangManager().get("http.only_root"));
-                    return;
+                    return completed(errorResponse(404, plugin.getLangManager().get("http.only_root")));
                 }
 
                 // レート制限チェック
                 if (!plugin.getRateLimiter().allowRequest(clientIp)) {
-                    sendErrorResponse(exchange, 429, plugin.getLangManager().get("http.rate_limited"));
-                    return;
+                    return completed(errorResponse(429, plugin.getLangManager().get("http.rate_limited")));
                 }
 
-                // リクエストボディを読み取り
-                String body = readRequestBody(exchange);
+                // エンベロープの形式（Content-Type: application/cbor の場合はCBOR、レスポンスは Accept で選択できる）
+                EnvelopeFormat requestFormat = EnvelopeFormat.fromContentType(request.getHeader("Content-Type"));
+                EnvelopeFormat responseFormat = EnvelopeFormat.negotiate(request.getHeader("Accept"), requestFormat);
 
                 // 設定された転送先へリクエストを非同期一斉転送（レスポンスは待たない）
-                forwardRequestAsync(body);
+                forwardRequestAsync(request.getBodyBytes(), requestFormat);
 
-                // JSONパース
-                JsonObject requestJson;
+                // エンベロープの読み取り（ボディのバイト列から使用するフィールドだけを直接読み取る）
+                RequestEnvelope envelope;
                 try {
-                    requestJson = new JsonParser().parse(body).getAsJsonObject();
+                    envelope = requestFormat == EnvelopeFormat.CBOR
+                            ? RequestEnvelope.readCbor(request.getBodyBytes())
+                            : RequestEnvelope.read(request.openBodyReader());
                 } catch (Exception e) {
-                    sendErrorResponse(exchange, 400, plugin.getLangManager().get("http.invalid_json"));
-                    return;
+                    return completed(errorResponse(400, plugin.getLangManager().get(
+                            requestFormat == EnvelopeFormat.CBOR ? "http.invalid_cbor" : "http.invalid_json")));
                 }
 
-                // 必須フィールドのチェック
-                if (!requestJson.has("user") || !requestJson.has("nonce") ||
-                        !requestJson.has("timestamp") || !requestJson.has("command")) {
-                    sendErrorResponse(exchange, 400,
-                        plugin.getLangManager().get("http.missing_required_fields"));
-                    return;
+                // 必須フィールドのチェック（単一コマンドは command、バッチは commands、ジョブ結果の取得は job、
+                // セッションの発行は auth。発行済みのセッションを使う場合は user の代わりに session を指定する）
+                boolean sessionRequest = envelope.getSession() != null;
+                boolean hasCommand = envelope.getCommand() != null;
+                boolean batch = !hasCommand && envelope.getCommands() != null;
+                boolean jobFetch = !hasCommand && !batch && envelope.getJob() != null;
+                boolean sessionOpen = !sessionRequest && !hasCommand && !batch && !jobFetch
+                        && envelope.getAuth() != null;
+                if ((envelope.getUser() == null && !sessionRequest) || envelope.getNonce() == null ||
+                        !envelope.hasTimestamp() ||
+                        (!hasCommand && !batch && !jobFetch && !sessionOpen)) {
+                    return completed(errorResponse(400, plugin.getLangManager().get("http.missing_required_fields")));
                 }
 
-                String userName = requestJson.get("user").getAsString();
-                String nonce = requestJson.get("nonce").getAsString();
-                long timestamp = requestJson.get("timestamp").getAsLong();
-                boolean queueRequested = requestJson.has("queue") && requestJson.get("queue").getAsBoolean();
-                String encryptedCommand = requestJson.get("command").getAsString();
+                String nonce = envelope.getNonce();
+                long timestamp = envelope.getTimestamp();
+                boolean queueRequested = envelope.isQueue();
+                RequestEnvelope.Ciphertext encryptedCommand = batch ? envelope.getCommands() : jobFetch ? envelope.getJob()
+                        : sessionOpen ? envelope.getAuth() : envelope.getCommand();
+                boolean async = !batch && !jobFetch && !sessionOpen && envelope.isAsync();
+                String accept = request.getHeader("Accept");
+                boolean stream = !batch && !jobFetch && !sessionOpen && !async
+                        && (envelope.isStream() || (accept != null && accept.contains("text/event-stream")));
+
+                // プロトコルバージョン（省略時はv1: AES-CBC、v2: AES-GCM）
+                int version = envelope.getVersion() != null ? envelope.getVersion() : AESCrypto.VERSION_CBC;
+                if (!AESCrypto.isSupportedVersion(version)) {
+                    return completed(errorResponse(400, plugin.getLangManager().get("http.unsupported_version")));
+                }
+
+                // レスポンスに含める出力の形式（省略時は response と plainResponse の両方）
+                ResponseMode responseMode = ResponseMode.fromRequestValue(envelope.getResponseMode());
+                if (responseMode == null) {
+                    return completed(errorResponse(400, plugin.getLangManager().get("http.unsupported_response_mode")));
+                }
+
+                // セッションの取得（セッション発行時のユーザー・キー・バージョンを使用する）
+                SessionTable.Session session = null;
+                String userName;
+                if (sessionRequest) {
+                    session = sessionTable.get(envelope.getSession());
+                    if (session == null) {
+                        plugin.getReconLogger().logApiRequest(clientIp, "(session)", "(invalid session)", false);
+                        return completed(errorResponse(401, plugin.getLangManager().get("http.session_invalid")));
+                    }
+                    userName = session.getUser();
+                    version = session.getVersion();
+                } else {
+                    userName = envelope.getUser();
+                }
 
                 // ユーザー認証
                 ReconUser reconUser = plugin.getUserManager().getUser(userName);
                 if (reconUser == null) {
                     plugin.getReconLogger().logApiRequest(clientIp, userName, "(unknown)", false);
-                    sendErrorResponse(exchange, 401, plugin.getLangManager().get("http.auth_user_not_found"));
-                    return;
+                    return completed(errorResponse(401, plugin.getLangManager().get("http.auth_user_not_found")));
+                }
+
+                // セッション発行後にパスワードが変更された場合はセッションを無効にする
+                if (session != null && !session.matchesPassword(reconUser.getPassword())) {
+                    sessionTable.remove(session);
+                    plugin.getReconLogger().logApiRequest(clientIp, userName, "(invalid session)", false);
+                    return completed(errorResponse(401, plugin.getLangManager().get("http.session_invalid")));
                 }
 
                 boolean queueEnabled = queueRequested &&
@@ -132,9 +407,7 @@ public class ReconHttpServer {
                 if (globalWhitelist != null && !globalWhitelist.isEmpty()) {
                     if (!globalWhitelist.contains(clientIp)) {
                         plugin.getReconLogger().logApiRequest(clientIp, userName, "(blocked)", false);
-                        sendErrorResponse(exchange, 403,
-                                plugin.getLangManager().get("http.ip_not_whitelisted_global"));
-                        return;
+                        return completed(errorResponse(403, plugin.getLangManager().get("http.ip_not_whitelisted_global")));
                     }
                 }
 
@@ -143,9 +416,7 @@ public class ReconHttpServer {
                 if (userWhitelist != null && !userWhitelist.isEmpty()) {
                     if (!userWhitelist.contains(clientIp)) {
                         plugin.getReconLogger().logApiRequest(clientIp, userName, "(blocked)", false);
-                        sendErrorResponse(exchange, 403,
-                                plugin.getLangManager().get("http.ip_not_whitelisted_user"));
-                        return;
+                        return completed(errorResponse(403, plugin.getLangManager().get("http.ip_not_whitelisted_user")));
                     }
                 }
 
@@ -153,103 +424,540 @@ public class ReconHttpServer {
                 long now = System.currentTimeMillis() / 1000L;
                 if (Math.abs(now - timestamp) > 60) {
                     plugin.getReconLogger().logApiRequest(clientIp, userName, "(invalid timestamp)", false);
-                    sendErrorResponse(exchange, 401,
-                            plugin.getLangManager().get("http.timestamp_out_of_range"));
-                    return;
+                    return completed(errorResponse(401, plugin.getLangManager().get("http.timestamp_out_of_range")));
                 }
 
                 // nonce検証（同一nonceの再利用防止）
                 if (!plugin.getNonceTracker().useNonce(nonce)) {
                     plugin.getReconLogger().logApiRequest(clientIp, userName, "(duplicate nonce)", false);
-                    sendErrorResponse(exchange, 401, plugin.getLangManager().get("http.nonce_used"));
-                    return;
+                    return completed(errorResponse(401, plugin.getLangManager().get("http.nonce_used")));
                 }
 
-                // コマンドの復号
+                // コマンドの復号（v2では誤ったキー・改ざんを認証タグで検出する）
+                // セッションのリクエストはセッションキーとnonce・タイムスタンプからリクエスト毎のキーを導出して復号する
+                // （暗号文がnonce・タイムスタンプに結び付くため、別のnonceでの再送は復号に失敗する）
                 String decryptedCommand;
+                byte[] key;
                 try {
-                    byte[] key = AESCrypto.deriveKey(reconUser.getPassword(), nonce, timestamp);
-                    decryptedCommand = AESCrypto.decrypt(encryptedCommand, key);
+                    key = session != null
+                            ? AESCrypto.deriveSessionRequestKey(session.getKey(), nonce, timestamp)
+                            : AESCrypto.deriveKey(reconUser.getPassword(), nonce, timestamp);
+                    decryptedCommand = encryptedCommand.decrypt(key, version);
                 } catch (Exception e) {
                     plugin.getReconLogger().logApiRequest(clientIp, userName, "(decrypt failed)", false);
-                    sendErrorResponse(exchange, 401,
-                            plugin.getLangManager().get("http.decrypt_failed"));
-                    return;
+                    return completed(errorResponse(401, plugin.getLangManager().get("http.decrypt_failed")));
+                }
+
+                // レート制限チェック（ユーザー単位、認証に成功したリクエストのみ数える）
+                if (userRateLimiter != null && !userRateLimiter.allowRequest(userName)) {
+                    plugin.getReconLogger().logApiRequest(clientIp, userName, "(rate limited)", false);
+                    return completed(errorResponse(429, plugin.getLangManager().get("http.rate_limited")));
+                }
+
+                // セッションの発行（復号したauthが認証トークン）
+                if (sessionOpen) {
+                    return completed(openSession(clientIp, reconUser, decryptedCommand, version, responseFormat));
+                }
+
+                // 受け付ける圧縮形式（暗号化の前に圧縮する。対応していない形式のみの場合は圧縮しない）
+                Compression compression = Compression.fromRequestValue(envelope.getCompression());
+                ResponseEncryption encryption = session != null
+                        ? ResponseEncryption.session(reconUser, session, key, responseMode, responseFormat,
+                        compression)
+                        : ResponseEncryption.perResponse(reconUser, version, responseMode, responseFormat,
+                        compression);
+
+                if (batch) {
+                    return handleBatch(clientIp, encryption, decryptedCommand, queueEnabled);
+                }
+
+                // ジョブ結果の取得（復号したjobがジョブID）
+                if (jobFetch) {
+                    return fetchJob(encryption, decryptedCommand,
+                            Math.min(Math.max(envelope.getWait(), 0), MAX_JOB_WAIT_SECONDS));
                 }
 
                 // RCON_ プレフィックスのチェック
                 if (!decryptedCommand.startsWith("RCON_")) {
                     plugin.getReconLogger().logApiRequest(clientIp, userName, "(invalid prefix)", false);
-                    sendErrorResponse(exchange, 401,
-                            plugin.getLangManager().get("http.invalid_command_format"));
-                    return;
+                    return completed(errorResponse(401, plugin.getLangManager().get("http.invalid_command_format")));
                 }
 
                 // RCON_ プレフィックスを除去
                 String command = decryptedCommand.substring(5);
 
+                // アドミッション制御（実行中のコマンドが上限に達している場合は待機させずに即座に拒否する）
+                AdmissionController.Permit permit = admission.tryAcquire(userName);
+                if (permit == null) {
+                    plugin.getReconLogger().logApiRequest(clientIp, userName, command, false);
+                    return completed(overloadedResponse());
+                }
+
                 // ロギング
                 plugin.getReconLogger().logApiRequest(clientIp, userName, command, true);
 
-                // コマンド実行
-                ExecutionResult result;
+                // 非同期ジョブ指定時はジョブIDを即座に返す
+                if (async) {
+                    return completed(submitJob(reconUser, command, queueEnabled, responseFormat, permit));
+                }
+
+                // ストリーミング指定時は出力をイベントとして逐次送信する
+                if (stream) {
+                    permit.releaseAfter(plugin.getConfigManager().getStreamMaxSeconds()
+                            + CommandExecutionService.COMMAND_TIMEOUT_SECONDS);
+                    return completed(ApiResponse.eventStream(
+                            sink -> startCommandStream(sink, encryption, command, queueEnabled, permit)));
+                }
+
+                // コマンド実行（完了時にレスポンスを送信し、HTTPスレッドはブロックしない）
+                CompletionStage<ExecutionResult> stage;
                 try {
-                    result = plugin.getCommandExecutionService().executeCommand(reconUser, command, queueEnabled);
+                    stage = plugin.getCommandExecutionService().executeCommandAsync(reconUser, command, queueEnabled)
+                            .whenComplete((result, error) -> permit.release(1));
                 } catch (Exception e) {
+                    permit.release(1);
                     plugin.getPluginLogger().severe("Error executing command: " + e.getMessage());
-                    sendErrorResponse(exchange, 500,
-                            plugin.getLangManager().get("http.execute_error"));
-                    return;
+                    return completed(errorResponse(500, plugin.getLangManager().get("http.execute_error")));
                 }
 
-                // レスポンスの暗号化
-                String serverNonce = UUID.randomUUID().toString().replace("-", "");
-                long serverTimestamp = System.currentTimeMillis() / 1000L;
-                String responseText = result.response != null ? result.response : "";
-                String plainResponseText = result.plainResponse != null ? result.plainResponse : "";
+                return stage.handleAsync((result, error) -> {
+                    if (error != null || result == null) {
+                        plugin.getPluginLogger().severe("Error executing command: "
+                                + (error != null ? error.getMessage() : "no result"));
+                        return errorResponse(500, plugin.getLangManager().get("http.execute_error"));
+                    }
+                    try {
+                        return buildCommandResponse(encryption, result);
+                    } catch (Exception e) {
+                        plugin.getPluginLogger().severe("Unexpected error in HTTP handler: " + e.getMessage());
+                        return unexpectedErrorResponse();
+                    }
+                }, ReconHttpServer.this::dispatchCompletion);
+
+            } catch (Exception e) {
+                plugin.getPluginLogger().severe("Unexpected error in HTTP handler: " + e.getMessage());
+                return completed(unexpectedErrorResponse());
+            }
+        }
+
+        /**
+         * バッチリクエストを処理する
+         * 復号済みのペイロードは "RCON_" 付きコマンド文字列のJSON配列
+         */
+        private CompletionStage<ApiResponse> handleBatch(String clientIp, ResponseEncryption encryption,
+                                                         String decryptedCommands, boolean queueEnabled) {
+            ReconUser reconUser = encryption.getReconUser();
+            String userName = reconUser.getUser();
+
+            JsonArray commandArray;
+            try {
+                commandArray = new JsonParser().parse(decryptedCommands).getAsJsonArray();
+            } catch (Exception e) {
+                plugin.getReconLogger().logApiRequest(clientIp, userName, "(invalid batch)", false);
+                return completed(errorResponse(400, plugin.getLangManager().get("http.invalid_json")));
+            }
+
+            // バッチサイズの上限チェック
+            int maxBatchSize = plugin.getConfigManager().getMaxBatchSize();
+            if (commandArray.size() == 0 || commandArray.size() > maxBatchSize) {
+                plugin.getReconLogger().logApiRequest(clientIp, userName, "(invalid batch size)", false);
+                return completed(errorResponse(400, plugin.getLangManager().format("http.batch_too_large",
+                        java.util.Collections.singletonMap("max", String.valueOf(maxBatchSize)))));
+            }
 
-                String encryptedResponse;
-                String encryptedPlainResponse;
+            // RCON_ プレフィックスのチェックと除去（1件でも不正ならバッチ全体を拒否）
+            List<String> commands = new ArrayList<>(commandArray.size());
+            for (JsonElement element : commandArray) {
+                String decryptedCommand = element.isJsonPrimitive() ? element.getAsString() : "";
+                if (!decryptedCommand.startsWith("RCON_")) {
+                    plugin.getReconLogger().logApiRequest(clientIp, userName, "(invalid prefix)", false);
+                    return completed(errorResponse(401, plugin.getLangManager().get("http.invalid_command_format")));
+                }
+                commands.add(decryptedCommand.substring(5));
+            }
+
+            // アドミッション制御（バッチ全体で1件として数え、所要時間はコマンド数で割って扱う）
+            AdmissionController.Permit permit = admission.tryAcquire(userName);
+            if (permit == null) {
+                plugin.getReconLogger().logApiBatchRequest(clientIp, userName, commands, false);
+                return completed(overloadedResponse());
+            }
+
+            // ロギング
+            plugin.getReconLogger().logApiBatchRequest(clientIp, userName, commands, true);
+
+            // コマンド実行（全件完了時にレスポンスを送信し、HTTPスレッドはブロックしない）
+            CompletionStage<List<ExecutionResult>> stage;
+            try {
+                stage = plugin.getCommandExecutionService().executeBatchAsync(reconUser, commands, queueEnabled)
+                        .whenComplete((results, error) -> permit.release(commands.size()));
+            } catch (Exception e) {
+                permit.release(commands.size());
+                plugin.getPluginLogger().severe("Error executing command: " + e.getMessage());
+                return completed(errorResponse(500, plugin.getLangManager().get("http.execute_error")));
+            }
+
+            return stage.handleAsync((results, error) -> {
+                if (error != null || results == null) {
+                    plugin.getPluginLogger().severe("Error executing command: "
+                            + (error != null ? error.getMessage() : "no result"));
+                    return errorResponse(500, plugin.getLangManager().get("http.execute_error"));
+                }
                 try {
-                    byte[] responseKey = AESCrypto.deriveKey(
-                            reconUser.getPassword(), serverNonce, serverTimestamp);
-                    encryptedResponse = AESCrypto.encrypt(responseText, responseKey);
-                    encryptedPlainResponse = AESCrypto.encrypt(plainResponseText, responseKey);
+                    return buildBatchResponse(encryption, results);
                 } catch (Exception e) {
-                    sendErrorResponse(exchange, 500, plugin.getLangManager().get("http.encrypt_failed"));
-                    return;
-                }
-
-                // レスポンスJSON構築
-                JsonObject responseJson = new JsonObject();
-                responseJson.addProperty("user", userName);
-                responseJson.addProperty("nonce", serverNonce);
-                responseJson.addProperty("timestamp", serverTimestamp);
-                responseJson.addProperty("success", result.success);
-                responseJson.addProperty("response", encryptedResponse);
-                responseJson.addProperty("plainResponse", encryptedPlainResponse);
-                if (!result.success && result.error != null) {
-                    responseJson.addProperty("error", result.error);
+                    plugin.getPluginLogger().severe("Unexpected error in HTTP handler: " + e.getMessage());
+                    return unexpectedErrorResponse();
                 }
+            }, ReconHttpServer.this::dispatchCompletion);
+        }
+    }
 
-                sendResponse(exchange, 200, responseJson.toString());
+    /**
+     * コマンド実行結果を暗号化してレスポンスを構築する
+     * レスポンスはリクエストと同じプロトコルバージョン（セッションの場合はセッションキー）で暗号化し、
+     * 出力はリクエストで指定された形式だけを含める
+     */
+    private ApiResponse buildCommandResponse(ResponseEncryption encryption, ExecutionResult result) {
+        return buildCommandResponse(encryption, result, null);
+    }
+
+    /**
+     * @param jobId ジョブ結果として返す場合のジョブID（通常のレスポンスの場合はnull）
+     */
+    private ApiResponse buildCommandResponse(ResponseEncryption encryption, ExecutionResult result, String jobId) {
+        ResponseMode responseMode = encryption.getResponseMode();
+        try (ResponseEnvelope response = ResponseEnvelope.object(encryption.getFormat())) {
+            // レスポンスの暗号化（指定された形式のみ）
+            byte[] encryptedResponse = null;
+            byte[] encryptedPlainResponse = null;
+            try {
+                byte[] responseKey = encryption.begin(response);
+                String decorated = result.response != null ? result.response : "";
+                String plain = result.plainResponse != null ? result.plainResponse : "";
+                long plaintextLength = (responseMode.includesDecorated() ? decorated.length() : 0)
+                        + (responseMode.includesPlain() ? plain.length() : 0);
+                Compression compression = addCompression(response, encryption, plaintextLength);
+                if (responseMode.includesDecorated()) {
+                    encryptedResponse = encryption.encryptToBytes(decorated, responseKey, compression);
+                }
+                if (responseMode.includesPlain()) {
+                    encryptedPlainResponse = encryption.encryptToBytes(plain, responseKey, compression);
+                }
+            } catch (Exception e) {
+                return errorResponse(500, plugin.getLangManager().get("http.encrypt_failed"));
+            }
+
+            // レスポンスJSON構築
+            response.put("success", result.success);
+            if (encryptedResponse != null) {
+                response.putCiphertext("response", encryptedResponse);
+            }
+            if (encryptedPlainResponse != null) {
+                response.putCiphertext("plainResponse", encryptedPlainResponse);
+            }
+            if (!result.success && result.error != null) {
+                response.put("error", result.error);
+            }
+            if (jobId != null) {
+                response.put("job", jobId);
+                response.put("status", "done");
+            }
+
+            return response.toResponse(200);
+        }
+    }
+
+    /**
+     * セッションを発行する
+     * 認証トークンを確認し、サーバー側のnonce・タイムスタンプから導出したセッションキーを登録する
+     * 以降のリクエストは user の代わりに session を指定し、このキーで暗号化する
+     */
+    private ApiResponse openSession(String clientIp, ReconUser reconUser, String decryptedToken, int version,
+                                    EnvelopeFormat format) {
+        if (!ConsoleSession.AUTH_TOKEN.equals(decryptedToken)) {
+            plugin.getReconLogger().logApiRequest(clientIp, reconUser.getUser(), "(invalid prefix)", false);
+            return errorResponse(401, plugin.getLangManager().get("http.invalid_command_format"));
+        }
+
+        String serverNonce = UUID.randomUUID().toString().replace("-", "");
+        long serverTimestamp = System.currentTimeMillis() / 1000L;
+        SessionTable.Session session;
+        try {
+            byte[] sessionKey = AESCrypto.deriveKey(reconUser.getPassword(), serverNonce, serverTimestamp);
+            session = sessionTable.create(reconUser.getUser(), reconUser.getPassword(), sessionKey, version);
+        } catch (Exception e) {
+            return errorResponse(500, plugin.getLangManager().get("http.encrypt_failed"));
+        }
+        plugin.getReconLogger().logApiRequest(clientIp, reconUser.getUser(), "(session)", true);
+
+        try (ResponseEnvelope response = ResponseEnvelope.object(format)) {
+            response.put("user", reconUser.getUser())
+                    .put("nonce", serverNonce)
+                    .put("timestamp", serverTimestamp);
+            addVersion(response, version);
+            response.put("success", true)
+                    .put("session", session.getId())
+                    .put("expires", sessionTable.getTtlSeconds());
+            return response.toResponse(200);
+        }
+    }
+
+    /**
+     * コマンドをジョブとして実行し、ジョブIDを返す
+     * 出力はジョブテーブルに蓄積され、stream-max-seconds まで実行を待機する
+     *
+     * @param permit 実行完了時に解放するアドミッション制御の実行枠
+     */
+    private ApiResponse submitJob(ReconUser reconUser, String command, boolean queueEnabled, EnvelopeFormat format,
+                                  AdmissionController.Permit permit) {
+        CommandJobTable.Job job = jobTable.create(reconUser.getUser());
+        if (job == null) {
+            permit.releaseWithoutSample();
+            return errorResponse(503, plugin.getLangManager().get("http.job_table_full"));
+        }
+
+        try {
+            plugin.getCommandExecutionService()
+                    .executeCommandStreaming(reconUser, command, queueEnabled, job)
+                    .whenComplete((result, error) -> {
+                        permit.releaseWithoutSample();
+                        if (error != null || result == null) {
+                            plugin.getPluginLogger().severe("Error executing command: "
+                                    + (error != null ? error.getMessage() : "no result"));
+                            job.complete(new ExecutionResult(false, null, null,
+                                    plugin.getLangManager().get("http.execute_error")));
+                            return;
+                        }
+                        job.complete(result);
+                    });
+        } catch (Exception e) {
+            permit.releaseWithoutSample();
+            plugin.getPluginLogger().severe("Error executing command: " + e.getMessage());
+            job.complete(new ExecutionResult(false, null, null, plugin.getLangManager().get("http.execute_error")));
+        }
+
+        return jobStatusResponse(202, reconUser, job.getId(), format);
+    }
+
+    /**
+     * ジョブの結果を返す
+     * 実行中の場合は最大waitSeconds秒まで完了を待機し（スレッドはブロックしない）、
+     * それでも完了しなければ status: running を返す
+     */
+    private CompletionStage<ApiResponse> fetchJob(ResponseEncryption encryption, String jobId, int waitSeconds) {
+        ReconUser reconUser = encryption.getReconUser();
+        CommandJobTable.Job job = jobTable.get(jobId, reconUser.getUser());
+        if (job == null) {
+            return completed(errorResponse(404, plugin.getLangManager().get("http.job_not_found")));
+        }
+
+        CompletableFuture<ExecutionResult> result = job.getResult();
+        if (!result.isDone()) {
+            result = result.copy().completeOnTimeout(null, waitSeconds, TimeUnit.SECONDS);
+        }
 
+        return result.thenApplyAsync(executionResult -> {
+            if (executionResult == null) {
+                return jobStatusResponse(200, reconUser, jobId, encryption.getFormat());
+            }
+            try {
+                return buildCommandResponse(encryption, executionResult, jobId);
             } catch (Exception e) {
                 plugin.getPluginLogger().severe("Unexpected error in HTTP handler: " + e.getMessage());
-                try {
-                    sendErrorResponse(exchange, 500, plugin.getLangManager().get("http.unexpected_error"));
-                } catch (IOException ignored) {
-                    // レスポンス送信が既に失敗している場合
+                return unexpectedErrorResponse();
+            }
+        }, this::dispatchCompletion);
+    }
+
+    /**
+     * コマンドを実行し、出力をServer-Sent Eventsとして送信する
+     * トランスポートがレスポンスヘッダーを送信した後に呼ばれる
+     */
+    private void startCommandStream(ResponseSink sink, ResponseEncryption encryption, String command,
+                                    boolean queueEnabled, AdmissionController.Permit permit) {
+        ReconUser reconUser = encryption.getReconUser();
+        CommandEventStream stream;
+        try {
+            stream = CommandEventStream.open(sink, encryption, this::dispatchStream,
+                    plugin.getConfigManager().getStreamBufferSize());
+        } catch (Exception e) {
+            permit.releaseWithoutSample();
+            plugin.getPluginLogger().severe("Unexpected error in HTTP handler: " + e.getMessage());
+            sink.close();
+            return;
+        }
+
+        CompletionStage<ExecutionResult> stage;
+        try {
+            stage = plugin.getCommandExecutionService().executeCommandStreaming(reconUser, command, queueEnabled, stream)
+                    .whenComplete((result, error) -> permit.releaseWithoutSample());
+        } catch (Exception e) {
+            permit.releaseWithoutSample();
+            plugin.getPluginLogger().severe("Error executing command: " + e.getMessage());
+            stream.finish(new ExecutionResult(false, null, null, plugin.getLangManager().get("http.execute_error")));
+            return;
+        }
+
+        stage.whenComplete((result, error) -> {
+            if (error != null || result == null) {
+                plugin.getPluginLogger().severe("Error executing command: "
+                        + (error != null ? error.getMessage() : "no result"));
+                stream.finish(new ExecutionResult(false, null, null, plugin.getLangManager().get("http.execute_error")));
+                return;
+            }
+            stream.finish(result);
+        });
+    }
+
+    /**
+     * バッチの実行結果を暗号化してレスポンスを構築する
+     * 各コマンドの結果をJSON配列にまとめ、配列全体を1回で暗号化する
+     */
+    private ApiResponse buildBatchResponse(ResponseEncryption encryption, List<ExecutionResult> results) {
+        ResponseMode responseMode = encryption.getResponseMode();
+        String resultArray;
+        try (ResponseEnvelope array = ResponseEnvelope.array()) {
+            for (ExecutionResult result : results) {
+                array.beginObject().put("success", result.success);
+                if (responseMode.includesDecorated()) {
+                    array.put("response", result.response != null ? result.response : "");
                 }
+                if (responseMode.includesPlain()) {
+                    array.put("plainResponse", result.plainResponse != null ? result.plainResponse : "");
+                }
+                if (!result.success && result.error != null) {
+                    array.put("error", result.error);
+                }
+                array.endObject();
+            }
+            resultArray = array.toJson();
+        }
+
+        try (ResponseEnvelope response = ResponseEnvelope.object(encryption.getFormat())) {
+            // レスポンスの暗号化
+            byte[] encryptedResults;
+            try {
+                byte[] responseKey = encryption.begin(response);
+                Compression compression = addCompression(response, encryption, resultArray.length());
+                encryptedResults = encryption.encryptToBytes(resultArray, responseKey, compression);
+            } catch (Exception e) {
+                return errorResponse(500, plugin.getLangManager().get("http.encrypt_failed"));
             }
+
+            // レスポンスJSON構築（success はバッチの受付可否を示し、個別の成否は results 内に含まれる）
+            response.put("success", true);
+            response.putCiphertext("results", encryptedResults);
+
+            return response.toResponse(200);
+        }
+    }
+
+    /**
+     * 実行中のジョブの状態を返すレスポンス
+     */
+    private static ApiResponse jobStatusResponse(int statusCode, ReconUser reconUser, String jobId,
+                                                 EnvelopeFormat format) {
+        try (ResponseEnvelope response = ResponseEnvelope.object(format)) {
+            return response.put("user", reconUser.getUser())
+                    .put("success", true)
+                    .put("job", jobId)
+                    .put("status", "running")
+                    .toResponse(statusCode);
         }
     }
 
+    /**
+     * v2以降のレスポンスにプロトコルバージョンを付ける（v1のレスポンスは従来の形式のまま）
+     */
+    static void addVersion(ResponseEnvelope response, int version) {
+        if (version != AESCrypto.VERSION_CBC) {
+            response.put("version", version);
+        }
+    }
+
+    /**
+     * 平文の長さから圧縮するかを決め、圧縮する場合はレスポンスに compression を書き込む
+     * （圧縮しない場合は省略し、従来のクライアントと互換にする）
+     *
+     * @param plaintextLength 暗号化する平文の合計の長さ（文字数）
+     * @return 使用する圧縮形式
+     */
+    private Compression addCompression(ResponseEnvelope response, ResponseEncryption encryption,
+                                       long plaintextLength) {
+        Compression compression = encryption.getCompression()
+                .forLength(plaintextLength, plugin.getConfigManager().getCompressionThreshold());
+        if (compression != Compression.NONE) {
+            response.put("compression", compression.getName());
+        }
+        return compression;
+    }
+
+    /**
+     * WebSocketコンソールが有効か
+     */
+    boolean isConsoleEnabled() {
+        return plugin.getConfigManager().isHttpWebSocketEnabled();
+    }
+
+    /**
+     * WebSocketコンソール接続のセッションを生成する
+     */
+    ConsoleSession openConsoleSession(String clientIp) {
+        return new ConsoleSession(plugin, clientIp, this::dispatchToWorker, this::dispatchCompletion, admission,
+                userRateLimiter);
+    }
+
+    /**
+     * リクエストの処理をワーカースレッドに振り分ける
+     * ワーカープールの待機キュー（queue-size）が満杯の場合はプールのCallerRunsPolicyにより呼び出し元
+     * （I/Oスレッド）で処理し、待機数を queue-size より増やさない（プール外のスレッドには振り分けない）
+     * executor: default の場合と、停止中で受け付けられない場合も呼び出し元で処理する
+     * コマンド完了後の処理は dispatchCompletion で振り分ける（メインスレッドで処理しないため）
+     */
+    void dispatchToWorker(Runnable task) {
+        ExecutorService workers = executor;
+        if (workers != null && !workers.isShutdown()) {
+            try {
+                workers.execute(task);
+                return;
+            } catch (RejectedExecutionException ignored) {
+                // 停止中: 呼び出し元で処理する
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * コマンド完了後の処理（暗号化・レスポンスの送信）を完了処理用のスレッドに振り分ける
+     * コマンド完了はメインスレッド・リージョンのスレッドで通知されるため、呼び出し元では処理しない
+     * 停止後は RejectedExecutionException を投げる（依存するステージは例外で完了する）
+     */
+    private void dispatchCompletion(Runnable task) {
+        ExecutorService completions = completionExecutor;
+        if (completions == null) {
+            throw new RejectedExecutionException("Recon HTTP server is not running");
+        }
+        completions.execute(task);
+    }
+
+    /**
+     * ストリーミングの出力の送信をストリーム専用のスレッドに振り分ける（呼び出し元では処理しない）
+     * 停止後は RejectedExecutionException を投げる（CommandEventStreamは出力を破棄する）
+     */
+    private void dispatchStream(Runnable task) {
+        ExecutorService streams = streamExecutor;
+        if (streams == null) {
+            throw new RejectedExecutionException("Recon HTTP server is not running");
+        }
+        streams.execute(task);
+    }
+
     /**
      * 設定された転送先へリクエストを非同期一斉転送する
      * 転送先のレスポンスは待たず、失敗時はログのみ出力する
      */
-    private void forwardRequestAsync(String body) {
+    private void forwardRequestAsync(byte[] body, EnvelopeFormat format) {
         List<String> targets = plugin.getConfigManager().getRequestForwardingTargets();
         if (targets == null || targets.isEmpty()) {
             return;
@@ -265,8 +973,8 @@ public class ReconHttpServer {
             }
 
             HttpRequest request = HttpRequest.newBuilder(uri)
-                    .header("Content-Type", "application/json; charset=UTF-8")
-                    .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                    .header("Content-Type", format.getContentType())
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
                     .build();
 
             forwardingHttpClient
@@ -293,40 +1001,51 @@ public class ReconHttpServer {
     }
 
     /**
-     * リクエストボディを文字列として読み取る
+     * エラーレスポンスを構築する
      */
-    private String readRequestBody(HttpExchange exchange) throws IOException {
-        try (InputStream is = exchange.getRequestBody();
-             BufferedReader reader = new BufferedReader(
-                     new InputStreamReader(is, StandardCharsets.UTF_8))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
-            }
-            return sb.toString();
+    private ApiResponse errorResponse(int statusCode, String error) {
+        try (ResponseEnvelope response = ResponseEnvelope.object()) {
+            return new ApiResponse(statusCode, response.put("success", false).put("error", error).toBytes());
         }
     }
 
     /**
-     * エラーレスポンスを送信する
+     * 予期しないエラー時のレスポンス
      */
-    private void sendErrorResponse(HttpExchange exchange, int statusCode, String error) throws IOException {
-        JsonObject responseJson = new JsonObject();
-        responseJson.addProperty("success", false);
-        responseJson.addProperty("error", error);
-        sendResponse(exchange, statusCode, responseJson.toString());
+    ApiResponse unexpectedErrorResponse() {
+        return errorResponse(500, plugin.getLangManager().get("http.unexpected_error"));
     }
 
     /**
-     * HTTPレスポンスを送信する
+     * 不正なHTTPリクエスト（デコード失敗等）に対するレスポンス
      */
-    private void sendResponse(HttpExchange exchange, int statusCode, String body) throws IOException {
-        byte[] responseBytes = body.getBytes(StandardCharsets.UTF_8);
-        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
-        exchange.sendResponseHeaders(statusCode, responseBytes.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(responseBytes);
+    ApiResponse badRequestResponse() {
+        return errorResponse(400, plugin.getLangManager().get("http.invalid_json"));
+    }
+
+    /**
+     * アドミッション制御で実行中のコマンドが上限に達している場合のレスポンス（Retry-After 付き）
+     */
+    private ApiResponse overloadedResponse() {
+        String retryAfter = String.valueOf(admission.getRetryAfterSeconds());
+        String error = plugin.getLangManager().format("http.overloaded",
+                java.util.Collections.singletonMap("seconds", retryAfter));
+        try (ResponseEnvelope response = ResponseEnvelope.object()) {
+            String body = response.put("success", false).put("error", error).toJson();
+            return new ApiResponse(503, body, java.util.Collections.singletonMap("Retry-After", retryAfter));
         }
     }
+
+    /**
+     * リクエストボディが最大サイズを超える場合のレスポンス
+     */
+    ApiResponse payloadTooLargeResponse() {
+        return errorResponse(413, plugin.getLangManager().format("http.body_too_large",
+                java.util.Collections.singletonMap("max",
+                        String.valueOf(plugin.getConfigManager().getHttpMaxBodyBytes()))));
+    }
+
+    private static CompletionStage<ApiResponse> completed(ApiResponse response) {
+        return CompletableFuture.completedFuture(response);
+    }
 }
@@ -0,0 +1,337 @@
+package net.enabify.recon.http;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.enabify.recon.crypto.AESCrypto;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * リクエストのエンベロープ（暗号化されたペイロードを包むJSON・CBOR）
+ *
+ * JsonReader（CBORの場合はCborReader）でボディを1回走査し、使用するフィールドだけを取り出す
+ * JSONツリーは構築せず、未知のフィールドは値を読み飛ばす（文字列等を生成しない）
+ * 値がnullのフィールドは省略された扱いにする
+ * 暗号化されたフィールド（command, commands, job, auth）はJSONではBase64文字列、
+ * CBORではバイト列（Base64文字列も可）で受け取る
+ */
+final class RequestEnvelope {
+
+    private String user;
+    private String session;
+    private String nonce;
+    private long timestamp;
+    private boolean hasTimestamp;
+    private Ciphertext command;
+    private Ciphertext commands;
+    private Ciphertext job;
+    private Ciphertext auth;
+    private String id;
+    private boolean queue;
+    private boolean async;
+    private boolean stream;
+    private Integer version;
+    private String responseMode;
+    private String compression;
+    private int wait;
+
+    private RequestEnvelope() {
+    }
+
+    /**
+     * エンベロープを読み取る（従来のJsonParserと同じく寛容なJSONを受け付ける）
+     *
+     * @throws IOException           JSONとして不正な場合
+     * @throws IllegalStateException ルートがオブジェクトでない・フィールドの型が不正な場合
+     * @throws NumberFormatException 数値のフィールドが数値でない場合
+     */
+    static RequestEnvelope read(Reader body) throws IOException {
+        JsonReader reader = new JsonReader(body);
+        reader.setLenient(true);
+
+        RequestEnvelope envelope = new RequestEnvelope();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "user":
+                    envelope.user = reader.nextString();
+                    break;
+                case "session":
+                    envelope.session = reader.nextString();
+                    break;
+                case "nonce":
+                    envelope.nonce = reader.nextString();
+                    break;
+                case "timestamp":
+                    envelope.timestamp = reader.nextLong();
+                    envelope.hasTimestamp = true;
+                    break;
+                case "command":
+                    envelope.command = Ciphertext.base64(reader.nextString());
+                    break;
+                case "commands":
+                    envelope.commands = Ciphertext.base64(reader.nextString());
+                    break;
+                case "job":
+                    envelope.job = Ciphertext.base64(reader.nextString());
+                    break;
+                case "auth":
+                    envelope.auth = Ciphertext.base64(reader.nextString());
+                    break;
+                case "id":
+                    envelope.id = reader.nextString();
+                    break;
+                case "queue":
+                    envelope.queue = nextBoolean(reader);
+                    break;
+                case "async":
+                    envelope.async = nextBoolean(reader);
+                    break;
+                case "stream":
+                    envelope.stream = nextBoolean(reader);
+                    break;
+                case "version":
+                    envelope.version = reader.nextInt();
+                    break;
+                case "responseMode":
+                    envelope.responseMode = reader.nextString();
+                    break;
+                case "compression":
+                    envelope.compression = reader.nextString();
+                    break;
+                case "wait":
+                    envelope.wait = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new IOException("Did not consume the entire document.");
+        }
+        return envelope;
+    }
+
+    /**
+     * CBORのエンベロープ（テキストのキーを持つマップ）を読み取る
+     *
+     * @throws IOException CBORとして不正な場合・フィールドの型が不正な場合
+     */
+    static RequestEnvelope readCbor(byte[] body) throws IOException {
+        CborReader reader = new CborReader(body);
+
+        RequestEnvelope envelope = new RequestEnvelope();
+        int size = reader.readMapStart();
+        for (int i = 0; size < 0 ? reader.hasNext() : i < size; i++) {
+            if (reader.peekType() != CborReader.TEXT) {
+                throw new IOException("CBOR envelope keys must be text strings");
+            }
+            String name = reader.readText();
+            if (reader.peekNull()) {
+                reader.readNull();
+                continue;
+            }
+            switch (name) {
+                case "user":
+                    envelope.user = reader.readText();
+                    break;
+                case "session":
+                    envelope.session = reader.readText();
+                    break;
+                case "nonce":
+                    envelope.nonce = reader.readText();
+                    break;
+                case "timestamp":
+                    envelope.timestamp = reader.readLong();
+                    envelope.hasTimestamp = true;
+                    break;
+                case "command":
+                    envelope.command = readCiphertext(reader);
+                    break;
+                case "commands":
+                    envelope.commands = readCiphertext(reader);
+                    break;
+                case "job":
+                    envelope.job = readCiphertext(reader);
+                    break;
+                case "auth":
+                    envelope.auth = readCiphertext(reader);
+                    break;
+                case "id":
+                    envelope.id = reader.readText();
+                    break;
+                case "queue":
+                    envelope.queue = reader.readBoolean();
+                    break;
+                case "async":
+                    envelope.async = reader.readBoolean();
+                    break;
+                case "stream":
+                    envelope.stream = reader.readBoolean();
+                    break;
+                case "version":
+                    envelope.version = reader.readInt();
+                    break;
+                case "responseMode":
+                    envelope.responseMode = reader.readText();
+                    break;
+                case "compression":
+                    envelope.compression = reader.readText();
+                    break;
+                case "wait":
+                    envelope.wait = reader.readInt();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+
+        if (!reader.isAtEnd()) {
+            throw new IOException("Did not consume the entire document.");
+        }
+        return envelope;
+    }
+
+    private static Ciphertext readCiphertext(CborReader reader) throws IOException {
+        if (reader.peekType() == CborReader.TEXT) {
+            return Ciphertext.base64(reader.readText());
+        }
+        return Ciphertext.raw(reader.readBytes());
+    }
+
+    /**
+     * 真偽値を読み取る（文字列の "true" も受け付ける）
+     */
+    private static boolean nextBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        return Boolean.parseBoolean(reader.nextString());
+    }
+
+    String getUser() {
+        return user;
+    }
+
+    String getSession() {
+        return session;
+    }
+
+    String getNonce() {
+        return nonce;
+    }
+
+    /**
+     * タイムスタンプ（{@link #hasTimestamp()} が false の場合は 0）
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    boolean hasTimestamp() {
+        return hasTimestamp;
+    }
+
+    Ciphertext getCommand() {
+        return command;
+    }
+
+    Ciphertext getCommands() {
+        return commands;
+    }
+
+    Ciphertext getJob() {
+        return job;
+    }
+
+    Ciphertext getAuth() {
+        return auth;
+    }
+
+    /**
+     * WebSocketコンソールのコマンドフレームのID
+     */
+    String getId() {
+        return id;
+    }
+
+    boolean isQueue() {
+        return queue;
+    }
+
+    boolean isAsync() {
+        return async;
+    }
+
+    boolean isStream() {
+        return stream;
+    }
+
+    /**
+     * プロトコルバージョン
+     *
+     * @return 省略時は null
+     */
+    Integer getVersion() {
+        return version;
+    }
+
+    /**
+     * @return 省略時は null
+     */
+    String getResponseMode() {
+        return responseMode;
+    }
+
+    /**
+     * 受け付ける圧縮形式（カンマ区切り）
+     *
+     * @return 省略時は null
+     */
+    String getCompression() {
+        return compression;
+    }
+
+    int getWait() {
+        return wait;
+    }
+
+    /**
+     * 暗号化されたフィールドの値（Base64文字列、またはバイナリ形式のエンベロープのバイト列）
+     */
+    static final class Ciphertext {
+
+        private final String base64;
+        private final byte[] raw;
+
+        private Ciphertext(String base64, byte[] raw) {
+            this.base64 = base64;
+            this.raw = raw;
+        }
+
+        static Ciphertext base64(String value) {
+            return new Ciphertext(value, null);
+        }
+
+        static Ciphertext raw(byte[] value) {
+            return new Ciphertext(null, value);
+        }
+
+        /**
+         * 指定したプロトコルバージョンの形式で復号する
+         */
+        String decrypt(byte[] key, int version) throws Exception {
+            return raw != null ? AESCrypto.decrypt(raw, key, version) : AESCrypto.decrypt(base64, key, version);
+        }
+    }
+}
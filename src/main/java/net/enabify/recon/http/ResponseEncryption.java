@@ -0,0 +1,122 @@
+package net.enabify.recon.http;
+
+import net.enabify.recon.crypto.AESCrypto;
+import net.enabify.recon.model.ReconUser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * 1件のリクエストに対するレスポンスの暗号化方法
+ * プロトコルバージョン・出力の形式・エンベロープの形式・受け付ける圧縮形式と、暗号化キーの決め方を保持する
+ * - 通常のリクエスト: レスポンス毎にサーバー側のnonce・タイムスタンプを発行してキーを導出する
+ * - セッションのリクエスト: リクエストの復号に使ったキー（セッションキーから導出）をそのまま使用する
+ */
+final class ResponseEncryption {
+
+    private final ReconUser reconUser;
+    private final int version;
+    private final ResponseMode responseMode;
+    private final EnvelopeFormat format;
+    private final Compression compression;
+    private final byte[] sessionKey;
+
+    private ResponseEncryption(ReconUser reconUser, int version, ResponseMode responseMode,
+                               EnvelopeFormat format, Compression compression, byte[] sessionKey) {
+        this.reconUser = reconUser;
+        this.version = version;
+        this.responseMode = responseMode;
+        this.format = format;
+        this.compression = compression;
+        this.sessionKey = sessionKey;
+    }
+
+    /**
+     * レスポンス毎にキーを導出する
+     */
+    static ResponseEncryption perResponse(ReconUser reconUser, int version, ResponseMode responseMode,
+                                          EnvelopeFormat format, Compression compression) {
+        return new ResponseEncryption(reconUser, version, responseMode, format, compression, null);
+    }
+
+    /**
+     * セッションのリクエストのキーで暗号化する
+     *
+     * @param requestKey セッションキーとリクエストのnonce・タイムスタンプから導出したキー
+     */
+    static ResponseEncryption session(ReconUser reconUser, SessionTable.Session session, byte[] requestKey,
+                                      ResponseMode responseMode, EnvelopeFormat format, Compression compression) {
+        return new ResponseEncryption(reconUser, session.getVersion(), responseMode, format, compression,
+                requestKey);
+    }
+
+    ReconUser getReconUser() {
+        return reconUser;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    ResponseMode getResponseMode() {
+        return responseMode;
+    }
+
+    /**
+     * レスポンスのエンベロープの形式
+     */
+    EnvelopeFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * クライアントが受け付ける圧縮形式（圧縮するかは平文の長さで決める）
+     */
+    Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * レスポンスJSONにユーザー（とキーの導出に使うnonce・タイムスタンプ、バージョン）を書き込み、
+     * このレスポンスの暗号化キーを返す
+     */
+    byte[] begin(ResponseEnvelope response) throws Exception {
+        response.put("user", reconUser.getUser());
+        if (sessionKey != null) {
+            ReconHttpServer.addVersion(response, version);
+            return sessionKey;
+        }
+
+        String serverNonce = UUID.randomUUID().toString().replace("-", "");
+        long serverTimestamp = System.currentTimeMillis() / 1000L;
+        byte[] key = AESCrypto.deriveKey(reconUser.getPassword(), serverNonce, serverTimestamp);
+        response.put("nonce", serverNonce);
+        response.put("timestamp", serverTimestamp);
+        ReconHttpServer.addVersion(response, version);
+        return key;
+    }
+
+    /**
+     * このレスポンスのバージョンで暗号化する（Base64文字列）
+     */
+    String encrypt(String plaintext, byte[] key) throws Exception {
+        return AESCrypto.encrypt(plaintext, key, version);
+    }
+
+    /**
+     * このレスポンスのバージョンで暗号化する（{@link ResponseEnvelope#putCiphertext} で書き込む）
+     */
+    byte[] encryptToBytes(String plaintext, byte[] key) throws Exception {
+        return AESCrypto.encryptToBytes(plaintext, key, version);
+    }
+
+    /**
+     * 平文を指定した形式で圧縮してから、このレスポンスのバージョンで暗号化する
+     */
+    byte[] encryptToBytes(String plaintext, byte[] key, Compression compression) throws Exception {
+        if (compression == Compression.NONE) {
+            return encryptToBytes(plaintext, key);
+        }
+        return AESCrypto.encryptToBytes(compression.compress(plaintext.getBytes(StandardCharsets.UTF_8)), key, version);
+    }
+}
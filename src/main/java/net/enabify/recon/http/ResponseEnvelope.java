@@ -0,0 +1,217 @@
+package net.enabify.recon.http;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * レスポンスのJSONをJsonWriterで直接書き出す（CBORの場合はCborWriter）
+ *
+ * JSONツリー・中間の文字列を作らず、エンベロープ毎のバッファへ書き込み、
+ * 完成したエンベロープをバイト列（JSONは文字列も可）として1回だけコピーして返す
+ * 暗号文は {@link #putCiphertext} で書き込み、JSONではBase64文字列、CBORではバイト列のまま格納する
+ * バッファはスレッド毎に保持しない（メインスレッド等のプラグイン外のスレッドにプラグインのクラスを残すと、
+ * リロード後も古いクラスローダーが解放されないため）
+ * 1つのインスタンスは1つのスレッドで書き終えること（try-with-resources で使用する）
+ */
+final class ResponseEnvelope implements AutoCloseable {
+
+    private final Buffer buffer = new Buffer();
+    private final EnvelopeFormat format;
+    /** JSONの場合のみ */
+    private final JsonWriter writer;
+    /** CBORの場合のみ */
+    private final CborWriter cbor;
+    private final boolean array;
+    private boolean finished;
+
+    private ResponseEnvelope(EnvelopeFormat format, boolean array) {
+        this.format = format;
+        this.array = array;
+        try {
+            if (format == EnvelopeFormat.CBOR) {
+                this.writer = null;
+                this.cbor = new CborWriter(buffer).beginMap();
+                return;
+            }
+            this.writer = new JsonWriter(buffer.writer);
+            this.cbor = null;
+            if (array) {
+                writer.beginArray();
+            } else {
+                writer.beginObject();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * JSONオブジェクトの書き込みを開始する
+     */
+    static ResponseEnvelope object() {
+        return new ResponseEnvelope(EnvelopeFormat.JSON, false);
+    }
+
+    /**
+     * 指定した形式でエンベロープ（オブジェクト・マップ）の書き込みを開始する
+     */
+    static ResponseEnvelope object(EnvelopeFormat format) {
+        return new ResponseEnvelope(format, false);
+    }
+
+    /**
+     * JSON配列の書き込みを開始する（要素は {@link #beginObject()} で追加する）
+     */
+    static ResponseEnvelope array() {
+        return new ResponseEnvelope(EnvelopeFormat.JSON, true);
+    }
+
+    ResponseEnvelope put(String name, String value) {
+        if (cbor != null) {
+            cbor.text(name).text(value);
+            return this;
+        }
+        try {
+            writer.name(name).value(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    ResponseEnvelope put(String name, long value) {
+        if (cbor != null) {
+            cbor.text(name).integer(value);
+            return this;
+        }
+        try {
+            writer.name(name).value(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    ResponseEnvelope put(String name, boolean value) {
+        if (cbor != null) {
+            cbor.text(name).bool(value);
+            return this;
+        }
+        try {
+            writer.name(name).value(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    /**
+     * 暗号文を書き込む（JSONではBase64文字列、CBORではバイト列）
+     */
+    ResponseEnvelope putCiphertext(String name, byte[] ciphertext) {
+        if (cbor != null) {
+            cbor.text(name).bytes(ciphertext);
+            return this;
+        }
+        return put(name, Base64.getEncoder().encodeToString(ciphertext));
+    }
+
+    /**
+     * 配列の要素となるオブジェクトを開始する（JSONのみ）
+     */
+    ResponseEnvelope beginObject() {
+        try {
+            writer.beginObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    ResponseEnvelope endObject() {
+        try {
+            writer.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    /**
+     * 書き込みを終了し、JSONのバイト列（UTF-8）を返す
+     */
+    byte[] toBytes() {
+        finish();
+        return Arrays.copyOf(buffer.bytes(), buffer.size());
+    }
+
+    /**
+     * 書き込みを終了し、エンベロープの形式のContent-Typeでレスポンスを生成する
+     */
+    ApiResponse toResponse(int statusCode) {
+        return new ApiResponse(statusCode, toBytes(), format.getContentType());
+    }
+
+    /**
+     * 書き込みを終了し、JSONを文字列として返す（暗号化するペイロード・イベント用）
+     */
+    String toJson() {
+        if (cbor != null) {
+            throw new IllegalStateException("CBOR envelope cannot be returned as JSON text");
+        }
+        finish();
+        return new String(buffer.bytes(), 0, buffer.size(), StandardCharsets.UTF_8);
+    }
+
+    private void finish() {
+        if (finished) {
+            throw new IllegalStateException("Response envelope already finished");
+        }
+        finished = true;
+        if (cbor != null) {
+            cbor.end();
+            return;
+        }
+        try {
+            if (array) {
+                writer.endArray();
+            } else {
+                writer.endObject();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 書き込みを終了せずに中断した場合に呼ばれる（バッファはエンベロープと共に破棄されるため、解放する資源は無い）
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * 出力バッファ（書き込んだ配列をコピーせずに参照できるようにする）
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        private final Writer writer = new OutputStreamWriter(this, StandardCharsets.UTF_8);
+
+        private Buffer() {
+            super(1024);
+        }
+
+        private byte[] bytes() {
+            return buf;
+        }
+    }
+}
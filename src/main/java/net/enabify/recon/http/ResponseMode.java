@@ -0,0 +1,54 @@
+package net.enabify.recon.http;
+
+import java.util.Locale;
+
+/**
+ * レスポンスに含めるコマンド出力の形式
+ * リクエストの responseMode で指定し、指定された形式だけを暗号化して返す
+ * （両方を返す場合は暗号化とBase64の出力が2倍になる）
+ */
+enum ResponseMode {
+    /** response（装飾コード付き）と plainResponse（装飾コード無し）の両方（従来の動作） */
+    BOTH,
+    /** response のみ */
+    DECORATED,
+    /** plainResponse のみ */
+    PLAIN;
+
+    /**
+     * リクエストの値から変換する
+     *
+     * @return 省略時は BOTH、不明な値の場合は null
+     */
+    static ResponseMode fromRequestValue(String value) {
+        if (value == null) {
+            return BOTH;
+        }
+
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        if ("both".equals(normalized)) {
+            return BOTH;
+        }
+        if ("decorated".equals(normalized)) {
+            return DECORATED;
+        }
+        if ("plain".equals(normalized)) {
+            return PLAIN;
+        }
+        return null;
+    }
+
+    /**
+     * response を含めるか
+     */
+    boolean includesDecorated() {
+        return this != PLAIN;
+    }
+
+    /**
+     * plainResponse を含めるか
+     */
+    boolean includesPlain() {
+        return this != DECORATED;
+    }
+}
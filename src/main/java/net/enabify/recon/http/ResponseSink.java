@@ -0,0 +1,40 @@
+package net.enabify.recon.http;
+
+/**
+ * ストリーミングレスポンスの送信先
+ * 各トランスポートが実装し、ボディを分割して順次送信する
+ */
+interface ResponseSink {
+
+    /**
+     * ボディの一部を送信する（即座にフラッシュする）
+     * クライアントが切断済みの場合は何もしない
+     */
+    void write(String chunk);
+
+    /**
+     * レスポンスを終了する
+     */
+    void close();
+
+    /**
+     * クライアントへの送信を継続できるか
+     */
+    boolean isOpen();
+
+    /**
+     * 送信バッファに空きがあり、書き込みを続けられるか
+     * （送信が完了するまで書き込みがブロックするトランスポートでは常に true）
+     */
+    default boolean isWritable() {
+        return true;
+    }
+
+    /**
+     * 書き込み可能になった時点、またはレスポンスが終了した時点でタスクを1回実行する
+     * 既に書き込み可能な場合は即座に実行する
+     */
+    default void whenWritable(Runnable task) {
+        task.run();
+    }
+}
@@ -0,0 +1,165 @@
+package net.enabify.recon.http;
+
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HTTPセッション（"auth" リクエストで発行する）を保持するテーブル
+ * 件数の上限と、最後に使用されてからの有効期間（TTL）を持つ
+ *
+ * セッションにはハンドシェイク時に導出したセッションキーを保持し、
+ * 以降のリクエストはリクエスト毎のキー導出を行わずにこのキーで復号・暗号化する
+ * 上限に達した場合は期限切れのセッションを削除し、それでも空きが無ければ
+ * 最も長く使用されていないセッションを削除する
+ */
+class SessionTable {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final int maxSessions;
+    private final long ttlMillis;
+
+    SessionTable(int maxSessions, long ttlMillis) {
+        this.maxSessions = maxSessions;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * セッションを発行する
+     *
+     * @param password セッション発行時のパスワード（変更された場合にセッションを無効にするため）
+     */
+    Session create(String user, String password, byte[] key, int version) {
+        if (sessions.size() >= maxSessions) {
+            evictExpired();
+            while (sessions.size() >= maxSessions) {
+                evictLeastRecentlyUsed();
+            }
+        }
+        Session session = new Session(generateId(), user, password, key, version, System.currentTimeMillis());
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    /**
+     * セッションを取得し、有効期間を延長する
+     *
+     * @return 存在しない・期限切れの場合 null
+     */
+    Session get(String id) {
+        Session session = sessions.get(id);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.isExpired(now, ttlMillis)) {
+            sessions.remove(id, session);
+            return null;
+        }
+        session.lastUsed = now;
+        return session;
+    }
+
+    /**
+     * セッションを無効にする
+     */
+    void remove(Session session) {
+        sessions.remove(session.id, session);
+    }
+
+    /**
+     * 期限切れのセッションを削除する
+     */
+    void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Session> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now, ttlMillis)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * セッションの有効期間（秒）
+     */
+    long getTtlSeconds() {
+        return ttlMillis / 1000L;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Session oldest = null;
+        for (Session session : sessions.values()) {
+            if (oldest == null || session.lastUsed < oldest.lastUsed) {
+                oldest = session;
+            }
+        }
+        if (oldest != null) {
+            sessions.remove(oldest.id, oldest);
+        }
+    }
+
+    private static String generateId() {
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 発行済みのセッション
+     */
+    static class Session {
+
+        private final String id;
+        private final String user;
+        private final String password;
+        private final byte[] key;
+        private final int version;
+        private volatile long lastUsed;
+
+        private Session(String id, String user, String password, byte[] key, int version, long lastUsed) {
+            this.id = id;
+            this.user = user;
+            this.password = password;
+            this.key = key;
+            this.version = version;
+            this.lastUsed = lastUsed;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        String getUser() {
+            return user;
+        }
+
+        /**
+         * セッション発行後にユーザーのパスワードが変更されていないか
+         */
+        boolean matchesPassword(String currentPassword) {
+            return password.equals(currentPassword);
+        }
+
+        byte[] getKey() {
+            return key;
+        }
+
+        int getVersion() {
+            return version;
+        }
+
+        private boolean isExpired(long now, long ttlMillis) {
+            return now - lastUsed > ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package net.enabify.recon.listener;
+
+import net.enabify.recon.execution.PlayerCaptureHandler;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * プレイヤーの参加・退出に合わせて、出力キャプチャ用のハンドラーを追加・削除するリスナー
+ */
+public class PlayerCaptureListener implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        PlayerCaptureHandler.install(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        PlayerCaptureHandler.uninstall(event.getPlayer());
+    }
+}
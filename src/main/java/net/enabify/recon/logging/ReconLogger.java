@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 
 /**
  * コマンド実行ログをファイルに記録するロガー
@@ -48,6 +49,25 @@ public class ReconLogger {
         log(String.format("[API] IP=%s User=%s Command=%s Success=%s", ip, user, command, success));
     }
 
+    /**
+     * バッチAPIリクエストをログ記録
+     * コマンド毎に1行を出力するが、ファイルのオープンは1回にまとめる
+     */
+    public void logApiBatchRequest(String ip, String user, List<String> commands, boolean success) {
+        String date = dateFormat.format(new Date());
+        String time = timeFormat.format(new Date());
+        File logFile = new File(logFolder, date + ".log");
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(logFile, true))) {
+            for (int i = 0; i < commands.size(); i++) {
+                writer.println("[" + time + "] " + String.format("[API] IP=%s User=%s Batch=%d/%d Command=%s Success=%s",
+                        ip, user, i + 1, commands.size(), commands.get(i), success));
+            }
+        } catch (IOException e) {
+            // ロギング失敗はコンソールに警告出力のみ
+        }
+    }
+
     /**
      * コマンド実行をログ記録
      */
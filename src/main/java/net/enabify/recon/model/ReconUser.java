@@ -9,6 +9,11 @@ import java.util.List;
  */
 public class ReconUser {
 
+    /** 優先度の既定値（値が大きいほど優先して実行される） */
+    public static final int DEFAULT_PRIORITY = 0;
+    /** 重みの既定値（同じ優先度のユーザー間で実行時間を配分する比率） */
+    public static final int DEFAULT_WEIGHT = 1;
+
     private String user;
     private String password;
     private List<String> ipWhitelist;
@@ -16,6 +21,8 @@ public class ReconUser {
     private boolean queue;
     private String player;
     private List<String> permissions;
+    private int priority;
+    private int weight;
 
     public ReconUser(String user, String password) {
         this.user = user;
@@ -25,6 +32,8 @@ public class ReconUser {
         this.queue = false;
         this.player = null;
         this.permissions = new ArrayList<>();
+        this.priority = DEFAULT_PRIORITY;
+        this.weight = DEFAULT_WEIGHT;
     }
 
     // --- Getters / Setters ---
@@ -84,4 +93,20 @@ public class ReconUser {
     public void setPermissions(List<String> permissions) {
         this.permissions = permissions != null ? permissions : new ArrayList<>();
     }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = Math.max(1, weight);
+    }
 }
@@ -1,21 +1,113 @@
 package net.enabify.recon.platform;
 
+import net.enabify.recon.execution.CommandOutputListener;
 import net.enabify.recon.execution.ExecutionResult;
 import net.enabify.recon.model.ReconUser;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  * コマンド実行サービスのインターフェース
  * 各プラットフォーム（Bukkit、BungeeCord、Velocity）が実装する
  */
 public interface CommandExecutionService {
 
+    /** コマンド完了待機の上限（秒）。超過した場合はエラー結果で完了する */
+    long COMMAND_TIMEOUT_SECONDS = 10L;
+
     /**
-     * ユーザー設定に基づいてコマンドを実行する
+     * ユーザー設定に基づいてコマンドを実行する（同期版）
+     * 呼び出し元スレッドは実行完了までブロックされる
      *
      * @param reconUser 実行元ユーザーの設定
      * @param command   実行するコマンド
      * @param queue     プレイヤーがオフライン時にキューに保存するか
      * @return 実行結果
      */
-    ExecutionResult executeCommand(ReconUser reconUser, String command, boolean queue);
+    default ExecutionResult executeCommand(ReconUser reconUser, String command, boolean queue) {
+        return executeCommandAsync(reconUser, command, queue).toCompletableFuture().join();
+    }
+
+    /**
+     * ユーザー設定に基づいてコマンドを非同期で実行する
+     * 呼び出し元スレッドはブロックされず、実行完了時（またはタイムアウト時）にステージが完了する
+     * ステージは例外ではなく、失敗を表すExecutionResultで完了する
+     *
+     * @param reconUser 実行元ユーザーの設定
+     * @param command   実行するコマンド
+     * @param queue     プレイヤーがオフライン時にキューに保存するか
+     * @return 実行結果のステージ
+     */
+    CompletionStage<ExecutionResult> executeCommandAsync(ReconUser reconUser, String command, boolean queue);
+
+    /**
+     * コマンドを実行し、出力をキャプチャした時点で逐次リスナーへ通知する（ストリーミング用）
+     * デフォルト実装は実行完了後に出力を行単位で通知する
+     * 返されるExecutionResultのresponseには出力を含めない
+     *
+     * @param reconUser 実行元ユーザーの設定
+     * @param command   実行するコマンド
+     * @param queue     プレイヤーがオフライン時にキューに保存するか
+     * @param listener  出力の通知先
+     * @return 出力の通知がすべて終わった時点で完了するステージ
+     */
+    default CompletionStage<ExecutionResult> executeCommandStreaming(ReconUser reconUser, String command, boolean queue,
+                                                                     CommandOutputListener listener) {
+        return executeCommandAsync(reconUser, command, queue).thenApply(result -> {
+            if (result.response != null && !result.response.isEmpty()) {
+                for (String line : result.response.split("\n")) {
+                    listener.onOutput(line);
+                }
+            }
+            return new ExecutionResult(result.success, "", "", result.error);
+        });
+    }
+
+    /**
+     * 複数のコマンドを順番に非同期で実行する（バッチリクエスト用）
+     * デフォルト実装は前のコマンドの完了を待ってから次のコマンドを実行する
+     * プラットフォームによっては1回のスケジューラータスク内でまとめて実行するよう上書きする
+     *
+     * @param reconUser 実行元ユーザーの設定
+     * @param commands  実行するコマンド（実行順）
+     * @param queue     プレイヤーがオフライン時にキューに保存するか
+     * @return コマンドと同じ順序の実行結果リストのステージ
+     */
+    default CompletionStage<List<ExecutionResult>> executeBatchAsync(ReconUser reconUser, List<String> commands, boolean queue) {
+        CompletableFuture<List<ExecutionResult>> chain = CompletableFuture.completedFuture(new ArrayList<>());
+        for (String command : commands) {
+            chain = chain.thenCompose(results -> executeCommandAsync(reconUser, command, queue)
+                    .thenApply(result -> {
+                        results.add(result);
+                        return results;
+                    }));
+        }
+        return chain;
+    }
+
+    /**
+     * コマンドの実行キューの統計（/recon status で表示する）
+     * キーは言語ファイルの status.dispatch_* のプレースホルダー名
+     * デフォルト実装は実行キューを持たないプラットフォーム用で、空のマップを返す
+     *
+     * @return プレースホルダー名 → 値
+     */
+    default Map<String, String> getDispatchStatistics() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * リージョン毎の実行キューの待機タスク数（Folia、/recon status で表示する）
+     * デフォルト実装はリージョン毎のキューを持たないプラットフォーム用で、空のマップを返す
+     *
+     * @return リージョン → 待機タスク数（待機が無いリージョンは含まない）
+     */
+    default Map<String, Integer> getRegionQueueDepths() {
+        return Collections.emptyMap();
+    }
 }
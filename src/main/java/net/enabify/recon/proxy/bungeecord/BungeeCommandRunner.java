@@ -3,7 +3,6 @@ package net.enabify.recon.proxy.bungeecord;
 import net.enabify.recon.execution.ExecutionResult;
 import net.enabify.recon.model.ReconUser;
 import net.enabify.recon.platform.CommandExecutionService;
-import net.enabify.recon.platform.ReconPlatform;
 import net.md_5.bungee.api.CommandSender;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.chat.BaseComponent;
@@ -13,6 +12,10 @@ import net.md_5.bungee.api.connection.ProxiedPlayer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 /**
  * BungeeCord用コマンド実行サービス
@@ -20,19 +23,43 @@ import java.util.List;
  */
 public class BungeeCommandRunner implements CommandExecutionService {
 
-    private final ReconPlatform platform;
+    private final ReconBungee platform;
 
-    public BungeeCommandRunner(ReconPlatform platform) {
+    public BungeeCommandRunner(ReconBungee platform) {
         this.platform = platform;
     }
 
+    /**
+     * dispatchCommandは呼び出しスレッドで同期実行されるため、
+     * BungeeCordの非同期スケジューラー上で実行してHTTPスレッドをブロックしない
+     */
     @Override
-    public ExecutionResult executeCommand(ReconUser reconUser, String command, boolean queue) {
-        if (reconUser.getPlayer() != null && !reconUser.getPlayer().isEmpty()) {
-            return executeAsPlayer(reconUser, command, queue);
-        } else {
-            return executeAsConsole(command);
+    public CompletionStage<ExecutionResult> executeCommandAsync(ReconUser reconUser, String command, boolean queue) {
+        CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
+        try {
+            ProxyServer.getInstance().getScheduler().runAsync(platform, () -> {
+                try {
+                    if (reconUser.getPlayer() != null && !reconUser.getPlayer().isEmpty()) {
+                        future.complete(executeAsPlayer(reconUser, command, queue));
+                    } else {
+                        future.complete(executeAsConsole(command));
+                    }
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
         }
+
+        return future
+                .orTimeout(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    return new ExecutionResult(false, null, null,
+                            platform.getLangManager().format("error.internal",
+                                    Collections.singletonMap("error", cause.getMessage())));
+                });
     }
 
     /**
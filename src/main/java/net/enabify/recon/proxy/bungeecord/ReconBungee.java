@@ -57,7 +57,7 @@ public class ReconBungee extends Plugin implements ReconPlatform {
         // ユーティリティ初期化
         reconLogger = new ReconLogger(getDataFolder());
         nonceTracker = new NonceTracker();
-        rateLimiter = new RateLimiter(configManager.getRateLimit());
+        rateLimiter = new RateLimiter(configManager.getRateLimit(), configManager.getRateLimitMaxKeys());
         commandRunner = new BungeeCommandRunner(this);
 
         // コマンド登録
@@ -79,6 +79,9 @@ public class ReconBungee extends Plugin implements ReconPlatform {
         ProxyServer.getInstance().getScheduler().schedule(this, () -> {
             nonceTracker.cleanup();
             rateLimiter.cleanup();
+            if (httpServer != null) {
+                httpServer.cleanup();
+            }
             queueManager.cleanExpiredEntries();
         }, 5, 5, TimeUnit.MINUTES);
 
@@ -85,7 +85,7 @@ public class ReconVelocity implements ReconPlatform {
         // ユーティリティ初期化
         reconLogger = new ReconLogger(dataFolder);
         nonceTracker = new NonceTracker();
-        rateLimiter = new RateLimiter(configManager.getRateLimit());
+        rateLimiter = new RateLimiter(configManager.getRateLimit(), configManager.getRateLimitMaxKeys());
         commandRunner = new VelocityCommandRunner(this, proxyServer);
 
         // コマンド登録
@@ -110,6 +110,9 @@ public class ReconVelocity implements ReconPlatform {
         proxyServer.getScheduler().buildTask(this, () -> {
             nonceTracker.cleanup();
             rateLimiter.cleanup();
+            if (httpServer != null) {
+                httpServer.cleanup();
+            }
             queueManager.cleanExpiredEntries();
         }).repeat(5, TimeUnit.MINUTES).schedule();
 
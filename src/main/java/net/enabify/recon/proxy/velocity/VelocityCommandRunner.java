@@ -17,6 +17,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -34,88 +36,81 @@ public class VelocityCommandRunner implements CommandExecutionService {
     }
 
     @Override
-    public ExecutionResult executeCommand(ReconUser reconUser, String command, boolean queue) {
+    public CompletionStage<ExecutionResult> executeCommandAsync(ReconUser reconUser, String command, boolean queue) {
+        CompletableFuture<ExecutionResult> future;
         if (reconUser.getPlayer() != null && !reconUser.getPlayer().isEmpty()) {
-            return executeAsPlayer(reconUser, command, queue);
+            future = executeAsPlayer(reconUser, command, queue);
         } else {
-            return executeAsConsole(command);
+            future = executeAsConsole(command);
         }
+        return withTimeout(future);
+    }
+
+    /**
+     * コマンド完了待機にタイムアウトを設定し、例外をエラー結果に変換する
+     */
+    private CompletableFuture<ExecutionResult> withTimeout(CompletableFuture<ExecutionResult> future) {
+        return future
+                .orTimeout(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    return new ExecutionResult(false, null, null,
+                            platform.getLangManager().format("error.internal",
+                                    Collections.singletonMap("error", cause.getMessage())));
+                });
     }
 
     /**
      * コンソールとしてコマンドを実行
      */
-    private ExecutionResult executeAsConsole(String command) {
+    private CompletableFuture<ExecutionResult> executeAsConsole(String command) {
         try {
             BufferedVelocityCommandSource sender = new BufferedVelocityCommandSource();
             // executeImmediatelyAsConsole は Velocity 3.3.0+ で使用可能
             // 代替としてexecuteAsyncを使用
-            CompletableFuture<Boolean> future =
-                    proxyServer.getCommandManager().executeAsync(sender, command)
-                            .thenApply(result -> true)
-                            .exceptionally(ex -> false);
-
-            boolean success;
-            try {
-                success = future.get(10, TimeUnit.SECONDS);
-            } catch (Exception e) {
-                return new ExecutionResult(false, null, null,
-                        platform.getLangManager().format("error.internal",
-                                Collections.singletonMap("error", e.getMessage())));
-            }
-
-            String response = sender.getOutput();
-            String plainResponse = sender.getPlainOutput();
-            return new ExecutionResult(success, response, plainResponse, null);
+            return proxyServer.getCommandManager().executeAsync(sender, command)
+                    .thenApply(result -> true)
+                    .exceptionally(ex -> false)
+                    .thenApply(success -> new ExecutionResult(success,
+                            sender.getOutput(), sender.getPlainOutput(), null));
         } catch (Exception e) {
-            return new ExecutionResult(false,
+            return CompletableFuture.completedFuture(new ExecutionResult(false,
                     platform.getLangManager().format("error.command_execution",
-                            Collections.singletonMap("error", e.getMessage())), "", null);
+                            Collections.singletonMap("error", e.getMessage())), "", null));
         }
     }
 
     /**
      * プレイヤーとしてコマンドを実行
      */
-    private ExecutionResult executeAsPlayer(ReconUser reconUser, String command, boolean queueIfOffline) {
+    private CompletableFuture<ExecutionResult> executeAsPlayer(ReconUser reconUser, String command, boolean queueIfOffline) {
         Optional<Player> optPlayer = proxyServer.getPlayer(reconUser.getPlayer());
 
         if (!optPlayer.isPresent()) {
             // プレイヤーがオフライン
             if (queueIfOffline) {
                 platform.getQueueManager().addToQueue(reconUser.getPlayer(), command, reconUser.getUser());
-                return new ExecutionResult(true,
+                return CompletableFuture.completedFuture(new ExecutionResult(true,
                         platform.getLangManager().get("queue.player_offline_queued"),
-                        platform.getLangManager().get("queue.player_offline_queued"), null);
+                        platform.getLangManager().get("queue.player_offline_queued"), null));
             } else {
-                return new ExecutionResult(false, null, null,
+                return CompletableFuture.completedFuture(new ExecutionResult(false, null, null,
                         platform.getLangManager().format("error.player_offline_queue_disabled",
-                                Collections.singletonMap("player", reconUser.getPlayer())));
+                                Collections.singletonMap("player", reconUser.getPlayer()))));
             }
         }
 
         Player player = optPlayer.get();
 
         try {
-            CompletableFuture<Boolean> future =
-                    proxyServer.getCommandManager().executeAsync(player, command)
-                            .thenApply(result -> true)
-                            .exceptionally(ex -> false);
-
-            boolean success;
-            try {
-                success = future.get(10, TimeUnit.SECONDS);
-            } catch (Exception e) {
-                return new ExecutionResult(false, null, null,
-                        platform.getLangManager().format("error.internal",
-                                Collections.singletonMap("error", e.getMessage())));
-            }
-
-            return new ExecutionResult(success, "", "", null);
+            return proxyServer.getCommandManager().executeAsync(player, command)
+                    .thenApply(result -> true)
+                    .exceptionally(ex -> false)
+                    .thenApply(success -> new ExecutionResult(success, "", "", null));
         } catch (Exception e) {
-            return new ExecutionResult(false,
+            return CompletableFuture.completedFuture(new ExecutionResult(false,
                     platform.getLangManager().format("error.command_execution",
-                            Collections.singletonMap("error", e.getMessage())), "", null);
+                            Collections.singletonMap("error", e.getMessage())), "", null));
         }
     }
 
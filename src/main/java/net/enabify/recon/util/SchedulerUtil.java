@@ -1,9 +1,12 @@
 package net.enabify.recon.util;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
@@ -11,11 +14,16 @@ import java.util.function.Supplier;
 
 /**
  * Bukkit/Paper/Folia両対応のスケジューラユーティリティ
- * Foliaが検出された場合はリフレクション経由でFoliaのスケジューラAPIを使用する
+ * Foliaが検出された場合はFoliaのスケジューラAPIを使用する
+ *
+ * 使用するスケジューラ実装は最初の呼び出し時に1回だけ決定する
+ * FoliaのAPIはコンパイル時に参照できないため、起動時にMethodHandleとして解決しておき、
+ * 呼び出し毎のリフレクションによるメソッド検索は行わない
  */
 public class SchedulerUtil {
 
     private static Boolean folia = null;
+    private static volatile Scheduler scheduler = null;
 
     /**
      * 実行環境がFoliaかどうかを検出
@@ -32,23 +40,34 @@ public class SchedulerUtil {
         return folia;
     }
 
+    /**
+     * 実行環境に応じたスケジューラ実装を取得する（初回のみ解決する）
+     * FoliaのAPIが解決できなかった場合はBukkitのスケジューラを使用する
+     */
+    private static Scheduler scheduler() {
+        Scheduler current = scheduler;
+        if (current == null) {
+            synchronized (SchedulerUtil.class) {
+                current = scheduler;
+                if (current == null) {
+                    current = isFolia() ? FoliaScheduler.resolve() : null;
+                    if (current == null) {
+                        current = new BukkitScheduler();
+                    }
+                    scheduler = current;
+                }
+            }
+        }
+        return current;
+    }
+
     /**
      * グローバルスレッドで同期実行（Runnable版、戻り値不要）
      * Bukkit: メインスレッドで実行
      * Folia: GlobalRegionSchedulerで実行
      */
     public static void runGlobal(Plugin plugin, Runnable task) {
-        if (isFolia()) {
-            try {
-                Object scheduler = Bukkit.class.getMethod("getGlobalRegionScheduler").invoke(null);
-                Method execMethod = scheduler.getClass().getMethod("execute", Plugin.class, Runnable.class);
-                execMethod.invoke(scheduler, plugin, task);
-            } catch (Exception e) {
-                Bukkit.getScheduler().runTask(plugin, task);
-            }
-        } else {
-            Bukkit.getScheduler().runTask(plugin, task);
-        }
+        scheduler().runGlobal(plugin, task);
     }
 
     /**
@@ -58,34 +77,11 @@ public class SchedulerUtil {
      */
     public static <T> CompletableFuture<T> executeGlobal(Plugin plugin, Supplier<T> task) {
         CompletableFuture<T> future = new CompletableFuture<>();
-
-        if (isFolia()) {
-            try {
-                Object scheduler = Bukkit.class.getMethod("getGlobalRegionScheduler").invoke(null);
-                Method execMethod = scheduler.getClass().getMethod("execute", Plugin.class, Runnable.class);
-                execMethod.invoke(scheduler, plugin, (Runnable) () -> {
-                    try {
-                        future.complete(task.get());
-                    } catch (Exception e) {
-                        future.completeExceptionally(e);
-                    }
-                });
-            } catch (Exception e) {
-                future.completeExceptionally(e);
-            }
-        } else {
-            Bukkit.getScheduler().callSyncMethod(plugin, () -> {
-                try {
-                    T result = task.get();
-                    future.complete(result);
-                    return result;
-                } catch (Exception e) {
-                    future.completeExceptionally(e);
-                    throw e;
-                }
-            });
+        try {
+            scheduler().runGlobal(plugin, () -> complete(future, task));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
         }
-
         return future;
     }
 
@@ -94,23 +90,19 @@ public class SchedulerUtil {
      * Bukkit: メインスレッドで実行
      * Folia: EntitySchedulerで実行
      */
-    @SuppressWarnings("unchecked")
     public static void runForEntity(Plugin plugin, Entity entity, Runnable task) {
-        if (isFolia()) {
-            try {
-                Object entityScheduler = entity.getClass().getMethod("getScheduler").invoke(entity);
-                Consumer<Object> consumer = (scheduledTask) -> task.run();
-                Method runMethod = entityScheduler.getClass().getMethod("run",
-                        Plugin.class, Consumer.class, Runnable.class);
-                runMethod.invoke(entityScheduler, plugin, consumer, (Runnable) () -> {
-                    // retired: エンティティが無効になった場合
-                });
-            } catch (Exception e) {
-                Bukkit.getScheduler().runTask(plugin, task);
-            }
-        } else {
-            Bukkit.getScheduler().runTask(plugin, task);
-        }
+        runForEntity(plugin, entity, task, () -> {
+            // retired: エンティティが無効になった場合
+        });
+    }
+
+    /**
+     * エンティティ（プレイヤー）のリージョンで同期実行し、実行前にエンティティが無効になった場合はretiredを実行する
+     * Bukkit: メインスレッドで実行（retiredは実行されない）
+     * Folia: EntitySchedulerで実行
+     */
+    public static void runForEntity(Plugin plugin, Entity entity, Runnable task, Runnable retired) {
+        scheduler().runForEntity(plugin, entity, task, retired);
     }
 
     /**
@@ -118,101 +110,266 @@ public class SchedulerUtil {
      * Bukkit: メインスレッドで実行
      * Folia: EntitySchedulerで実行
      */
-    @SuppressWarnings("unchecked")
     public static <T> CompletableFuture<T> executeForEntity(Plugin plugin, Entity entity, Supplier<T> task) {
         CompletableFuture<T> future = new CompletableFuture<>();
-
-        if (isFolia()) {
-            try {
-                Object entityScheduler = entity.getClass().getMethod("getScheduler").invoke(entity);
-                Consumer<Object> consumer = (scheduledTask) -> {
-                    try {
-                        future.complete(task.get());
-                    } catch (Exception e) {
-                        future.completeExceptionally(e);
-                    }
-                };
-                Method runMethod = entityScheduler.getClass().getMethod("run",
-                        Plugin.class, Consumer.class, Runnable.class);
-                runMethod.invoke(entityScheduler, plugin, consumer, (Runnable) () ->
-                        future.completeExceptionally(new RuntimeException("Entity retired")));
-            } catch (Exception e) {
-                future.completeExceptionally(e);
-            }
-        } else {
-            Bukkit.getScheduler().callSyncMethod(plugin, () -> {
-                try {
-                    T result = task.get();
-                    future.complete(result);
-                    return result;
-                } catch (Exception e) {
-                    future.completeExceptionally(e);
-                    throw e;
-                }
-            });
+        try {
+            scheduler().runForEntity(plugin, entity, () -> complete(future, task), () ->
+                    future.completeExceptionally(new RuntimeException("Entity retired")));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
         }
-
         return future;
     }
 
+    /**
+     * 指定位置を所有するリージョンで同期実行（Runnable版、戻り値不要）
+     * Bukkit: メインスレッドで実行
+     * Folia: RegionSchedulerで実行
+     */
+    public static void runAtLocation(Plugin plugin, Location location, Runnable task) {
+        scheduler().runAtLocation(plugin, location, task);
+    }
+
+    /**
+     * 現在のスレッドがエンティティを所有するリージョンのスレッドかどうか
+     * Bukkit: メインスレッドかどうか
+     */
+    public static boolean isOwnedByCurrentRegion(Entity entity) {
+        return scheduler().isOwnedByCurrentRegion(entity);
+    }
+
     /**
      * グローバルで遅延実行（ワンショット）
      */
-    @SuppressWarnings("unchecked")
     public static void runGlobalLater(Plugin plugin, Runnable task, long delayTicks) {
-        if (isFolia()) {
-            try {
-                Object scheduler = Bukkit.class.getMethod("getGlobalRegionScheduler").invoke(null);
-                Consumer<Object> consumer = (scheduledTask) -> task.run();
-                Method runMethod = scheduler.getClass().getMethod("runDelayed",
-                        Plugin.class, Consumer.class, long.class);
-                runMethod.invoke(scheduler, plugin, consumer, Math.max(1, delayTicks));
-            } catch (Exception e) {
-                Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
-            }
-        } else {
-            Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
-        }
+        scheduler().runGlobalLater(plugin, task, delayTicks);
     }
 
     /**
      * エンティティのリージョンで遅延実行
      */
-    @SuppressWarnings("unchecked")
     public static void runForEntityLater(Plugin plugin, Entity entity, Runnable task, long delayTicks) {
-        if (isFolia()) {
-            try {
-                Object entityScheduler = entity.getClass().getMethod("getScheduler").invoke(entity);
-                Consumer<Object> consumer = (scheduledTask) -> task.run();
-                Method runMethod = entityScheduler.getClass().getMethod("runDelayed",
-                        Plugin.class, Consumer.class, Runnable.class, long.class);
-                runMethod.invoke(entityScheduler, plugin, consumer, null, delayTicks);
-            } catch (Exception e) {
-                // フォールバック
-                Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
-            }
-        } else {
-            Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
-        }
+        scheduler().runForEntityLater(plugin, entity, task, delayTicks);
     }
 
     /**
      * グローバルでタイマー繰り返し実行
      */
-    @SuppressWarnings("unchecked")
     public static void runGlobalTimer(Plugin plugin, Runnable task, long delayTicks, long periodTicks) {
-        if (isFolia()) {
+        scheduler().runGlobalTimer(plugin, task, delayTicks, periodTicks);
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, Supplier<T> task) {
+        try {
+            future.complete(task.get());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 実行環境毎のスケジューラ実装
+     */
+    private interface Scheduler {
+
+        void runGlobal(Plugin plugin, Runnable task);
+
+        void runAtLocation(Plugin plugin, Location location, Runnable task);
+
+        void runForEntity(Plugin plugin, Entity entity, Runnable task, Runnable retired);
+
+        void runGlobalLater(Plugin plugin, Runnable task, long delayTicks);
+
+        void runForEntityLater(Plugin plugin, Entity entity, Runnable task, long delayTicks);
+
+        void runGlobalTimer(Plugin plugin, Runnable task, long delayTicks, long periodTicks);
+
+        boolean isOwnedByCurrentRegion(Entity entity);
+    }
+
+    /**
+     * Bukkit/Paper: すべてメインスレッドのスケジューラで実行する
+     */
+    private static class BukkitScheduler implements Scheduler {
+
+        @Override
+        public void runGlobal(Plugin plugin, Runnable task) {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+
+        @Override
+        public void runAtLocation(Plugin plugin, Location location, Runnable task) {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+
+        @Override
+        public void runForEntity(Plugin plugin, Entity entity, Runnable task, Runnable retired) {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+
+        @Override
+        public void runGlobalLater(Plugin plugin, Runnable task, long delayTicks) {
+            Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
+        }
+
+        @Override
+        public void runForEntityLater(Plugin plugin, Entity entity, Runnable task, long delayTicks) {
+            Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
+        }
+
+        @Override
+        public void runGlobalTimer(Plugin plugin, Runnable task, long delayTicks, long periodTicks) {
+            Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks);
+        }
+
+        @Override
+        public boolean isOwnedByCurrentRegion(Entity entity) {
+            return Bukkit.isPrimaryThread();
+        }
+    }
+
+    /**
+     * Folia: Global/Region/EntitySchedulerで実行する
+     * 各メソッドは起動時に解決したMethodHandle経由で呼び出す
+     * （グローバル・リージョンのスケジューラはシングルトンのため、インスタンスを束縛済み）
+     */
+    private static class FoliaScheduler implements Scheduler {
+
+        private final MethodHandle globalExecute;
+        private final MethodHandle globalRunDelayed;
+        private final MethodHandle globalRunAtFixedRate;
+        private final MethodHandle regionExecute;
+        private final MethodHandle entityGetScheduler;
+        private final MethodHandle entityRun;
+        private final MethodHandle entityRunDelayed;
+        private final MethodHandle isOwnedByCurrentRegion;
+
+        private FoliaScheduler() throws ReflectiveOperationException {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            Object globalScheduler = Bukkit.class.getMethod("getGlobalRegionScheduler").invoke(null);
+            Class<?> globalType = Bukkit.class.getMethod("getGlobalRegionScheduler").getReturnType();
+            globalExecute = lookup.unreflect(globalType.getMethod("execute", Plugin.class, Runnable.class))
+                    .bindTo(globalScheduler);
+            globalRunDelayed = lookup.unreflect(globalType.getMethod("runDelayed",
+                    Plugin.class, Consumer.class, long.class)).bindTo(globalScheduler);
+            globalRunAtFixedRate = lookup.unreflect(globalType.getMethod("runAtFixedRate",
+                    Plugin.class, Consumer.class, long.class, long.class)).bindTo(globalScheduler);
+
+            Object regionScheduler = Bukkit.class.getMethod("getRegionScheduler").invoke(null);
+            Class<?> regionType = Bukkit.class.getMethod("getRegionScheduler").getReturnType();
+            regionExecute = lookup.unreflect(regionType.getMethod("execute",
+                    Plugin.class, Location.class, Runnable.class)).bindTo(regionScheduler);
+
+            Method getScheduler = Entity.class.getMethod("getScheduler");
+            Class<?> entityType = getScheduler.getReturnType();
+            entityGetScheduler = lookup.unreflect(getScheduler);
+            entityRun = lookup.unreflect(entityType.getMethod("run",
+                    Plugin.class, Consumer.class, Runnable.class));
+            entityRunDelayed = lookup.unreflect(entityType.getMethod("runDelayed",
+                    Plugin.class, Consumer.class, Runnable.class, long.class));
+
+            isOwnedByCurrentRegion = lookup.unreflect(Bukkit.class.getMethod("isOwnedByCurrentRegion", Entity.class));
+        }
+
+        /**
+         * FoliaのスケジューラAPIを解決する
+         *
+         * @return 解決できなかった場合 null
+         */
+        private static FoliaScheduler resolve() {
+            try {
+                return new FoliaScheduler();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                Bukkit.getLogger().warning("[Recon] Failed to resolve Folia scheduler API, using Bukkit scheduler: "
+                        + e.getMessage());
+                return null;
+            }
+        }
+
+        @Override
+        public void runGlobal(Plugin plugin, Runnable task) {
+            try {
+                globalExecute.invoke(plugin, task);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void runAtLocation(Plugin plugin, Location location, Runnable task) {
+            try {
+                regionExecute.invoke(plugin, location, task);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void runForEntity(Plugin plugin, Entity entity, Runnable task, Runnable retired) {
+            Object scheduled;
             try {
-                Object scheduler = Bukkit.class.getMethod("getGlobalRegionScheduler").invoke(null);
+                Object entityScheduler = entityGetScheduler.invoke(entity);
                 Consumer<Object> consumer = (scheduledTask) -> task.run();
-                Method runMethod = scheduler.getClass().getMethod("runAtFixedRate",
-                        Plugin.class, Consumer.class, long.class, long.class);
-                runMethod.invoke(scheduler, plugin, consumer, Math.max(1, delayTicks), periodTicks);
-            } catch (Exception e) {
-                Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks);
+                scheduled = entityRun.invoke(entityScheduler, plugin, consumer, retired);
+            } catch (Throwable t) {
+                throw rethrow(t);
             }
-        } else {
-            Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks);
+            if (scheduled == null) {
+                // 登録時点で既にエンティティが無効（retiredコールバックは呼ばれない）
+                retired.run();
+            }
+        }
+
+        @Override
+        public void runGlobalLater(Plugin plugin, Runnable task, long delayTicks) {
+            try {
+                Consumer<Object> consumer = (scheduledTask) -> task.run();
+                Object ignored = globalRunDelayed.invoke(plugin, consumer, Math.max(1, delayTicks));
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void runForEntityLater(Plugin plugin, Entity entity, Runnable task, long delayTicks) {
+            try {
+                Object entityScheduler = entityGetScheduler.invoke(entity);
+                Consumer<Object> consumer = (scheduledTask) -> task.run();
+                Object ignored = entityRunDelayed.invoke(entityScheduler, plugin, consumer, (Runnable) null,
+                        Math.max(1, delayTicks));
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public void runGlobalTimer(Plugin plugin, Runnable task, long delayTicks, long periodTicks) {
+            try {
+                Consumer<Object> consumer = (scheduledTask) -> task.run();
+                Object ignored = globalRunAtFixedRate.invoke(plugin, consumer, Math.max(1, delayTicks), periodTicks);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        public boolean isOwnedByCurrentRegion(Entity entity) {
+            try {
+                return (boolean) isOwnedByCurrentRegion.invoke(entity);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        private static RuntimeException rethrow(Throwable t) {
+            if (t instanceof RuntimeException) {
+                return (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            return new IllegalStateException(t);
         }
     }
 }